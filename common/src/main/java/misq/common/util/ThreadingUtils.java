@@ -48,6 +48,14 @@ public class ThreadingUtils {
         return Executors.newSingleThreadExecutor(threadFactory);
     }
 
+    public static ScheduledExecutorService getSingleThreadScheduledExecutor(String name) {
+        final ThreadFactory threadFactory = new ThreadFactoryBuilder()
+                .setNameFormat(name)
+                .setDaemon(true)
+                .build();
+        return Executors.newSingleThreadScheduledExecutor(threadFactory);
+    }
+
     private static ThreadPoolExecutor getThreadPoolExecutor(String name,
                                                             int corePoolSize,
                                                             int maximumPoolSize,
@@ -20,6 +20,7 @@ package misq.p2p;
 import lombok.Getter;
 import misq.p2p.peers.PeerConfig;
 import misq.p2p.peers.exchange.PeerExchangeConfig;
+import misq.p2p.router.RoutingTable;
 
 @Getter
 public class NetworkConfig {
@@ -27,6 +28,7 @@ public class NetworkConfig {
     private final PeerConfig peerConfig;
     private final String baseDirPath;
     private final NodeId nodeId;
+    private final RoutingTable routingTable;
 
     public NetworkConfig(String baseDirPath, NodeId nodeId, NetworkType networkType) {
         this(baseDirPath,
@@ -40,9 +42,18 @@ public class NetworkConfig {
                          NodeId nodeId,
                          NetworkType networkType,
                          PeerConfig peerConfig) {
+        this(baseDirPath, nodeId, networkType, peerConfig, new RoutingTable());
+    }
+
+    public NetworkConfig(String baseDirPath,
+                         NodeId nodeId,
+                         NetworkType networkType,
+                         PeerConfig peerConfig,
+                         RoutingTable routingTable) {
         this.baseDirPath = baseDirPath;
         this.nodeId = nodeId;
         this.networkType = networkType;
         this.peerConfig = peerConfig;
+        this.routingTable = routingTable;
     }
 }
@@ -29,6 +29,7 @@ import misq.p2p.node.Connection;
 import misq.p2p.node.MessageListener;
 import misq.p2p.node.Node;
 import misq.p2p.node.proxy.GetServerSocketResult;
+import misq.p2p.peers.AddressBook;
 import misq.p2p.peers.PeerConfig;
 import misq.p2p.peers.PeerGroup;
 import misq.p2p.peers.PeerManager;
@@ -45,6 +46,8 @@ import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 
+import static java.io.File.separator;
+
 /**
  * High level API for the p2p network.
  */
@@ -68,13 +71,16 @@ public class P2pNode {
 
 
         PeerConfig peerConfig = networkConfig.getPeerConfig();
-        PeerGroup peerGroup = new PeerGroup(node, peerConfig, networkConfig.getNodeId().getServerPort());
+        PeerGroup peerGroup = new PeerGroup(node,
+                peerConfig,
+                networkConfig.getNodeId().getServerPort(),
+                createAddressBook(networkConfig));
         DefaultPeerExchangeStrategy peerExchangeStrategy = new DefaultPeerExchangeStrategy(peerGroup, peerConfig);
         peerManager = new PeerManager(node, peerGroup, peerExchangeStrategy, peerConfig);
 
         confidentialMessageService = new ConfidentialMessageService(node, peerGroup, privateKeySupplier);
 
-        dataService = new DataService(node, peerGroup, storage);
+        dataService = new DataService(node, peerGroup, storage, networkConfig.getRoutingTable());
     }
 
 
@@ -137,4 +143,19 @@ public class P2pNode {
     public PeerManager getPeerManager() {
         return peerManager;
     }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static AddressBook createAddressBook(NetworkConfig networkConfig) {
+        String baseDirPath = networkConfig.getBaseDirPath();
+        if (baseDirPath == null || baseDirPath.isEmpty()) {
+            return new AddressBook();
+        }
+        String storageFilePath = baseDirPath + separator + "db" + separator + "peers" + separator +
+                "AddressBook_" + networkConfig.getNetworkType().name();
+        return new AddressBook(storageFilePath);
+    }
 }
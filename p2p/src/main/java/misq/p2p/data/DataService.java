@@ -17,13 +17,20 @@
 
 package misq.p2p.data;
 
+import lombok.extern.slf4j.Slf4j;
 import misq.common.util.MapUtils;
 import misq.p2p.Address;
+import misq.p2p.data.filter.BloomFilter;
 import misq.p2p.data.filter.DataFilter;
+import misq.p2p.data.filter.InvertibleBloomFilter;
+import misq.p2p.data.inventory.Inventory;
 import misq.p2p.data.inventory.InventoryRequestHandler;
 import misq.p2p.data.inventory.InventoryResponseHandler;
+import misq.p2p.data.inventory.InventorySyncCoordinator;
+import misq.p2p.data.inventory.InventorySyncResult;
 import misq.p2p.data.inventory.RequestInventoryResult;
 import misq.p2p.data.storage.Storage;
+import misq.p2p.data.storage.auth.AuthenticatedDataRequest;
 import misq.p2p.message.Message;
 import misq.p2p.node.Connection;
 import misq.p2p.node.ConnectionListener;
@@ -31,14 +38,21 @@ import misq.p2p.node.MessageListener;
 import misq.p2p.node.Node;
 import misq.p2p.peers.PeerGroup;
 import misq.p2p.router.Router;
+import misq.p2p.router.RoutingTable;
 import misq.p2p.router.gossip.GossipResult;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Preliminary ideas:
@@ -51,21 +65,25 @@ import java.util.concurrent.TimeUnit;
  * That way the user trades of speed with loss of little privacy (the other nodes learn that that IP uses misq).
  * Probably acceptable trade off for many users. Would be good if the restart could be avoided. Maybe not that hard...
  */
+@Slf4j
 public class DataService implements MessageListener, ConnectionListener {
     private static final long BROADCAST_TIMEOUT = 90;
+    private static final int RECONCILIATION_RETRY_FACTOR = 4;
 
     private final Node node;
+    private final PeerGroup peerGroup;
     private final Router router;
     private final Storage storage;
     private final Set<DataListener> dataListeners = new CopyOnWriteArraySet<>();
     private final Map<String, InventoryResponseHandler> responseHandlerMap = new ConcurrentHashMap<>();
     private final Map<String, InventoryRequestHandler> requestHandlerMap = new ConcurrentHashMap<>();
 
-    public DataService(Node node, PeerGroup peerGroup, Storage storage) {
+    public DataService(Node node, PeerGroup peerGroup, Storage storage, RoutingTable routingTable) {
         this.node = node;
+        this.peerGroup = peerGroup;
         this.storage = storage;
 
-        router = new Router(node, peerGroup);
+        router = new Router(node, peerGroup, routingTable);
 
         router.addMessageListener(this);
         node.addConnectionListener(this);
@@ -147,6 +165,87 @@ public class DataService implements MessageListener, ConnectionListener {
                 });
     }
 
+    /**
+     * Requests the inventory with a BloomFilter of our entries. Entries which are false positives in the filter are
+     * not delivered, so once the inventoryHandler has added the received entries to our store we request a follow-up
+     * round from the same peer with a new filter. The new filter uses another tweak, so its false positives are
+     * independent from the ones of the first round. As the filter covers the sequence numbers, entries we hold in an
+     * older version are delivered as well.
+     *
+     * @param filterProvider   Creates the BloomFilter of our entries for the given false positive rate
+     * @param inventoryHandler Adds the received entries to our store
+     */
+    public CompletableFuture<RequestInventoryResult> requestInventory(Function<Double, BloomFilter> filterProvider,
+                                                                      Consumer<Inventory> inventoryHandler) {
+        long ts = System.currentTimeMillis();
+        Address address = router.getPeerAddressesForInventoryRequest();
+        return requestInventory(filterProvider.apply(BloomFilter.DEFAULT_FALSE_POSITIVE_RATE), address)
+                .thenCompose(result -> {
+                    Inventory inventory = result.getInventory();
+                    inventoryHandler.accept(inventory);
+                    return requestInventory(filterProvider.apply(BloomFilter.FOLLOW_UP_FALSE_POSITIVE_RATE), address)
+                            .thenApply(followUpResult -> {
+                                Inventory followUpInventory = followUpResult.getInventory();
+                                inventoryHandler.accept(followUpInventory);
+                                List<AuthenticatedDataRequest> entries = new ArrayList<>(inventory.getEntries());
+                                entries.addAll(followUpInventory.getEntries());
+                                return new RequestInventoryResult(new Inventory(entries, followUpInventory.getNumDropped()),
+                                        System.currentTimeMillis() - ts);
+                            });
+                });
+    }
+
+    /**
+     * Requests the entries we are missing with an InvertibleBloomFilter sized for the expected difference, e.g. the
+     * entries added to the network while we have been offline. The request size depends only on that difference. If
+     * the actual difference is larger the responder cannot decode it, and we retry once with a larger table. If that
+     * fails as well the future completes exceptionally and the caller should use a BloomFilter.
+     *
+     * @param filterProvider Creates the InvertibleBloomFilter of our entries for the given expected difference
+     */
+    public CompletableFuture<RequestInventoryResult> reconcileInventory(Function<Integer, InvertibleBloomFilter> filterProvider,
+                                                                        int expectedDifference) {
+        Address address = router.getPeerAddressesForInventoryRequest();
+        return requestInventory(filterProvider.apply(expectedDifference), address)
+                .thenCompose(result -> {
+                    if (!result.getInventory().isReconciliationFailed()) {
+                        return CompletableFuture.completedFuture(result);
+                    }
+                    int retryDifference = RECONCILIATION_RETRY_FACTOR * Math.max(1, expectedDifference);
+                    return requestInventory(filterProvider.apply(retryDifference), address);
+                })
+                .thenCompose(result -> {
+                    if (result.getInventory().isReconciliationFailed()) {
+                        return CompletableFuture.failedFuture(new IllegalStateException(
+                                "Difference to " + address + " is too large for reconciliation"));
+                    }
+                    return CompletableFuture.completedFuture(result);
+                });
+    }
+
+    /**
+     * Initial sync which requests overlapping partitions of the data in parallel from our best scored peers.
+     * Partitions which could not be delivered by any peer are listed in the result, so the caller can request them
+     * again once we are connected to other peers.
+     *
+     * @param filterFactory    Creates the filter for a range and offset (in percent of the data)
+     * @param inventoryHandler Merges the received inventory into our store
+     */
+    public CompletableFuture<InventorySyncResult> syncInventory(BiFunction<Integer, Integer, DataFilter> filterFactory,
+                                                                Consumer<Inventory> inventoryHandler) {
+        List<Address> peers = peerGroup.getConnectedPeerAddresses().stream()
+                .sorted(peerGroup.getPeerScores().byScore())
+                .collect(Collectors.toList());
+        return new InventorySyncCoordinator(this::requestInventory, filterFactory, inventoryHandler).sync(peers)
+                .whenComplete((result, throwable) -> {
+                    if (throwable != null) {
+                        log.warn("Inventory sync failed: {}", throwable.toString());
+                    } else if (!result.isComplete()) {
+                        log.warn("Inventory sync is incomplete. Failed partitions: {}", result.getFailedPartitions());
+                    }
+                });
+    }
+
     public void addDataListener(DataListener listener) {
         dataListeners.add(listener);
     }
@@ -182,11 +281,11 @@ public class DataService implements MessageListener, ConnectionListener {
 
 
     private void addResponseHandler(Connection connection) {
-      /*  InventoryResponseHandler responseHandler = new InventoryResponseHandler(node,
+        InventoryResponseHandler responseHandler = new InventoryResponseHandler(node,
                 connection,
                 storage::getInventory,
                 () -> responseHandlerMap.remove(connection.getId()));
-        responseHandlerMap.put(connection.getId(), responseHandler);*/
+        responseHandlerMap.put(connection.getId(), responseHandler);
     }
 
     private boolean canAdd(AddDataRequest message) {
@@ -15,16 +15,159 @@
  * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
  */
 
+
 package misq.p2p.data.filter;
 
+import com.google.common.hash.Hashing;
+import com.google.common.primitives.Longs;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.util.Random;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Bloom filter over the hash and sequence number of the entries the requester holds. Compared to the
+ * ProtectedDataFilter which carries 20 bytes hash and the sequence number per entry, the filter needs about 1.2 bytes
+ * per entry at a false positive rate of 1%.
+ * <p>
+ * As the sequence number is part of the filtered item, entries where the responder has a newer version than the
+ * requester do not match and are delivered. A false positive means the responder skips an entry the requester does
+ * not have (or has in an older version). Those entries are caught in a follow-up round with a filter using another
+ * tweak, so the false positives of both rounds are independent (see FOLLOW_UP_FALSE_POSITIVE_RATE).
+ * <p>
+ * Bit positions are derived by double hashing from a 128 bit murmur3 hash seeded with the tweak.
+ */
+@EqualsAndHashCode
+@Getter
 public class BloomFilter implements DataFilter {
-  /*  public boolean matches(MapKey mapKey, MapValue value) {
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+    // The follow-up round only needs to catch the false positives of the first round, so a higher rate is fine.
+    // Combined with the first round it results in a false positive rate of 0.1%.
+    public static final double FOLLOW_UP_FALSE_POSITIVE_RATE = 0.1;
+    // Limits the work and memory a requester can cause at the responder
+    public static final int MAX_NUM_BITS = 8 * 1024 * 1024;
+    public static final int MAX_NUM_HASH_FUNCTIONS = 30;
+    private static final int MIN_NUM_BITS = 64;
+
+    private final String dataType;
+    private final long[] bits;
+    private final int numBits;
+    private final int numHashFunctions;
+    private final int tweak;
+
+    /**
+     * @param dataType          Class name
+     * @param expectedNumItems  Number of items we will put into the filter
+     * @param falsePositiveRate Probability that mightContain returns true for an item which was not put.
+     *                          Must be between 0 and 1 (exclusive).
+     */
+    public BloomFilter(String dataType, int expectedNumItems, double falsePositiveRate) {
+        this(dataType, expectedNumItems, falsePositiveRate, new Random().nextInt());
+    }
+
+    public BloomFilter(String dataType, int expectedNumItems, double falsePositiveRate, int tweak) {
+        checkArgument(expectedNumItems >= 0, "expectedNumItems must not be negative");
+        checkArgument(falsePositiveRate > 0 && falsePositiveRate < 1, "falsePositiveRate must be in (0, 1)");
+        this.dataType = dataType;
+        this.tweak = tweak;
+        numBits = getOptimalNumBits(expectedNumItems, falsePositiveRate);
+        numHashFunctions = getOptimalNumHashFunctions(expectedNumItems, numBits);
+        bits = new long[(numBits + 63) / 64];
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public void put(byte[] hash, int sequenceNumber) {
+        long[] hashes = getHashes(hash, sequenceNumber);
+        long combined = hashes[0];
+        for (int i = 0; i < numHashFunctions; i++) {
+            int index = (int) ((combined & Long.MAX_VALUE) % numBits);
+            bits[index >>> 6] |= 1L << index;
+            combined += hashes[1];
+        }
+    }
+
+    public boolean mightContain(byte[] hash, int sequenceNumber) {
+        long[] hashes = getHashes(hash, sequenceNumber);
+        long combined = hashes[0];
+        for (int i = 0; i < numHashFunctions; i++) {
+            int index = (int) ((combined & Long.MAX_VALUE) % numBits);
+            if ((bits[index >>> 6] & (1L << index)) == 0) {
+                return false;
+            }
+            combined += hashes[1];
+        }
         return true;
-    }*/
+    }
+
+    /**
+     * @return The false positive rate based on the fraction of set bits.
+     */
+    public double getExpectedFalsePositiveRate() {
+        long numSetBits = 0;
+        for (long word : bits) {
+            numSetBits += Long.bitCount(word);
+        }
+        return Math.pow((double) numSetBits / numBits, numHashFunctions);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private long[] getHashes(byte[] hash, int sequenceNumber) {
+        byte[] bytes = Hashing.murmur3_128(tweak).newHasher()
+                .putBytes(hash)
+                .putInt(sequenceNumber)
+                .hash()
+                .asBytes();
+        // The bytes are little endian, we only need them to be independent
+        return new long[]{
+                Longs.fromBytes(bytes[7], bytes[6], bytes[5], bytes[4], bytes[3], bytes[2], bytes[1], bytes[0]),
+                Longs.fromBytes(bytes[15], bytes[14], bytes[13], bytes[12], bytes[11], bytes[10], bytes[9], bytes[8])
+        };
+    }
+
+    // The filter is received from the network, so we check it before we use it at the store
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (bits == null ||
+                numBits < MIN_NUM_BITS || numBits > MAX_NUM_BITS ||
+                bits.length != (numBits + 63) / 64 ||
+                numHashFunctions < 1 || numHashFunctions > MAX_NUM_HASH_FUNCTIONS) {
+            throw new InvalidObjectException("Invalid BloomFilter. numBits=" + numBits +
+                    ", numHashFunctions=" + numHashFunctions);
+        }
+    }
+
+    // m = -n * ln(p) / ln(2)^2
+    private static int getOptimalNumBits(int expectedNumItems, double falsePositiveRate) {
+        double numBits = -Math.max(1, expectedNumItems) * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        return (int) Math.min(MAX_NUM_BITS, Math.max(MIN_NUM_BITS, Math.ceil(numBits)));
+    }
+
+    // k = m / n * ln(2)
+    private static int getOptimalNumHashFunctions(int expectedNumItems, int numBits) {
+        long numHashFunctions = Math.round((double) numBits / Math.max(1, expectedNumItems) * Math.log(2));
+        return (int) Math.min(MAX_NUM_HASH_FUNCTIONS, Math.max(1, numHashFunctions));
+    }
 
     @Override
     public String toString() {
-        return "BloomFilter{}";
+        return "BloomFilter{" +
+                "\n     dataType='" + dataType + '\'' +
+                ",\n     numBits=" + numBits +
+                ",\n     numHashFunctions=" + numHashFunctions +
+                ",\n     tweak=" + tweak +
+                "\n}";
     }
 }
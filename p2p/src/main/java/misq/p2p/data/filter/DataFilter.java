@@ -21,4 +21,12 @@ package misq.p2p.data.filter;
 import java.io.Serializable;
 
 public interface DataFilter extends Serializable {
+    /**
+     * Filters are received from peers, so we check them before we use them.
+     *
+     * @return True if the filter values are in their valid ranges
+     */
+    default boolean isValid() {
+        return true;
+    }
 }
@@ -0,0 +1,259 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.data.filter;
+
+import com.google.common.hash.Hashing;
+import com.google.common.primitives.Ints;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Invertible Bloom lookup table (IBLT) over the hash and sequence number of the entries. Its size depends only on
+ * the expected number of differences between the requester and the responder, not on the size of the store.
+ * <p>
+ * The responder creates an IBLT of its own entries with the same parameters and subtracts the one of the requester.
+ * The entries both have cancel out, so decoding the result gives the symmetric difference: the items only the
+ * responder has are delivered, the items only the requester has are ignored. An entry which got updated at the
+ * responder shows up on both sides with different sequence numbers. If the difference is larger than expected
+ * decoding fails and the requester retries with a larger table.
+ * <p>
+ * Each cell holds the count of items, the XOR of the items and the XOR of a checksum of the items. The cells are
+ * split into NUM_HASH_FUNCTIONS sub tables, so each item maps to one cell per sub table.
+ */
+@EqualsAndHashCode
+@Getter
+public class InvertibleBloomFilter implements DataFilter {
+    public static final int HASH_SIZE = 20;
+    public static final int ITEM_SIZE = HASH_SIZE + 4;
+    public static final int NUM_HASH_FUNCTIONS = 3;
+    // Decoding succeeds with high probability if the number of cells is about 1.5 times the difference. For small
+    // differences a larger overhead is needed, which is covered by the MIN_NUM_CELLS.
+    private static final double CELL_OVERHEAD = 2;
+    private static final int MIN_NUM_CELLS = 30;
+    // Limits the work and memory a requester can cause at the responder. 100k cells are about 3.6 MB.
+    public static final int MAX_NUM_CELLS = 100_000;
+
+    @EqualsAndHashCode
+    @Getter
+    public static class Difference {
+        // Items the responder has but not the requester
+        private final Set<FilterItem> onlyInThis;
+        // Items the requester has but not the responder
+        private final Set<FilterItem> onlyInOther;
+
+        public Difference(Set<FilterItem> onlyInThis, Set<FilterItem> onlyInOther) {
+            this.onlyInThis = onlyInThis;
+            this.onlyInOther = onlyInOther;
+        }
+
+        @Override
+        public String toString() {
+            return "Difference{" +
+                    "\n     onlyInThis=" + onlyInThis.size() +
+                    ",\n     onlyInOther=" + onlyInOther.size() +
+                    "\n}";
+        }
+    }
+
+    private final String dataType;
+    private final int numCells;
+    private final int tweak;
+    private final int[] counts;
+    private final byte[] itemSums;
+    private final long[] checksums;
+
+    /**
+     * @param dataType           Class name
+     * @param expectedDifference Number of items we expect to differ between requester and responder
+     */
+    public InvertibleBloomFilter(String dataType, int expectedDifference) {
+        this(dataType, getNumCells(expectedDifference), new Random().nextInt());
+    }
+
+    public InvertibleBloomFilter(String dataType, int numCells, int tweak) {
+        checkArgument(numCells >= MIN_NUM_CELLS && numCells <= MAX_NUM_CELLS, "Invalid numCells " + numCells);
+        checkArgument(numCells % NUM_HASH_FUNCTIONS == 0, "numCells must be a multiple of NUM_HASH_FUNCTIONS");
+        this.dataType = dataType;
+        this.numCells = numCells;
+        this.tweak = tweak;
+        counts = new int[numCells];
+        itemSums = new byte[numCells * ITEM_SIZE];
+        checksums = new long[numCells];
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public void put(byte[] hash, int sequenceNumber) {
+        checkArgument(hash.length == HASH_SIZE, "Hash must be " + HASH_SIZE + " bytes");
+        byte[] item = ByteBuffer.allocate(ITEM_SIZE).put(hash).putInt(sequenceNumber).array();
+        update(counts, itemSums, checksums, item, 1);
+    }
+
+    /**
+     * @return An empty table with the same parameters, so it can be subtracted from this one.
+     */
+    public InvertibleBloomFilter createEmptyCopy() {
+        return new InvertibleBloomFilter(dataType, numCells, tweak);
+    }
+
+    /**
+     * @return The table containing the items of this table minus the items of the other table.
+     */
+    public InvertibleBloomFilter subtract(InvertibleBloomFilter other) {
+        checkArgument(numCells == other.numCells && tweak == other.tweak, "Tables must have the same parameters");
+        InvertibleBloomFilter result = createEmptyCopy();
+        for (int i = 0; i < numCells; i++) {
+            result.counts[i] = counts[i] - other.counts[i];
+            result.checksums[i] = checksums[i] ^ other.checksums[i];
+        }
+        for (int i = 0; i < itemSums.length; i++) {
+            result.itemSums[i] = (byte) (itemSums[i] ^ other.itemSums[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Decodes the items of a table which is the result of a subtraction. Items with a positive count are in this
+     * table, items with a negative count are in the other one.
+     *
+     * @return The difference or empty if the table cannot be fully decoded as the difference is too large.
+     */
+    public Optional<Difference> decode() {
+        int[] counts = this.counts.clone();
+        byte[] itemSums = this.itemSums.clone();
+        long[] checksums = this.checksums.clone();
+        Set<FilterItem> onlyInThis = new HashSet<>();
+        Set<FilterItem> onlyInOther = new HashSet<>();
+        Deque<Integer> pureCells = new ArrayDeque<>();
+        int numPeeled = 0;
+        int maxNumPeeled = NUM_HASH_FUNCTIONS * numCells;
+        for (int i = 0; i < numCells; i++) {
+            pureCells.add(i);
+        }
+        while (!pureCells.isEmpty()) {
+            int cell = pureCells.poll();
+            int count = counts[cell];
+            if (count != 1 && count != -1) {
+                continue;
+            }
+            byte[] item = Arrays.copyOfRange(itemSums, cell * ITEM_SIZE, (cell + 1) * ITEM_SIZE);
+            if (checksums[cell] != getChecksum(item)) {
+                continue;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(item);
+            byte[] hash = new byte[HASH_SIZE];
+            buffer.get(hash);
+            FilterItem filterItem = new FilterItem(hash, buffer.getInt());
+            // A peeled item is removed from all its cells, so in a valid table it cannot show up again. A crafted table
+            // (e.g. an item in only one of its cells) would otherwise flip the item between both sides forever.
+            if (onlyInThis.contains(filterItem) || onlyInOther.contains(filterItem)) {
+                return Optional.empty();
+            }
+            if (count == 1) {
+                onlyInThis.add(filterItem);
+            } else {
+                onlyInOther.add(filterItem);
+            }
+            if (++numPeeled > maxNumPeeled) {
+                // Cannot happen with a valid table, but the table might come from a malicious peer
+                return Optional.empty();
+            }
+            // Removing the item might make other cells pure
+            update(counts, itemSums, checksums, item, -count);
+            pureCells.addAll(Ints.asList(getCells(item)));
+        }
+        for (int i = 0; i < numCells; i++) {
+            if (counts[i] != 0 || checksums[i] != 0) {
+                return Optional.empty();
+            }
+        }
+        return Optional.of(new Difference(onlyInThis, onlyInOther));
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private void update(int[] counts, byte[] itemSums, long[] checksums, byte[] item, int delta) {
+        long checksum = getChecksum(item);
+        for (int cell : getCells(item)) {
+            counts[cell] += delta;
+            checksums[cell] ^= checksum;
+            int offset = cell * ITEM_SIZE;
+            for (int i = 0; i < ITEM_SIZE; i++) {
+                itemSums[offset + i] ^= item[i];
+            }
+        }
+    }
+
+    // One cell in each sub table
+    private int[] getCells(byte[] item) {
+        long hash = Hashing.murmur3_128(tweak).hashBytes(item).asLong();
+        int subTableSize = numCells / NUM_HASH_FUNCTIONS;
+        int[] cells = new int[NUM_HASH_FUNCTIONS];
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < NUM_HASH_FUNCTIONS; i++) {
+            cells[i] = i * subTableSize + Math.floorMod(h1 + i * h2, subTableSize);
+        }
+        return cells;
+    }
+
+    private long getChecksum(byte[] item) {
+        return Hashing.murmur3_128(~tweak).hashBytes(item).asLong();
+    }
+
+    // The filter is received from the network, so we check it before we use it at the store
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (numCells < MIN_NUM_CELLS || numCells > MAX_NUM_CELLS || numCells % NUM_HASH_FUNCTIONS != 0 ||
+                counts == null || counts.length != numCells ||
+                checksums == null || checksums.length != numCells ||
+                itemSums == null || itemSums.length != numCells * ITEM_SIZE) {
+            throw new InvalidObjectException("Invalid InvertibleBloomFilter. numCells=" + numCells);
+        }
+    }
+
+    static int getNumCells(int expectedDifference) {
+        int numCells = (int) Math.min(MAX_NUM_CELLS, Math.max(MIN_NUM_CELLS, Math.ceil(CELL_OVERHEAD * expectedDifference)));
+        // Round down to a multiple of the number of sub tables
+        return numCells - numCells % NUM_HASH_FUNCTIONS;
+    }
+
+    @Override
+    public String toString() {
+        return "InvertibleBloomFilter{" +
+                "\n     dataType='" + dataType + '\'' +
+                ",\n     numCells=" + numCells +
+                ",\n     tweak=" + tweak +
+                "\n}";
+    }
+}
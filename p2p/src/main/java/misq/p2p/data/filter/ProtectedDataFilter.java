@@ -22,6 +22,8 @@ import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import misq.p2p.data.storage.MapKey;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -31,7 +33,7 @@ import java.util.stream.Collectors;
 public class ProtectedDataFilter implements DataFilter {
     private final String dataType;
     private final Set<FilterItem> filterItems;
-    transient private final Map<MapKey, Integer> filterMap;
+    transient private Map<MapKey, Integer> filterMap;
     private final int range;
     private final int offset;
 
@@ -48,9 +50,28 @@ public class ProtectedDataFilter implements DataFilter {
     public ProtectedDataFilter(String dataType, Set<FilterItem> filterItems, int range, int offset) {
         this.dataType = dataType;
         this.filterItems = filterItems;
-        filterMap = filterItems.stream()
-                .collect(Collectors.toMap(e -> new MapKey(e.getHash()), FilterItem::getSequenceNumber));
+        filterMap = toFilterMap(filterItems);
         this.range = range;
         this.offset = offset;
     }
+
+    @Override
+    public boolean isValid() {
+        return dataType != null &&
+                filterItems != null &&
+                offset >= 0 && offset <= 100 &&
+                range >= 0 && range <= 100 &&
+                offset + range <= 100;
+    }
+
+    // The filterMap is transient, so we need to create it when we receive the filter
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        filterMap = toFilterMap(filterItems);
+    }
+
+    private static Map<MapKey, Integer> toFilterMap(Set<FilterItem> filterItems) {
+        return filterItems.stream()
+                .collect(Collectors.toMap(e -> new MapKey(e.getHash()), FilterItem::getSequenceNumber));
+    }
 }
@@ -29,10 +29,18 @@ import java.util.List;
 public class Inventory implements Message {
     private final List<? extends AuthenticatedDataRequest> entries;
     private final int numDropped;
+    // Set if the difference to an InvertibleBloomFilter could not be decoded. The requester needs to retry with a
+    // larger table or use another filter.
+    private final boolean reconciliationFailed;
 
     public Inventory(List<? extends AuthenticatedDataRequest> entries, int numDropped) {
+        this(entries, numDropped, false);
+    }
+
+    public Inventory(List<? extends AuthenticatedDataRequest> entries, int numDropped, boolean reconciliationFailed) {
         this.entries = entries;
         this.numDropped = numDropped;
+        this.reconciliationFailed = reconciliationFailed;
     }
 
     @Override
@@ -40,6 +48,7 @@ public class Inventory implements Message {
         return "Inventory{" +
                 "\n     entries=" + entries +
                 ",\n     numDropped=" + numDropped +
+                ",\n     reconciliationFailed=" + reconciliationFailed +
                 "\n}";
     }
 }
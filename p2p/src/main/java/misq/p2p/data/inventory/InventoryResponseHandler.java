@@ -20,6 +20,7 @@ package misq.p2p.data.inventory;
 import lombok.extern.slf4j.Slf4j;
 import misq.common.util.Disposable;
 import misq.p2p.data.filter.DataFilter;
+import misq.p2p.data.filter.ProtectedDataFilter;
 import misq.p2p.message.Message;
 import misq.p2p.node.Connection;
 import misq.p2p.node.MessageListener;
@@ -29,10 +30,15 @@ import java.util.function.Function;
 
 @Slf4j
 public class InventoryResponseHandler implements MessageListener, Disposable {
+    // A peer might retry a failed reconciliation with a larger InvertibleBloomFilter and then fall back to the
+    // two rounds of a BloomFilter
+    private static final int MAX_NUM_REQUESTS = 4;
+
     private final Node node;
     private final Connection connection;
     private final Function<DataFilter, Inventory> inventoryProvider;
     private final Runnable completeHandler;
+    private int numRequests;
 
     public InventoryResponseHandler(Node node,
                                     Connection connection,
@@ -54,10 +60,20 @@ public class InventoryResponseHandler implements MessageListener, Disposable {
     public void onMessage(Message message, Connection connection) {
         if (this.connection.getId().equals(connection.getId()) && message instanceof InventoryRequest) {
             InventoryRequest request = (InventoryRequest) message;
-            Inventory inventory = inventoryProvider.apply(request.getDataFilter());
-            node.send(new InventoryResponse(inventory), connection);
-            node.removeMessageListener(this);
-            completeHandler.run();
+            DataFilter dataFilter = request.getDataFilter();
+            if (dataFilter == null || !dataFilter.isValid()) {
+                // We ignore the request, but it counts for the max. number of requests
+                log.warn("Ignoring InventoryRequest from {} with an invalid filter. {}", connection.getPeerAddress(),
+                        dataFilter);
+            } else {
+                Inventory inventory = inventoryProvider.apply(dataFilter);
+                node.send(new InventoryResponse(inventory), connection);
+            }
+            numRequests++;
+            if (numRequests >= MAX_NUM_REQUESTS || dataFilter instanceof ProtectedDataFilter) {
+                node.removeMessageListener(this);
+                completeHandler.run();
+            }
         }
     }
 
@@ -0,0 +1,224 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.data.inventory;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import misq.p2p.Address;
+import misq.p2p.data.filter.DataFilter;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * Initial sync which splits the deterministically sorted data (by created date) into overlapping partitions and
+ * requests them in parallel from different peers. As the peers do not have exactly the same data, the partitions
+ * overlap by OVERLAP percent. A partition which fails or does not complete within PARTITION_TIMEOUT gets reassigned to
+ * another peer. As the responding peer serves one request per connection, we only use peers which have not been used
+ * for another partition. The peers after the first MAX_NUM_PARTITIONS are kept for those reassignments.
+ * <p>
+ * The received inventories are passed to the inventoryHandler which merges them into the store.
+ * <p>
+ * Partitions which failed at all attempts are reported in the InventorySyncResult, so the caller can request them
+ * again, e.g. once we have connections to other peers. If all partitions failed the future completes exceptionally.
+ */
+@Slf4j
+public class InventorySyncCoordinator {
+    public static final int MAX_NUM_PARTITIONS = 4;
+    private static final int OVERLAP = 5;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long PARTITION_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+    @Getter
+    public static class Partition {
+        // In percent of the data
+        private final int offset;
+        private final int range;
+        private int numAttempts;
+
+        Partition(int offset, int range) {
+            this.offset = offset;
+            this.range = range;
+        }
+
+        @Override
+        public String toString() {
+            return "Partition{" +
+                    "\n     offset=" + offset +
+                    ",\n     range=" + range +
+                    ",\n     numAttempts=" + numAttempts +
+                    "\n}";
+        }
+    }
+
+    private final BiFunction<DataFilter, Address, CompletableFuture<RequestInventoryResult>> requestFunction;
+    private final BiFunction<Integer, Integer, DataFilter> filterFactory;
+    private final Consumer<Inventory> inventoryHandler;
+    private final long partitionTimeout;
+
+    private final CompletableFuture<InventorySyncResult> future = new CompletableFuture<>();
+    private final List<Address> peers = new ArrayList<>();
+    private final Set<Address> usedPeers = new HashSet<>();
+    private final List<Partition> failedPartitions = new ArrayList<>();
+    private int numPartitions, numPendingPartitions, numEntries, numDropped;
+    private long ts;
+
+    /**
+     * @param requestFunction  Sends the inventory request with the given filter to the given peer
+     * @param filterFactory    Creates the filter for a range and offset (in percent of the data)
+     * @param inventoryHandler Merges the received inventory into our store
+     */
+    public InventorySyncCoordinator(BiFunction<DataFilter, Address, CompletableFuture<RequestInventoryResult>> requestFunction,
+                                    BiFunction<Integer, Integer, DataFilter> filterFactory,
+                                    Consumer<Inventory> inventoryHandler) {
+        this(requestFunction, filterFactory, inventoryHandler, PARTITION_TIMEOUT);
+    }
+
+    InventorySyncCoordinator(BiFunction<DataFilter, Address, CompletableFuture<RequestInventoryResult>> requestFunction,
+                             BiFunction<Integer, Integer, DataFilter> filterFactory,
+                             Consumer<Inventory> inventoryHandler,
+                             long partitionTimeout) {
+        this.requestFunction = requestFunction;
+        this.filterFactory = filterFactory;
+        this.inventoryHandler = inventoryHandler;
+        this.partitionTimeout = partitionTimeout;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * @param peers The peers we request the partitions from. Should be ordered by preference as the first peers get
+     *              the initial partitions and the others are used for reassignments.
+     */
+    public CompletableFuture<InventorySyncResult> sync(List<Address> peers) {
+        if (peers.isEmpty()) {
+            future.completeExceptionally(new IllegalStateException("No peers for inventory sync"));
+            return future;
+        }
+        List<Partition> partitions;
+        synchronized (this) {
+            ts = System.currentTimeMillis();
+            this.peers.addAll(peers);
+            partitions = createPartitions(Math.min(peers.size(), MAX_NUM_PARTITIONS));
+            numPartitions = partitions.size();
+            numPendingPartitions = numPartitions;
+            // We reserve the peers for the initial partitions, so a failing request does not get reassigned to them
+            usedPeers.addAll(peers.subList(0, partitions.size()));
+        }
+        for (int i = 0; i < partitions.size(); i++) {
+            request(partitions.get(i), peers.get(i));
+        }
+        return future;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Package private
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+
+    static List<Partition> createPartitions(int numPartitions) {
+        List<Partition> partitions = new ArrayList<>();
+        for (int i = 0; i < numPartitions; i++) {
+            int start = Math.max(0, i * 100 / numPartitions - OVERLAP);
+            int end = Math.min(100, (i + 1) * 100 / numPartitions + OVERLAP);
+            partitions.add(new Partition(start, end - start));
+        }
+        return partitions;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private void request(Partition partition, Address peer) {
+        synchronized (this) {
+            partition.numAttempts++;
+            usedPeers.add(peer);
+        }
+        DataFilter dataFilter = filterFactory.apply(partition.getRange(), partition.getOffset());
+        requestFunction.apply(dataFilter, peer)
+                .orTimeout(partitionTimeout, TimeUnit.MILLISECONDS)
+                .whenComplete((result, throwable) -> {
+                    if (result != null) {
+                        onSuccess(result.getInventory(), peer);
+                    } else {
+                        onFailure(partition, peer, throwable);
+                    }
+                });
+    }
+
+    private void onSuccess(Inventory inventory, Address peer) {
+        try {
+            inventoryHandler.accept(inventory);
+        } catch (Throwable t) {
+            log.error("Could not merge inventory from {}", peer, t);
+        }
+        synchronized (this) {
+            numEntries += inventory.getEntries().size();
+            numDropped += inventory.getNumDropped();
+            numPendingPartitions--;
+        }
+        maybeComplete();
+    }
+
+    private void onFailure(Partition partition, Address peer, Throwable throwable) {
+        log.info("Inventory request for {} from {} failed: {}", partition, peer, throwable.toString());
+        Optional<Address> nextPeer;
+        synchronized (this) {
+            nextPeer = partition.getNumAttempts() < MAX_ATTEMPTS ?
+                    peers.stream().filter(e -> !usedPeers.contains(e)).findFirst() :
+                    Optional.empty();
+            if (!nextPeer.isPresent()) {
+                log.warn("Inventory request for {} failed and we have no other peer left", partition);
+                failedPartitions.add(partition);
+                numPendingPartitions--;
+            }
+        }
+        if (nextPeer.isPresent()) {
+            request(partition, nextPeer.get());
+        } else {
+            maybeComplete();
+        }
+    }
+
+    private void maybeComplete() {
+        InventorySyncResult result;
+        synchronized (this) {
+            if (numPendingPartitions > 0) {
+                return;
+            }
+            if (failedPartitions.size() == numPartitions) {
+                future.completeExceptionally(new IllegalStateException("Inventory requests failed for all partitions"));
+                return;
+            }
+            result = new InventorySyncResult(numEntries,
+                    numDropped,
+                    new ArrayList<>(failedPartitions),
+                    System.currentTimeMillis() - ts);
+        }
+        future.complete(result);
+    }
+}
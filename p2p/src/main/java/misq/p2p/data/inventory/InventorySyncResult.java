@@ -0,0 +1,60 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.data.inventory;
+
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+public class InventorySyncResult {
+    private final int numEntries;
+    private final int numDropped;
+    // Partitions we did not receive from any peer
+    private final List<InventorySyncCoordinator.Partition> failedPartitions;
+    private final long duration;
+
+    public InventorySyncResult(int numEntries,
+                               int numDropped,
+                               List<InventorySyncCoordinator.Partition> failedPartitions,
+                               long duration) {
+        this.numEntries = numEntries;
+        this.numDropped = numDropped;
+        this.failedPartitions = failedPartitions;
+        this.duration = duration;
+    }
+
+    public int getNumFailedPartitions() {
+        return failedPartitions.size();
+    }
+
+    public boolean isComplete() {
+        return failedPartitions.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "InventorySyncResult{" +
+                "\n     numEntries=" + numEntries +
+                ",\n     numDropped=" + numDropped +
+                ",\n     failedPartitions=" + failedPartitions +
+                ",\n     duration=" + duration +
+                "\n}";
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.data.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import misq.p2p.data.filter.BloomFilter;
+import misq.p2p.data.filter.InvertibleBloomFilter;
+import misq.p2p.data.filter.ProtectedDataFilter;
+import misq.p2p.data.inventory.Inventory;
+import misq.p2p.data.storage.auth.AuthenticatedDataRequest;
+import misq.p2p.data.storage.auth.Result;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Inventory handling shared by the stores of AuthenticatedDataRequests. The entries are identified by their MapKey,
+ * which holds the hash of the payload, and their sequence number.
+ */
+@Slf4j
+public class InventoryUtil {
+    public interface EntryHandler {
+        /**
+         * @return The result of adding or removing the entry or empty if the store does not support the entry type
+         */
+        Optional<Result> apply(AuthenticatedDataRequest entry) throws NoSuchAlgorithmException;
+    }
+
+    /**
+     * Applies the entries of an inventory we received from a peer. Entries we have already (e.g. from overlapping
+     * partitions) fail the sequence number check and are ignored.
+     *
+     * @return Number of entries which got added or removed
+     */
+    public static int addAll(Inventory inventory, EntryHandler entryHandler) {
+        int numApplied = 0;
+        for (AuthenticatedDataRequest entry : inventory.getEntries()) {
+            try {
+                Optional<Result> result = entryHandler.apply(entry);
+                if (!result.isPresent()) {
+                    log.warn("Unexpected inventory entry {}", entry);
+                    continue;
+                }
+                if (result.get().isSuccess()) {
+                    numApplied++;
+                }
+            } catch (NoSuchAlgorithmException e) {
+                log.error(e.toString(), e);
+            }
+        }
+        return numApplied;
+    }
+
+    public static Inventory getInventory(Map<MapKey, ? extends AuthenticatedDataRequest> map,
+                                         ProtectedDataFilter dataFilter,
+                                         int maxItems) {
+        List<AuthenticatedDataRequest> inventoryMap = getInventoryMap(map, dataFilter.getFilterMap());
+        int size = inventoryMap.size();
+        int offset = dataFilter.getOffset();
+        int range = dataFilter.getRange();
+        if (size <= maxItems && range == 100) {
+            return new Inventory(inventoryMap, 0);
+        }
+
+        // If only a partition of the data is requested we deliver the entries in that range
+        List<? extends AuthenticatedDataRequest> result = Util.getSubSet(inventoryMap, offset, range, maxItems);
+        int numDropped = Util.getRangeSize(size, offset, range) - result.size();
+        return new Inventory(result, numDropped);
+    }
+
+    /**
+     * Delivers the entries which are not contained in the requesters Bloom filter. We iterate our map and test each
+     * entry against the filter, so no map gets created from the filter.
+     */
+    public static Inventory getInventory(Map<MapKey, ? extends AuthenticatedDataRequest> map,
+                                         BloomFilter bloomFilter,
+                                         int maxItems) {
+        List<AuthenticatedDataRequest> inventoryMap = map.entrySet().stream()
+                .filter(entry -> !bloomFilter.mightContain(entry.getKey().getHash(), entry.getValue().getSequenceNumber()))
+                .map(Map.Entry::getValue)
+                .collect(Collectors.toList());
+        return limit(inventoryMap, maxItems);
+    }
+
+    /**
+     * @return A Bloom filter of all our entries to be used for an inventory request.
+     */
+    public static BloomFilter getBloomFilter(Map<MapKey, ? extends AuthenticatedDataRequest> map,
+                                             String dataType,
+                                             double falsePositiveRate) {
+        BloomFilter bloomFilter = new BloomFilter(dataType, map.size(), falsePositiveRate);
+        map.forEach((mapKey, value) -> bloomFilter.put(mapKey.getHash(), value.getSequenceNumber()));
+        return bloomFilter;
+    }
+
+    /**
+     * Delivers the entries which are only in our store by decoding the difference of our entries and the requesters
+     * InvertibleBloomFilter. We only look up the entries of the difference in our map.
+     */
+    public static Inventory getInventory(Map<MapKey, ? extends AuthenticatedDataRequest> map,
+                                         InvertibleBloomFilter requesterFilter,
+                                         int maxItems) {
+        InvertibleBloomFilter ourFilter = requesterFilter.createEmptyCopy();
+        map.forEach((mapKey, value) -> ourFilter.put(mapKey.getHash(), value.getSequenceNumber()));
+        Optional<InvertibleBloomFilter.Difference> difference = ourFilter.subtract(requesterFilter).decode();
+        if (!difference.isPresent()) {
+            return new Inventory(List.of(), 0, true);
+        }
+
+        List<AuthenticatedDataRequest> inventoryMap = difference.get().getOnlyInThis().stream()
+                .map(filterItem -> map.get(new MapKey(filterItem.getHash())))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        return limit(inventoryMap, maxItems);
+    }
+
+    /**
+     * @return An InvertibleBloomFilter of all our entries to be used for an inventory request.
+     */
+    public static InvertibleBloomFilter getInvertibleBloomFilter(Map<MapKey, ? extends AuthenticatedDataRequest> map,
+                                                                 String dataType,
+                                                                 int expectedDifference) {
+        InvertibleBloomFilter filter = new InvertibleBloomFilter(dataType, expectedDifference);
+        map.forEach((mapKey, value) -> filter.put(mapKey.getHash(), value.getSequenceNumber()));
+        return filter;
+    }
+
+    /**
+     * @return The entries which are not in the requesterMap or have a higher sequence number than there
+     */
+    public static List<AuthenticatedDataRequest> getInventoryMap(Map<MapKey, ? extends AuthenticatedDataRequest> map,
+                                                                 Map<MapKey, Integer> requesterMap) {
+        return map.entrySet().stream()
+                .filter(entry -> {
+                    // Any entry we have but is not included in filter gets added
+                    if (!requesterMap.containsKey(entry.getKey())) {
+                        return true;
+                    }
+                    // If there is a match we add entry if sequence number is higher
+                    return entry.getValue().getSequenceNumber() > requesterMap.get(entry.getKey());
+                })
+                .map(Map.Entry::getValue)
+                .collect(Collectors.toList());
+    }
+
+    private static Inventory limit(List<AuthenticatedDataRequest> inventoryMap, int maxItems) {
+        int size = inventoryMap.size();
+        if (size <= maxItems) {
+            return new Inventory(inventoryMap, 0);
+        }
+
+        List<? extends AuthenticatedDataRequest> result = Util.getSubSet(inventoryMap, 0, 100, maxItems);
+        int numDropped = size - result.size();
+        return new Inventory(result, numDropped);
+    }
+}
@@ -18,6 +18,11 @@
 package misq.p2p.data.storage;
 
 
+import misq.p2p.data.filter.BloomFilter;
+import misq.p2p.data.filter.DataFilter;
+import misq.p2p.data.filter.InvertibleBloomFilter;
+import misq.p2p.data.filter.ProtectedDataFilter;
+import misq.p2p.data.inventory.Inventory;
 import misq.p2p.data.storage.append.AppendOnlyDataStore;
 import misq.p2p.data.storage.auth.AuthenticatedDataStore;
 import misq.p2p.data.storage.mailbox.DataStore;
@@ -27,6 +32,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -76,6 +82,40 @@ public class Storage {
         return appendOnlyDataStores.get(key);
     }
 
+    /**
+     * Delegates the inventory request to the store of the filters data type. If we do not have a store for that data
+     * type we return an empty inventory.
+     */
+    public Inventory getInventory(DataFilter dataFilter) {
+        if (dataFilter instanceof BloomFilter) {
+            BloomFilter bloomFilter = (BloomFilter) dataFilter;
+            String dataType = bloomFilter.getDataType();
+            if (authenticatedDataStores.containsKey(dataType)) {
+                return authenticatedDataStores.get(dataType).getInventory(bloomFilter);
+            } else if (mailboxStores.containsKey(dataType)) {
+                return mailboxStores.get(dataType).getInventory(bloomFilter);
+            }
+        } else if (dataFilter instanceof InvertibleBloomFilter) {
+            InvertibleBloomFilter invertibleBloomFilter = (InvertibleBloomFilter) dataFilter;
+            String dataType = invertibleBloomFilter.getDataType();
+            if (authenticatedDataStores.containsKey(dataType)) {
+                return authenticatedDataStores.get(dataType).getInventory(invertibleBloomFilter);
+            } else if (mailboxStores.containsKey(dataType)) {
+                return mailboxStores.get(dataType).getInventory(invertibleBloomFilter);
+            }
+        } else if (dataFilter instanceof ProtectedDataFilter) {
+            ProtectedDataFilter protectedDataFilter = (ProtectedDataFilter) dataFilter;
+            String dataType = protectedDataFilter.getDataType();
+            if (authenticatedDataStores.containsKey(dataType)) {
+                return authenticatedDataStores.get(dataType).getInventory(protectedDataFilter);
+            } else if (mailboxStores.containsKey(dataType)) {
+                return mailboxStores.get(dataType).getInventory(protectedDataFilter);
+            }
+        }
+        log.warn("No store found for dataFilter {}", dataFilter);
+        return new Inventory(new ArrayList<>(), 0);
+    }
+
 
     public void shutdown() {
         authenticatedDataStores.values().forEach(DataStore::shutdown);
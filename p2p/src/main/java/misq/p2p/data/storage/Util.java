@@ -34,7 +34,7 @@ public class Util {
         checkArgument(filterRange <= 100);
         checkArgument(filterOffset + filterRange <= 100);
         int offset = size * filterOffset / 100;
-        int range = size * filterRange / 100;
+        int range = getRangeSize(size, filterOffset, filterRange);
         return map.stream()
                 .sorted(Comparator.comparingLong(AuthenticatedDataRequest::getCreated))
                 .skip(offset)
@@ -42,4 +42,12 @@ public class Util {
                 .limit(maxItems)
                 .collect(Collectors.toList());
     }
+
+    /**
+     * The end of the range is rounded the same way as the offset, so adjacent ranges do not leave a gap and a range
+     * ending at 100 includes the last item.
+     */
+    public static int getRangeSize(int size, int filterOffset, int filterRange) {
+        return size * (filterOffset + filterRange) / 100 - size * filterOffset / 100;
+    }
 }
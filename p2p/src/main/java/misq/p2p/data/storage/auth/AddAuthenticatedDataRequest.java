@@ -23,18 +23,22 @@ import lombok.extern.slf4j.Slf4j;
 import misq.common.security.DigestUtil;
 import misq.common.security.SignatureUtil;
 import misq.common.util.Hex;
+import misq.p2p.data.storage.MapKey;
 import misq.p2p.data.storage.MetaData;
+import misq.p2p.message.ExpirableMessage;
+import misq.p2p.message.PayloadMessage;
+import misq.p2p.message.SupersedeKey;
 
-import java.io.Serializable;
 import java.security.GeneralSecurityException;
 import java.security.KeyPair;
 import java.security.PublicKey;
 import java.util.Arrays;
+import java.util.Optional;
 
 @Getter
 @EqualsAndHashCode
 @Slf4j
-public class AddAuthenticatedDataRequest implements AuthenticatedDataRequest, Serializable {
+public class AddAuthenticatedDataRequest implements AuthenticatedDataRequest, ExpirableMessage, PayloadMessage {
 
     public static AddAuthenticatedDataRequest from(AuthenticatedDataStore store, AuthenticatedPayload payload, KeyPair keyPair)
             throws GeneralSecurityException {
@@ -103,6 +107,23 @@ public class AddAuthenticatedDataRequest implements AuthenticatedDataRequest, Se
         return authenticatedData.getPayload().getMetaData();
     }
 
+    @Override
+    public Class<?> getPayloadType() {
+        return authenticatedData.getPayload().getClass();
+    }
+
+    @Override
+    public long getDeadline() {
+        long ttl = getMetaData().getTtl();
+        return ttl > 0 ? authenticatedData.getCreated() + ttl : 0;
+    }
+
+    @Override
+    public Optional<SupersedeKey> getSupersedeKey() {
+        MapKey payloadHash = new MapKey(DigestUtil.hash(authenticatedData.getPayload().serialize()));
+        return Optional.of(new SupersedeKey(payloadHash, getSequenceNumber()));
+    }
+
     @Override
     public String toString() {
         return "AddProtectedDataRequest{" +
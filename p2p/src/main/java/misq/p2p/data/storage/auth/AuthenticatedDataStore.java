@@ -21,8 +21,11 @@ import com.google.common.annotations.VisibleForTesting;
 import lombok.extern.slf4j.Slf4j;
 import misq.common.persistence.Persistence;
 import misq.common.security.DigestUtil;
+import misq.p2p.data.filter.BloomFilter;
+import misq.p2p.data.filter.InvertibleBloomFilter;
 import misq.p2p.data.filter.ProtectedDataFilter;
 import misq.p2p.data.inventory.Inventory;
+import misq.p2p.data.storage.InventoryUtil;
 import misq.p2p.data.storage.MapKey;
 import misq.p2p.data.storage.MetaData;
 import misq.p2p.data.storage.Util;
@@ -35,8 +38,8 @@ import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
 import java.security.NoSuchAlgorithmException;
-import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
@@ -225,17 +228,40 @@ public class AuthenticatedDataStore extends DataStore {
         return new Result(true);
     }
 
+    /**
+     * Applies the entries of an inventory we received from a peer.
+     *
+     * @return Number of entries which got added or removed
+     */
+    public int addAll(Inventory inventory) {
+        return InventoryUtil.addAll(inventory, entry -> {
+            if (entry instanceof AddAuthenticatedDataRequest) {
+                return Optional.of(add((AddAuthenticatedDataRequest) entry));
+            } else if (entry instanceof RemoveRequest) {
+                return Optional.of(remove((RemoveRequest) entry));
+            }
+            return Optional.empty();
+        });
+    }
+
     public Inventory getInventory(ProtectedDataFilter dataFilter) {
-        List<AuthenticatedDataRequest> inventoryMap = getInventoryMap(map, dataFilter.getFilterMap());
-        int maxItems = getMaxItems();
-        int size = inventoryMap.size();
-        if (size <= maxItems) {
-            return new Inventory(inventoryMap, 0);
-        }
+        return InventoryUtil.getInventory(map, dataFilter, getMaxItems());
+    }
+
+    public Inventory getInventory(BloomFilter bloomFilter) {
+        return InventoryUtil.getInventory(map, bloomFilter, getMaxItems());
+    }
 
-        List<? extends AuthenticatedDataRequest> result = Util.getSubSet(inventoryMap, dataFilter.getOffset(), dataFilter.getRange(), maxItems);
-        int numDropped = size - result.size();
-        return new Inventory(result, numDropped);
+    public BloomFilter getBloomFilter(String dataType, double falsePositiveRate) {
+        return InventoryUtil.getBloomFilter(map, dataType, falsePositiveRate);
+    }
+
+    public Inventory getInventory(InvertibleBloomFilter requesterFilter) {
+        return InventoryUtil.getInventory(map, requesterFilter, getMaxItems());
+    }
+
+    public InvertibleBloomFilter getInvertibleBloomFilter(String dataType, int expectedDifference) {
+        return InventoryUtil.getInvertibleBloomFilter(map, dataType, expectedDifference);
     }
 
     @Override
@@ -274,21 +300,6 @@ public class AuthenticatedDataStore extends DataStore {
         return map;
     }
 
-    List<AuthenticatedDataRequest> getInventoryMap(ConcurrentHashMap<MapKey, AuthenticatedDataRequest> map,
-                                                   Map<MapKey, Integer> requesterMap) {
-        return map.entrySet().stream()
-                .filter(entry -> {
-                    // Any entry we have but is not included in filter gets added
-                    if (!requesterMap.containsKey(entry.getKey())) {
-                        return true;
-                    }
-                    // If there is a match we add entry if sequence number is higher
-                    return entry.getValue().getSequenceNumber() > requesterMap.get(entry.getKey());
-                })
-                .map(Map.Entry::getValue)
-                .collect(Collectors.toList());
-    }
-
     private void persist() {
         Persistence.write(map, storageFilePath);
     }
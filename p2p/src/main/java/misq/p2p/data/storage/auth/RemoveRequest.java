@@ -24,18 +24,21 @@ import misq.common.security.DigestUtil;
 import misq.common.security.SignatureUtil;
 import misq.common.util.Hex;
 import misq.p2p.data.NetworkData;
+import misq.p2p.data.storage.MapKey;
 import misq.p2p.data.storage.MetaData;
+import misq.p2p.message.ExpirableMessage;
+import misq.p2p.message.SupersedeKey;
 
-import java.io.Serializable;
 import java.security.GeneralSecurityException;
 import java.security.KeyPair;
 import java.security.PublicKey;
 import java.util.Arrays;
+import java.util.Optional;
 
 @Getter
 @EqualsAndHashCode
 @Slf4j
-public class RemoveRequest implements AuthenticatedDataRequest, Serializable {
+public class RemoveRequest implements AuthenticatedDataRequest, ExpirableMessage {
 
 
     public static RemoveRequest from(AuthenticatedDataStore store, NetworkData networkData, KeyPair keyPair)
@@ -103,6 +106,17 @@ public class RemoveRequest implements AuthenticatedDataRequest, Serializable {
         return sequenceNumber <= seqNumberFromMap;
     }
 
+    @Override
+    public long getDeadline() {
+        return 0;
+    }
+
+    // A remove request supersedes queued add requests of the same data with a lower sequence number
+    @Override
+    public Optional<SupersedeKey> getSupersedeKey() {
+        return Optional.of(new SupersedeKey(new MapKey(hash), sequenceNumber));
+    }
+
 
     @Override
     public String toString() {
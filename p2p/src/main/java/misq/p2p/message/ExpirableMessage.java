@@ -0,0 +1,51 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.message;
+
+import java.util.Optional;
+
+/**
+ * Messages which can become stale while they wait in an outbound queue. Before writing such a message to the socket
+ * we drop it if its deadline has passed or if a message with the same SupersedeKey but a higher sequence number has
+ * been queued to the same peer after it.
+ * Wrapper messages delegate to the wrapped message.
+ */
+public interface ExpirableMessage extends Message {
+    static long getDeadline(Message message) {
+        return message instanceof ExpirableMessage ? ((ExpirableMessage) message).getDeadline() : 0;
+    }
+
+    static Optional<SupersedeKey> getSupersedeKey(Message message) {
+        return message instanceof ExpirableMessage ?
+                ((ExpirableMessage) message).getSupersedeKey() :
+                Optional.empty();
+    }
+
+    static boolean isExpired(Message message) {
+        long deadline = getDeadline(message);
+        return deadline > 0 && System.currentTimeMillis() > deadline;
+    }
+
+    /**
+     * @return Time in ms since epoch after which the message must not be sent anymore. 0 if it does not expire.
+     */
+    long getDeadline();
+
+    Optional<SupersedeKey> getSupersedeKey();
+}
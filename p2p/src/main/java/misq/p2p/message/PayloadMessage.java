@@ -0,0 +1,34 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.message;
+
+/**
+ * Messages carrying a payload of varying type, e.g. an AddAuthenticatedDataRequest carrying an offer or an alert.
+ * The RoutingTable uses the payload type, so payloads sent with the same message type can be routed differently.
+ */
+public interface PayloadMessage extends Message {
+    /**
+     * @return The payload type if the message is a PayloadMessage, otherwise the message type
+     */
+    static Class<?> getPayloadType(Message message) {
+        return message instanceof PayloadMessage ? ((PayloadMessage) message).getPayloadType() : message.getClass();
+    }
+
+    Class<?> getPayloadType();
+}
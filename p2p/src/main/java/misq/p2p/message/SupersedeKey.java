@@ -0,0 +1,49 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.message;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import misq.p2p.data.storage.MapKey;
+
+import java.io.Serializable;
+
+/**
+ * Identifies a version of a data item: The hash of the payload and the sequence number. A message with a higher
+ * sequence number for the same payload hash supersedes the older one.
+ */
+@EqualsAndHashCode
+@Getter
+public class SupersedeKey implements Serializable {
+    private final MapKey payloadHash;
+    private final int sequenceNumber;
+
+    public SupersedeKey(MapKey payloadHash, int sequenceNumber) {
+        this.payloadHash = payloadHash;
+        this.sequenceNumber = sequenceNumber;
+    }
+
+    @Override
+    public String toString() {
+        return "SupersedeKey{" +
+                "\n     payloadHash=" + payloadHash +
+                ",\n     sequenceNumber=" + sequenceNumber +
+                "\n}";
+    }
+}
@@ -19,13 +19,17 @@ package misq.p2p.node;
 
 
 import misq.common.util.MapUtils;
+import misq.common.util.Tuple2;
 import misq.p2p.Address;
 import misq.p2p.NetworkConfig;
 import misq.p2p.NetworkType;
 import misq.p2p.message.Message;
 import misq.p2p.node.capability.Capability;
 import misq.p2p.node.capability.CapabilityRequestHandler;
+import misq.p2p.node.capability.CapabilityResponse;
 import misq.p2p.node.capability.CapabilityResponseHandler;
+import misq.p2p.node.capability.ResumptionTicketCache;
+import misq.p2p.node.capability.ResumptionTicketIssuer;
 import misq.p2p.node.connection.InboundConnection;
 import misq.p2p.node.connection.OutboundConnection;
 import misq.p2p.node.connection.RawConnection;
@@ -36,6 +40,7 @@ import org.slf4j.LoggerFactory;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArraySet;
 
 import static com.google.common.base.Preconditions.checkArgument;
@@ -46,8 +51,13 @@ import static com.google.common.base.Preconditions.checkArgument;
  * - Request {@link Capability} from peer and transmit own {@link Capability}
  * <p>
  * Only after that initial handshake is completed messages can be sent and received.
- * When attempting to send a Message while the handshake is not completed the message will kept in a queue for
- * being processed once the handshake is completed.
+ * When attempting to send a Message to an address while the handshake is not completed the message will kept in an
+ * outbound queue for that address. The queue is flushed to the connection the moment the CapabilityResponse got
+ * verified, before any listener gets notified about the new connection. That way the caller does not need to wait for
+ * the connection future before sending and the first message is written without any further delay.
+ * <p>
+ * At a reconnect to a peer we have completed a handshake with before, we present the ResumptionTicket the peer has
+ * issued to us and do not wait for the CapabilityResponse (see CapabilityRequestHandler).
  * <p>
  * ConnectionListeners on that node will only be notified about new connections after the handshake is completed.
  * MessageListeners on that node will only be notified about new messages after the handshake is completed.
@@ -60,6 +70,8 @@ public class BaseNode implements RawNode.ConnectionListener, MessageListener {
     private final Set<NetworkType> mySupportedNetworks;
     private final NetworkType networkType;
     private final String nodeId;
+    private final ResumptionTicketIssuer resumptionTicketIssuer = new ResumptionTicketIssuer();
+    private final ResumptionTicketCache resumptionTicketCache = new ResumptionTicketCache();
 
     // ConnectionUid is key in following maps
     private final Map<String, CapabilityResponseHandler> responseHandlerMap = new ConcurrentHashMap<>();
@@ -69,6 +81,8 @@ public class BaseNode implements RawNode.ConnectionListener, MessageListener {
 
     private final Set<Address> addressesOfPendingConnections = new CopyOnWriteArraySet<>();
     private final Map<Address, List<CompletableFuture<Connection>>> pendingConnectionQueue = new ConcurrentHashMap<>();
+    // Messages sent to an address while the connection is not established or the handshake not completed yet
+    private final Map<Address, Queue<Tuple2<Message, CompletableFuture<Connection>>>> outboundQueueByAddress = new ConcurrentHashMap<>();
 
     private final Set<ConnectionListener> connectionListeners = new CopyOnWriteArraySet<>();
 
@@ -106,7 +120,7 @@ public class BaseNode implements RawNode.ConnectionListener, MessageListener {
         String id = rawConnection.getId();
 
         MapUtils.disposeAndRemove(id, requestHandlerMap);
-        MapUtils.disposeAndRemove(id, requestHandlerMap);
+        MapUtils.disposeAndRemove(id, responseHandlerMap);
 
         rawNode.findPeerAddress(rawConnection).ifPresent(address -> {
             if (pendingConnectionQueue.containsKey(address)) {
@@ -115,6 +129,7 @@ public class BaseNode implements RawNode.ConnectionListener, MessageListener {
                 pendingConnectionQueue.remove(address);
                 addressesOfPendingConnections.remove(address);
             }
+            failOutboundQueue(address, new Exception("Connection has been closed while the message was queued to be sent."));
         });
 
         if (connectionMap.containsKey(id)) {
@@ -138,6 +153,10 @@ public class BaseNode implements RawNode.ConnectionListener, MessageListener {
 
     @Override
     public void onMessage(Message message, Connection connection) {
+        if (message instanceof CapabilityResponse) {
+            onCapabilityResponse((CapabilityResponse) message, connection);
+            return;
+        }
         messageHandler.onMessage(message, connection);
     }
 
@@ -155,17 +174,48 @@ public class BaseNode implements RawNode.ConnectionListener, MessageListener {
                         return getFutureOfPendingConnection(peerAddress);
                     } else {
                         addressesOfPendingConnections.add(peerAddress);
+                        long ts = System.currentTimeMillis();
                         return rawNode.getOrCreateConnection(peerAddress)
                                 .thenCompose(connection -> requestCapability(connection, peerAddress))
-                                .whenComplete((connection, throwable) ->
-                                        completeFuturesOfPendingConnection(peerAddress, connection));
+                                .whenComplete((connection, throwable) -> {
+                                    completeFuturesOfPendingConnection(peerAddress, connection, throwable);
+                                    long duration = System.currentTimeMillis() - ts;
+                                    boolean isSuccess = connection != null;
+                                    connectionListeners.forEach(listener ->
+                                            listener.onOutboundConnectionAttempt(peerAddress, isSuccess, duration));
+                                });
                     }
                 });
     }
 
+    /**
+     * If we have a connection to that address we send directly, otherwise we put the message into the outbound queue
+     * of that address and trigger the connection. The queue gets flushed once the handshake is completed.
+     * The returned future completes once the message has been written to the connection.
+     */
     CompletableFuture<Connection> send(Message message, Address peerAddress) {
-        return getConnection(peerAddress)
-                .thenCompose(connection -> send(message, connection));
+        Optional<Connection> optionalConnection = findConnection(peerAddress);
+        if (optionalConnection.isPresent()) {
+            return send(message, optionalConnection.get());
+        }
+
+        CompletableFuture<Connection> future = new CompletableFuture<>();
+        outboundQueueByAddress.computeIfAbsent(peerAddress, key -> new ConcurrentLinkedQueue<>())
+                .add(new Tuple2<>(message, future));
+        // In case the handshake has been completed in the meantime the queue was already flushed, so we flush again
+        // after the connection future is completed.
+        getConnection(peerAddress).whenComplete((connection, throwable) -> {
+            if (connection != null) {
+                flushOutboundQueue(peerAddress, connection);
+            } else {
+                failOutboundQueue(peerAddress, throwable);
+            }
+        });
+        return future;
+    }
+
+    void disconnect(Connection connection) {
+        rawNode.disconnect(connection.getRawConnection());
     }
 
     CompletableFuture<Connection> send(Message message, Connection connection) {
@@ -186,6 +236,11 @@ public class BaseNode implements RawNode.ConnectionListener, MessageListener {
                 .forEach(future -> future.cancel(true));
         pendingConnectionQueue.clear();
 
+        outboundQueueByAddress.values().stream()
+                .flatMap(Collection::stream)
+                .forEach(tuple -> tuple.second.cancel(true));
+        outboundQueueByAddress.clear();
+
         addressesOfPendingConnections.clear();
 
         MapUtils.disposeAndRemoveAll(requestHandlerMap);
@@ -229,13 +284,24 @@ public class BaseNode implements RawNode.ConnectionListener, MessageListener {
 
     private CompletableFuture<Connection> requestCapability(RawConnection rawConnection, Address peerAddress) {
         CapabilityRequestHandler capabilityRequestHandler = new CapabilityRequestHandler(rawConnection,
-                peerAddress, getMyAddress(), mySupportedNetworks);
+                peerAddress, getMyAddress(), mySupportedNetworks, resumptionTicketCache);
         requestHandlerMap.put(rawConnection.getId(), capabilityRequestHandler);
         return capabilityRequestHandler.request()
                 .thenCompose(capability -> {
                     log.info("onOutboundConnection: peerAddress: {}, myAddress={}, rawConnection: {}", peerAddress, getMyAddress(), rawConnection);
-                    requestHandlerMap.remove(rawConnection.getId());
+                    // At a resumed handshake the handler still listens for a response in case the peer rejected our
+                    // ticket, so we keep it until the connection gets closed.
+                    if (!capabilityRequestHandler.isResumed()) {
+                        requestHandlerMap.remove(rawConnection.getId());
+                    }
                     Connection connection = new Connection(rawConnection, networkType, nodeId, capability);
+                    capabilityRequestHandler.getFallbackCapabilityFuture().thenAccept(fallbackCapability -> {
+                        connection.setCapability(fallbackCapability);
+                        requestHandlerMap.remove(rawConnection.getId());
+                    });
+                    // We flush our queued messages before listeners get notified, as they might send messages as well
+                    // which should not overtake the ones sent before the handshake was completed.
+                    flushOutboundQueue(peerAddress, connection);
                     onConnection(connection);
                     return CompletableFuture.completedFuture(connection);
                 });
@@ -250,6 +316,7 @@ public class BaseNode implements RawNode.ConnectionListener, MessageListener {
         CapabilityResponseHandler capabilityResponseHandler = new CapabilityResponseHandler(rawConnection,
                 myAddress,
                 mySupportedNetworks,
+                resumptionTicketIssuer,
                 capability -> {
                     if (!isStopped) {
                         log.debug("setupResponseHandler: peerAddress: {}, myAddress={}, rawConnection: {}",
@@ -271,6 +338,18 @@ public class BaseNode implements RawNode.ConnectionListener, MessageListener {
         connectionListeners.forEach(listener -> listener.onConnection(connection));
     }
 
+    // A peer which rejected our resumption ticket sends the CapabilityResponse after we have created the connection.
+    // The handler of our request verifies it and completes its fallbackCapabilityFuture, which corrects the capability
+    // of the connection. Any other CapabilityResponse is not expected once the connection is established.
+    private void onCapabilityResponse(CapabilityResponse capabilityResponse, Connection connection) {
+        CapabilityRequestHandler capabilityRequestHandler = requestHandlerMap.get(connection.getId());
+        if (capabilityRequestHandler != null && capabilityRequestHandler.isResumed()) {
+            capabilityRequestHandler.onMessage(capabilityResponse);
+        } else {
+            log.warn("Received unexpected CapabilityResponse from {}", connection.getPeerAddress());
+        }
+    }
+
     private CompletableFuture<Connection> getFutureOfPendingConnection(Address peerAddress) {
         pendingConnectionQueue.putIfAbsent(peerAddress, new ArrayList<>());
         List<CompletableFuture<Connection>> list = pendingConnectionQueue.get(peerAddress);
@@ -279,14 +358,45 @@ public class BaseNode implements RawNode.ConnectionListener, MessageListener {
         return future;
     }
 
-    private void completeFuturesOfPendingConnection(Address peerAddress, Connection connection) {
-        if (connection != null) {
-            if (pendingConnectionQueue.containsKey(peerAddress)) {
-                pendingConnectionQueue.get(peerAddress)
-                        .forEach(future -> future.complete(connection));
+    private void completeFuturesOfPendingConnection(Address peerAddress, Connection connection, Throwable throwable) {
+        if (pendingConnectionQueue.containsKey(peerAddress)) {
+            pendingConnectionQueue.get(peerAddress).forEach(future -> {
+                if (connection != null) {
+                    future.complete(connection);
+                } else {
+                    future.completeExceptionally(throwable);
+                }
+            });
+        }
+        pendingConnectionQueue.remove(peerAddress);
+        addressesOfPendingConnections.remove(peerAddress);
+    }
+
+    private void flushOutboundQueue(Address peerAddress, Connection connection) {
+        Queue<Tuple2<Message, CompletableFuture<Connection>>> queue = outboundQueueByAddress.get(peerAddress);
+        if (queue == null) {
+            return;
+        }
+        // We synchronize on the queue to not change the order of messages in case we get called from multiple threads
+        synchronized (queue) {
+            Tuple2<Message, CompletableFuture<Connection>> tuple;
+            while ((tuple = queue.poll()) != null) {
+                CompletableFuture<Connection> future = tuple.second;
+                send(tuple.first, connection).whenComplete((c, throwable) -> {
+                    if (c != null) {
+                        future.complete(c);
+                    } else {
+                        future.completeExceptionally(throwable);
+                    }
+                });
             }
-            pendingConnectionQueue.remove(peerAddress);
-            addressesOfPendingConnections.remove(peerAddress);
+        }
+    }
+
+    private void failOutboundQueue(Address peerAddress, Throwable throwable) {
+        Queue<Tuple2<Message, CompletableFuture<Connection>>> queue = outboundQueueByAddress.remove(peerAddress);
+        if (queue != null) {
+            queue.forEach(tuple -> tuple.second.completeExceptionally(throwable));
         }
     }
 
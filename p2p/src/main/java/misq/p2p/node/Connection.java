@@ -22,6 +22,7 @@ import lombok.extern.slf4j.Slf4j;
 import misq.p2p.Address;
 import misq.p2p.NetworkType;
 import misq.p2p.node.capability.Capability;
+import misq.p2p.node.connection.OutboundConnection;
 import misq.p2p.node.connection.RawConnection;
 
 @Slf4j
@@ -31,8 +32,9 @@ public class Connection {
     private final NetworkType networkType;
     @Getter
     private final String nodeId;
+    // Gets replaced if the peer rejected our resumption ticket and sent its Capability
     @Getter
-    private final Capability capability;
+    private volatile Capability capability;
     @Getter
     private final String id;
 
@@ -49,6 +51,19 @@ public class Connection {
         return capability.getAddress();
     }
 
+    public long getNumBytesReceived() {
+        return rawConnection.getNumBytesReceived();
+    }
+
+    public boolean isOutbound() {
+        return rawConnection instanceof OutboundConnection;
+    }
+
+    // The address is the one we have dialed, so only the other fields can change
+    void setCapability(Capability capability) {
+        this.capability = capability;
+    }
+
     RawConnection getRawConnection() {
         return rawConnection;
     }
@@ -17,8 +17,18 @@
 
 package misq.p2p.node;
 
+import misq.p2p.Address;
+
 public interface ConnectionListener {
     void onConnection(Connection connection);
 
     void onDisconnect(Connection connection);
+
+    /**
+     * Called when an outbound connection attempt has completed or failed.
+     *
+     * @param duration Time in ms for establishing the connection including the handshake
+     */
+    default void onOutboundConnectionAttempt(Address peerAddress, boolean isSuccess, long duration) {
+    }
 }
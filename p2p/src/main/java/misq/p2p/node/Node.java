@@ -18,9 +18,11 @@
 package misq.p2p.node;
 
 
+import com.google.common.annotations.VisibleForTesting;
 import misq.p2p.Address;
 import misq.p2p.NetworkConfig;
 import misq.p2p.message.Message;
+import misq.p2p.node.protection.AccessToken;
 import misq.p2p.node.protection.GuardedMessage;
 import misq.p2p.node.protection.NoRestriction;
 import misq.p2p.node.protection.PermissionControl;
@@ -28,10 +30,13 @@ import misq.p2p.node.proxy.GetServerSocketResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Function;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
@@ -51,12 +56,19 @@ public class Node implements MessageListener, ConnectionListener {
     private final Set<MessageListener> messageListeners = new CopyOnWriteArraySet<>();
     private final Set<ConnectionListener> connectionListeners = new CopyOnWriteArraySet<>();
     private final BaseNode baseNode;
+    // Completes once the last message sent to that address got its permit and was handed over to the BaseNode
+    private final Map<Address, CompletableFuture<Void>> sendChainByAddress = new ConcurrentHashMap<>();
     private final Object isStoppedLock = new Object();
     private volatile boolean isStopped;
 
     public Node(NetworkConfig networkConfig) {
+        this(networkConfig, new NoRestriction());
+    }
+
+    @VisibleForTesting
+    Node(NetworkConfig networkConfig, PermissionControl permissionControl) {
         baseNode = new BaseNode(networkConfig, this);
-        permissionControl = new NoRestriction();
+        this.permissionControl = permissionControl;
 
         baseNode.addConnectionListener(this);
     }
@@ -76,6 +88,11 @@ public class Node implements MessageListener, ConnectionListener {
         connectionListeners.forEach(listener -> listener.onDisconnect(connection));
     }
 
+    @Override
+    public void onOutboundConnectionAttempt(Address peerAddress, boolean isSuccess, long duration) {
+        connectionListeners.forEach(listener -> listener.onOutboundConnectionAttempt(peerAddress, isSuccess, duration));
+    }
+
 
     ///////////////////////////////////////////////////////////////////////////////////////////////////
     // MessageListener
@@ -100,20 +117,31 @@ public class Node implements MessageListener, ConnectionListener {
     // API
     ///////////////////////////////////////////////////////////////////////////////////////////////////
 
+    /**
+     * If we are not connected to the peer yet we start the connection and the handshake while we are getting the
+     * permit. The guarded message gets queued at the BaseNode and is sent once the handshake is completed.
+     * Permits might complete in any order, so messages to the same address are handed over to the BaseNode in the
+     * order of the send calls.
+     */
     public CompletableFuture<Connection> send(Message message, Address peerAddress) {
-        return baseNode.getConnection(peerAddress)
-                .thenCompose(connection -> send(message, connection));
+        Optional<Connection> optionalConnection = baseNode.findConnection(peerAddress);
+        if (optionalConnection.isPresent()) {
+            return send(message, optionalConnection.get());
+        }
+
+        baseNode.getConnection(peerAddress);
+        return sendInOrder(message, peerAddress, guardedMessage -> baseNode.send(guardedMessage, peerAddress));
     }
 
     public CompletableFuture<Connection> send(Message message, Connection connection) {
-        return permissionControl.getPermit(message)
-                .thenCompose(permit -> baseNode.send(new GuardedMessage(message, permit), connection));
+        return sendInOrder(message, connection.getPeerAddress(), guardedMessage -> baseNode.send(guardedMessage, connection));
     }
 
     public void shutdown() {
         synchronized (isStoppedLock) {
             isStopped = true;
         }
+        sendChainByAddress.clear();
         messageListeners.clear();
         connectionListeners.clear();
         baseNode.removeConnectionListener(this);
@@ -165,4 +193,41 @@ public class Node implements MessageListener, ConnectionListener {
     public Optional<Connection> findConnection(Address peerAddress) {
         return baseNode.findConnection(peerAddress);
     }
+
+    public void disconnect(Connection connection) {
+        baseNode.disconnect(connection);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+
+    // We request the permit right away but wait with handing over the message until all messages sent before to
+    // that address have been handed over. A failed permit fails only its own message.
+    private CompletableFuture<Connection> sendInOrder(Message message,
+                                                      Address peerAddress,
+                                                      Function<GuardedMessage, CompletableFuture<Connection>> sender) {
+        CompletableFuture<AccessToken> permitFuture = permissionControl.getPermit(message);
+        CompletableFuture<Connection> resultFuture = new CompletableFuture<>();
+        CompletableFuture<Void> chain = sendChainByAddress.compute(peerAddress, (key, previous) -> {
+            CompletableFuture<Void> predecessor = previous != null ? previous : CompletableFuture.completedFuture(null);
+            return predecessor.thenCompose(ignore -> permitFuture.handle((permit, throwable) -> {
+                if (permit != null) {
+                    sender.apply(new GuardedMessage(message, permit)).whenComplete((connection, sendThrowable) -> {
+                        if (connection != null) {
+                            resultFuture.complete(connection);
+                        } else {
+                            resultFuture.completeExceptionally(sendThrowable);
+                        }
+                    });
+                } else {
+                    resultFuture.completeExceptionally(throwable);
+                }
+                return null;
+            }));
+        });
+        chain.whenComplete((ignore, throwable) -> sendChainByAddress.remove(peerAddress, chain));
+        return resultFuture;
+    }
 }
@@ -21,15 +21,21 @@ import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import misq.p2p.message.Message;
 
+import javax.annotation.Nullable;
+
 @EqualsAndHashCode
 @Getter
 class CapabilityRequest implements Message {
     private final int nonce;
     private final Capability capability;
+    // Ticket received from a previous handshake with that peer. If valid the peer does not send a response.
+    @Nullable
+    private final ResumptionTicket resumptionTicket;
 
-    CapabilityRequest(Capability capability, int nonce) {
+    CapabilityRequest(Capability capability, int nonce, @Nullable ResumptionTicket resumptionTicket) {
         this.capability = capability;
         this.nonce = nonce;
+        this.resumptionTicket = resumptionTicket;
     }
 
     @Override
@@ -37,6 +43,7 @@ class CapabilityRequest implements Message {
         return "CapabilityRequest{" +
                 "\n     Capability=" + capability +
                 ",\n     nonce=" + nonce +
+                ",\n     resumptionTicket=" + resumptionTicket +
                 "\n}";
     }
 }
@@ -17,18 +17,34 @@
 
 package misq.p2p.node.capability;
 
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import misq.common.util.Disposable;
+import misq.common.util.Tuple2;
 import misq.p2p.Address;
 import misq.p2p.NetworkType;
 import misq.p2p.message.Message;
 import misq.p2p.node.connection.RawConnection;
 
+import java.util.Optional;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Sends the CapabilityRequest and verifies the CapabilityResponse.
+ * <p>
+ * If we have a ResumptionTicket from a previous handshake with that peer we add it to the request and complete
+ * immediately with the Capability we have verified at that previous handshake. The peer only responds if it does not
+ * accept the ticket. In that case we verify the response as usual and close the connection if it is invalid. A valid
+ * response replaces the cached Capability and completes the fallbackCapabilityFuture, so the connection can use the
+ * Capability from the full handshake.
+ * <p>
+ * Once the connection is established the response gets also delivered by the BaseNode (see BaseNode.onMessage).
+ * We only handle the first response we receive.
+ */
 @Slf4j
 public class CapabilityRequestHandler implements RawConnection.MessageListener, Disposable {
     private static final long TIMEOUT_SEC = 90;
@@ -37,53 +53,85 @@ public class CapabilityRequestHandler implements RawConnection.MessageListener,
     private final Address peersAddress;
     private final Address myAddress;
     private final Set<NetworkType> mySupportedNetworkTypes;
+    private final ResumptionTicketCache resumptionTicketCache;
     private final int requestNonce = new Random().nextInt();
     private final CompletableFuture<Capability> future = new CompletableFuture<>();
+    // Completed with the Capability from the response if the peer has rejected our ticket
+    @Getter
+    private final CompletableFuture<Capability> fallbackCapabilityFuture = new CompletableFuture<>();
+    @Getter
+    private volatile boolean resumed;
+    private final AtomicBoolean responseReceived = new AtomicBoolean();
 
     public CapabilityRequestHandler(RawConnection rawConnection,
                                     Address peersAddress,
                                     Address myAddress,
-                                    Set<NetworkType> mySupportedNetworkTypes) {
+                                    Set<NetworkType> mySupportedNetworkTypes,
+                                    ResumptionTicketCache resumptionTicketCache) {
         this.rawConnection = rawConnection;
         this.peersAddress = peersAddress;
         this.myAddress = myAddress;
         this.mySupportedNetworkTypes = mySupportedNetworkTypes;
+        this.resumptionTicketCache = resumptionTicketCache;
     }
 
     public CompletableFuture<Capability> request() {
         future.orTimeout(TIMEOUT_SEC, TimeUnit.SECONDS);
         rawConnection.addMessageListener(this);
         Capability capability = new Capability(myAddress, mySupportedNetworkTypes);
-        rawConnection.send(new CapabilityRequest(capability, requestNonce));
+        Optional<Tuple2<Capability, ResumptionTicket>> cached = resumptionTicketCache.find(peersAddress);
+        rawConnection.send(new CapabilityRequest(capability, requestNonce, cached.map(tuple -> tuple.second).orElse(null)));
+        cached.ifPresent(tuple -> {
+            log.debug("Resume handshake with {}", peersAddress);
+            resumed = true;
+            future.complete(tuple.first);
+        });
         return future;
     }
 
     public void dispose() {
         rawConnection.removeMessageListener(this);
         future.cancel(true);
+        fallbackCapabilityFuture.cancel(true);
     }
 
     @Override
     public void onMessage(Message message) {
-        if (message instanceof CapabilityResponse) {
+        if (message instanceof CapabilityResponse && responseReceived.compareAndSet(false, true)) {
             CapabilityResponse capabilityResponse = (CapabilityResponse) message;
             Capability capability = capabilityResponse.getCapability();
             if (capabilityResponse.getRequestNonce() != requestNonce) {
                 log.warn("Responded nonce {} does not match requestNonce {}",
                         capabilityResponse.getRequestNonce(), requestNonce);
-                rawConnection.close();
-                future.completeExceptionally(new Exception("Invalid HandshakeResponse"));
+                onInvalidResponse();
+                return;
             }
             if (!peersAddress.equals(capability.getAddress())) {
                 log.warn("Responded address {} does not match peersAddress {}",
                         capability.getAddress(), peersAddress);
-
-                rawConnection.close();
-                future.completeExceptionally(new Exception("Invalid HandshakeResponse"));
+                onInvalidResponse();
+                return;
             }
 
             rawConnection.removeMessageListener(this);
-            future.complete(capability);
+            ResumptionTicket resumptionTicket = capabilityResponse.getResumptionTicket();
+            if (resumptionTicket != null) {
+                resumptionTicketCache.put(capability, resumptionTicket);
+            } else {
+                resumptionTicketCache.remove(peersAddress);
+            }
+            if (resumed) {
+                log.debug("{} rejected our resumption ticket", peersAddress);
+                fallbackCapabilityFuture.complete(capability);
+            } else {
+                future.complete(capability);
+            }
         }
     }
+
+    private void onInvalidResponse() {
+        resumptionTicketCache.remove(peersAddress);
+        rawConnection.close();
+        future.completeExceptionally(new Exception("Invalid HandshakeResponse"));
+    }
 }
@@ -21,15 +21,20 @@ import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import misq.p2p.message.Message;
 
+import javax.annotation.Nullable;
+
 @EqualsAndHashCode
 @Getter
-class CapabilityResponse implements Message {
+public class CapabilityResponse implements Message {
     private final Capability capability;
     private final int requestNonce;
+    @Nullable
+    private final ResumptionTicket resumptionTicket;
 
-    CapabilityResponse(Capability capability, int requestNonce) {
+    CapabilityResponse(Capability capability, int requestNonce, @Nullable ResumptionTicket resumptionTicket) {
         this.capability = capability;
         this.requestNonce = requestNonce;
+        this.resumptionTicket = resumptionTicket;
     }
 
     @Override
@@ -37,6 +42,7 @@ class CapabilityResponse implements Message {
         return "CapabilityResponse{" +
                 "\n     capability=" + capability +
                 ",\n     requestNonce=" + requestNonce +
+                ",\n     resumptionTicket=" + resumptionTicket +
                 "\n}";
     }
 }
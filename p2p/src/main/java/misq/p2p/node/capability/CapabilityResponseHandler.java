@@ -24,6 +24,7 @@ import misq.p2p.NetworkType;
 import misq.p2p.message.Message;
 import misq.p2p.node.connection.RawConnection;
 
+import java.util.Optional;
 import java.util.Set;
 import java.util.function.Consumer;
 
@@ -32,15 +33,18 @@ public class CapabilityResponseHandler implements RawConnection.MessageListener,
     private final RawConnection rawConnection;
     private final Address myAddress;
     private final Set<NetworkType> mySupportedNetworkTypes;
+    private final ResumptionTicketIssuer resumptionTicketIssuer;
     private final Consumer<Capability> resultHandler;
 
     public CapabilityResponseHandler(RawConnection rawConnection,
                                      Address myAddress,
                                      Set<NetworkType> mySupportedNetworkTypes,
+                                     ResumptionTicketIssuer resumptionTicketIssuer,
                                      Consumer<Capability> resultHandler) {
         this.rawConnection = rawConnection;
         this.myAddress = myAddress;
         this.mySupportedNetworkTypes = mySupportedNetworkTypes;
+        this.resumptionTicketIssuer = resumptionTicketIssuer;
         this.resultHandler = resultHandler;
 
         rawConnection.addMessageListener(this);
@@ -58,8 +62,23 @@ public class CapabilityResponseHandler implements RawConnection.MessageListener,
             metaData.setPeerAddress(handshakeRequest.getAddress());
             metaData.setSupportedNetworkTypes(handshakeRequest.getSupportedNetworkTypes());
             metaData.handShakeCompleted();*/
-            Capability capability = new Capability(myAddress, mySupportedNetworkTypes);
-            rawConnection.send(new CapabilityResponse(capability, capabilityRequest.getNonce()));
+            Address peersAddress = capabilityRequest.getCapability().getAddress();
+            boolean isAddressProven = ResumptionTicketIssuer.isAddressProven(peersAddress, rawConnection);
+            ResumptionTicket resumptionTicket = capabilityRequest.getResumptionTicket();
+            if (isAddressProven &&
+                    resumptionTicket != null &&
+                    resumptionTicketIssuer.isValid(resumptionTicket, peersAddress)) {
+                // The peer has completed a handshake with us before and does not wait for our response.
+                log.debug("Accepted resumption ticket from {}", peersAddress);
+            } else {
+                Capability capability = new Capability(myAddress, mySupportedNetworkTypes);
+                Optional<ResumptionTicket> newTicket = isAddressProven ?
+                        resumptionTicketIssuer.issue(peersAddress) :
+                        Optional.empty();
+                rawConnection.send(new CapabilityResponse(capability,
+                        capabilityRequest.getNonce(),
+                        newTicket.orElse(null)));
+            }
             rawConnection.removeMessageListener(this);
             resultHandler.accept(capabilityRequest.getCapability());
         }
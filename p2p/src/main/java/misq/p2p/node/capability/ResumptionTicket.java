@@ -0,0 +1,52 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package misq.p2p.node.capability;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import misq.common.util.Hex;
+
+import java.io.Serializable;
+
+/**
+ * Issued by the responder of a capability handshake. It is bound to the address of the node which requested the
+ * handshake and can be presented at a reconnect to skip waiting for the CapabilityResponse.
+ */
+@Getter
+@EqualsAndHashCode
+public class ResumptionTicket implements Serializable {
+    private final byte[] hmac;
+    private final long expiryDate;
+
+    ResumptionTicket(byte[] hmac, long expiryDate) {
+        this.hmac = hmac;
+        this.expiryDate = expiryDate;
+    }
+
+    public boolean isExpired() {
+        return System.currentTimeMillis() > expiryDate;
+    }
+
+    @Override
+    public String toString() {
+        return "ResumptionTicket{" +
+                "\n     hmac=" + Hex.encode(hmac) +
+                ",\n     expiryDate=" + expiryDate +
+                "\n}";
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package misq.p2p.node.capability;
+
+import misq.common.util.Tuple2;
+import misq.p2p.Address;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the ResumptionTicket and the verified Capability of peers we have completed a handshake with, using the
+ * address we have dialed as key.
+ */
+public class ResumptionTicketCache {
+    private static final int MAX_SIZE = 1000;
+
+    private final Map<Address, Tuple2<Capability, ResumptionTicket>> map = new ConcurrentHashMap<>();
+
+    void put(Capability peersCapability, ResumptionTicket ticket) {
+        if (map.size() >= MAX_SIZE) {
+            map.entrySet().removeIf(entry -> entry.getValue().second.isExpired());
+        }
+        if (map.size() >= MAX_SIZE) {
+            map.entrySet().stream()
+                    .min(Comparator.comparingLong(entry -> entry.getValue().second.getExpiryDate()))
+                    .map(Map.Entry::getKey)
+                    .ifPresent(map::remove);
+        }
+        map.put(peersCapability.getAddress(), new Tuple2<>(peersCapability, ticket));
+    }
+
+    Optional<Tuple2<Capability, ResumptionTicket>> find(Address peersAddress) {
+        Tuple2<Capability, ResumptionTicket> tuple = map.get(peersAddress);
+        if (tuple == null) {
+            return Optional.empty();
+        }
+        if (tuple.second.isExpired()) {
+            map.remove(peersAddress);
+            return Optional.empty();
+        }
+        return Optional.of(tuple);
+    }
+
+    void remove(Address peersAddress) {
+        map.remove(peersAddress);
+    }
+}
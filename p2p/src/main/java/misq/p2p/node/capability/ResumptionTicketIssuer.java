@@ -0,0 +1,97 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package misq.p2p.node.capability;
+
+import com.google.common.annotations.VisibleForTesting;
+import lombok.extern.slf4j.Slf4j;
+import misq.common.security.Hmac;
+import misq.p2p.Address;
+import misq.p2p.node.connection.RawConnection;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Issues and verifies ResumptionTickets at the responder side of the handshake.
+ * The ticket is a HMAC over the requesters address and the expiry date. The secret key is only kept in memory, so
+ * after a restart all tickets become invalid and peers fall back to the full handshake.
+ * <p>
+ * The address in a CapabilityRequest is only claimed by the peer. We only issue and accept tickets if the host of
+ * that address is the remote host of the socket, so a ticket is never bound to an address the peer has not proven.
+ * <p>
+ * Limitation: There is no resumption over Tor or I2P. The inbound socket comes from the local proxy, so the remote
+ * host never matches the onion or I2P address the peer claims. Those peers get no ticket and always do the full
+ * handshake. Supporting them would require binding the ticket to a key the peer proves to own instead of its address.
+ */
+@Slf4j
+public class ResumptionTicketIssuer {
+    private static final long TICKET_TTL = TimeUnit.HOURS.toMillis(6);
+
+    private final SecretKey secretKey;
+    private final long ticketTtl;
+
+    public ResumptionTicketIssuer() {
+        this(TICKET_TTL);
+    }
+
+    @VisibleForTesting
+    ResumptionTicketIssuer(long ticketTtl) {
+        this.ticketTtl = ticketTtl;
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        secretKey = new SecretKeySpec(key, Hmac.HMAC);
+    }
+
+    Optional<ResumptionTicket> issue(Address peersAddress) {
+        long expiryDate = System.currentTimeMillis() + ticketTtl;
+        try {
+            byte[] hmac = Hmac.createHmac(getData(peersAddress, expiryDate), secretKey);
+            return Optional.of(new ResumptionTicket(hmac, expiryDate));
+        } catch (GeneralSecurityException e) {
+            log.error(e.toString(), e);
+            return Optional.empty();
+        }
+    }
+
+    boolean isValid(ResumptionTicket ticket, Address peersAddress) {
+        if (ticket.isExpired()) {
+            return false;
+        }
+        try {
+            return Hmac.verifyHmac(getData(peersAddress, ticket.getExpiryDate()), ticket.getHmac(), secretKey);
+        } catch (GeneralSecurityException e) {
+            log.error(e.toString(), e);
+            return false;
+        }
+    }
+
+    static boolean isAddressProven(Address peersAddress, RawConnection rawConnection) {
+        return rawConnection.findRemoteHostAddress()
+                .map(remoteHost -> remoteHost.equals(peersAddress.getHost()))
+                .orElse(false);
+    }
+
+    private byte[] getData(Address peersAddress, long expiryDate) {
+        return (peersAddress.toString() + ":" + expiryDate).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -17,6 +17,7 @@
 
 package misq.p2p.node.connection;
 
+import com.google.common.io.CountingInputStream;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
@@ -26,7 +27,9 @@ import misq.p2p.message.Message;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.net.InetAddress;
 import java.net.Socket;
+import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
@@ -39,7 +42,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 /**
  * Represents an inbound or outbound connection to a peer node.
  * Listens for messages from the peer.
- * Sends messages to the peer.
+ * Sends messages to the peer. Messages which became stale while waiting in the output queue are dropped.
  * Notifies messageListeners on new received messages.
  * Notifies errorHandler on exceptions from the inputHandlerService executor.
  */
@@ -69,8 +72,10 @@ public abstract class RawConnection {
     private ExecutorService outputExecutor;
     private ExecutorService inputHandler;
     private ObjectInputStream objectInputStream;
+    private CountingInputStream countingInputStream;
     private ObjectOutputStream objectOutputStream;
     private final Set<MessageListener> messageListeners = new CopyOnWriteArraySet<>();
+    private final StaleMessageFilter staleMessageFilter = new StaleMessageFilter();
     private final Socket socket;
     protected final String id = UUID.randomUUID().toString();
     private final Object isStoppedLock = new Object();
@@ -90,7 +95,8 @@ public abstract class RawConnection {
         // ObjectOutputStream need to be set before objectInputStream otherwise we get blocked...
         // https://stackoverflow.com/questions/14110986/new-objectinputstream-blocks/14111047
         objectOutputStream = new ObjectOutputStream(socket.getOutputStream());
-        objectInputStream = new ObjectInputStream(socket.getInputStream());
+        countingInputStream = new CountingInputStream(socket.getInputStream());
+        objectInputStream = new ObjectInputStream(countingInputStream);
 
         inputHandler.execute(() -> {
             while (!isStopped && !Thread.currentThread().isInterrupted()) {
@@ -113,7 +119,14 @@ public abstract class RawConnection {
 
     public CompletableFuture<RawConnection> send(Message message) {
         CompletableFuture<RawConnection> future = new CompletableFuture<>();
+        staleMessageFilter.onQueued(message);
         outputExecutor.execute(() -> {
+            if (staleMessageFilter.isStale(message)) {
+                staleMessageFilter.onDequeued(message);
+                log.debug("Dropped stale message: {} at connection: {}", message.getClass().getSimpleName(), this);
+                future.completeExceptionally(new Exception("Message got stale before it was sent."));
+                return;
+            }
             try {
                 MisqMessage misqMessage = new MisqMessage(message);
                 objectOutputStream.writeObject(misqMessage);
@@ -125,6 +138,8 @@ public abstract class RawConnection {
                     close();
                 }
                 future.completeExceptionally(exception);
+            } finally {
+                staleMessageFilter.onDequeued(message);
             }
         });
         return future;
@@ -140,6 +155,7 @@ public abstract class RawConnection {
         }
         ThreadingUtils.shutdownAndAwaitTermination(inputHandler);
         ThreadingUtils.shutdownAndAwaitTermination(outputExecutor);
+        staleMessageFilter.clear();
         try {
             socket.close();
         } catch (IOException ignore) {
@@ -158,6 +174,19 @@ public abstract class RawConnection {
         return id;
     }
 
+    /**
+     * The IP address of the remote end of the socket. For connections via an anonymizing network like Tor or I2P
+     * that is the address of the local proxy, not the one of the peer.
+     */
+    public Optional<String> findRemoteHostAddress() {
+        InetAddress inetAddress = socket.getInetAddress();
+        return inetAddress != null ? Optional.of(inetAddress.getHostAddress()) : Optional.empty();
+    }
+
+    public long getNumBytesReceived() {
+        return countingInputStream != null ? countingInputStream.getCount() : 0;
+    }
+
     private String getShortId() {
         return id.substring(0, 24);
     }
@@ -0,0 +1,65 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.node.connection;
+
+import misq.p2p.data.storage.MapKey;
+import misq.p2p.message.ExpirableMessage;
+import misq.p2p.message.Message;
+import misq.p2p.message.SupersedeKey;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks the highest sequence number per payload hash of the messages queued at a connection, so we can detect
+ * superseded messages when they reach the head of the queue.
+ */
+class StaleMessageFilter {
+    private final Map<MapKey, Integer> sequenceNumberByPayloadHash = new ConcurrentHashMap<>();
+
+    void onQueued(Message message) {
+        ExpirableMessage.getSupersedeKey(message).ifPresent(key ->
+                sequenceNumberByPayloadHash.merge(key.getPayloadHash(), key.getSequenceNumber(), Math::max));
+    }
+
+    boolean isStale(Message message) {
+        if (ExpirableMessage.isExpired(message)) {
+            return true;
+        }
+        Optional<SupersedeKey> supersedeKey = ExpirableMessage.getSupersedeKey(message);
+        if (!supersedeKey.isPresent()) {
+            return false;
+        }
+        Integer sequenceNumber = sequenceNumberByPayloadHash.get(supersedeKey.get().getPayloadHash());
+        return sequenceNumber != null && sequenceNumber > supersedeKey.get().getSequenceNumber();
+    }
+
+    /**
+     * Called after the message got written or dropped. We remove the entry if it was the latest version.
+     */
+    void onDequeued(Message message) {
+        ExpirableMessage.getSupersedeKey(message).ifPresent(key ->
+                sequenceNumberByPayloadHash.remove(key.getPayloadHash(), key.getSequenceNumber()));
+    }
+
+    void clear() {
+        sequenceNumberByPayloadHash.clear();
+    }
+}
@@ -19,11 +19,15 @@ package misq.p2p.node.protection;
 
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import misq.p2p.message.ExpirableMessage;
 import misq.p2p.message.Message;
+import misq.p2p.message.SupersedeKey;
+
+import java.util.Optional;
 
 @EqualsAndHashCode
 @Getter
-public class GuardedMessage implements Message {
+public class GuardedMessage implements ExpirableMessage {
     private final Message payload;
     private final AccessToken accessToken;
 
@@ -32,6 +36,16 @@ public class GuardedMessage implements Message {
         this.accessToken = accessToken;
     }
 
+    @Override
+    public long getDeadline() {
+        return ExpirableMessage.getDeadline(payload);
+    }
+
+    @Override
+    public Optional<SupersedeKey> getSupersedeKey() {
+        return ExpirableMessage.getSupersedeKey(payload);
+    }
+
     @Override
     public String toString() {
         return "GuardedMessage{" +
@@ -0,0 +1,298 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.peers;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import misq.common.persistence.Persistence;
+import misq.common.util.FileUtils;
+import misq.common.util.ObjectSerializer;
+import misq.common.util.ThreadingUtils;
+import misq.p2p.Address;
+
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Persisted record of the peers we had outbound connections with, so we can reconnect to them after a restart instead
+ * of bootstrapping via the seed nodes only.
+ * Changes are appended to a journal file at most once per WRITE_INTERVAL and at shutdown. Only the entries which
+ * changed since the last write are appended. Once the journal has more than MAX_SIZE records it gets compacted into
+ * the snapshot file. If no storage file path is provided the address book is held in memory only.
+ */
+@Slf4j
+public class AddressBook {
+    private static final long WRITE_INTERVAL = TimeUnit.SECONDS.toMillis(30);
+    private static final long MAX_AGE = TimeUnit.DAYS.toMillis(30);
+    private static final int MAX_SIZE = 1000;
+    private static final int MAX_RECORD_SIZE = 100_000;
+
+    @Getter
+    public static class Entry implements Serializable {
+        private volatile Peer peer;
+        private final PeerScore peerScore;
+        private volatile long lastSeen;
+        private volatile long lastSuccess;
+
+        private Entry(Peer peer, PeerScore peerScore) {
+            this.peer = peer;
+            this.peerScore = peerScore;
+        }
+
+        public Address getAddress() {
+            return peer.getAddress();
+        }
+
+        @Override
+        public String toString() {
+            return "Entry{" +
+                    "\n     peer=" + peer +
+                    ",\n     peerScore=" + peerScore +
+                    ",\n     lastSeen=" + new Date(lastSeen) +
+                    ",\n     lastSuccess=" + new Date(lastSuccess) +
+                    "\n}";
+        }
+    }
+
+    // A record in the journal. If entry is null the entry got removed.
+    private static class Change implements Serializable {
+        private final Address address;
+        @Nullable
+        private final Entry entry;
+
+        private Change(Address address, @Nullable Entry entry) {
+            this.address = address;
+            this.entry = entry;
+        }
+    }
+
+    @Nullable
+    private final String storageFilePath;
+    @Nullable
+    private final String journalFilePath;
+    @Nullable
+    private final ScheduledExecutorService executor;
+    private final Map<Address, Entry> entryByAddress = new ConcurrentHashMap<>();
+    private final Set<Address> changedAddresses = ConcurrentHashMap.newKeySet();
+    private int numJournalRecords;
+
+    public AddressBook() {
+        this(null);
+    }
+
+    /**
+     * @param storageFilePath Path of the storage file or null if the address book should not be persisted
+     */
+    public AddressBook(@Nullable String storageFilePath) {
+        this.storageFilePath = storageFilePath;
+        if (storageFilePath == null) {
+            journalFilePath = null;
+            executor = null;
+            return;
+        }
+
+        journalFilePath = storageFilePath + "_journal";
+        read();
+        executor = ThreadingUtils.getSingleThreadScheduledExecutor("AddressBook");
+        executor.scheduleWithFixedDelay(this::persist, WRITE_INTERVAL, WRITE_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public Collection<Entry> getEntries() {
+        return entryByAddress.values();
+    }
+
+    public Optional<Entry> findEntry(Address address) {
+        return Optional.ofNullable(entryByAddress.get(address));
+    }
+
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        persist();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Package private
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+
+    void onConnection(Peer peer, PeerScore peerScore) {
+        Entry entry = entryByAddress.computeIfAbsent(peer.getAddress(), address -> new Entry(peer, peerScore));
+        entry.peer = peer;
+        long now = System.currentTimeMillis();
+        entry.lastSeen = now;
+        entry.lastSuccess = now;
+        changedAddresses.add(peer.getAddress());
+        if (entryByAddress.size() > MAX_SIZE) {
+            prune();
+        }
+    }
+
+    void onDisconnect(Address address) {
+        Entry entry = entryByAddress.get(address);
+        if (entry != null) {
+            entry.lastSeen = System.currentTimeMillis();
+            changedAddresses.add(address);
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private void read() {
+        try {
+            FileUtils.makeDirs(new File(storageFilePath).getParentFile());
+        } catch (IOException e) {
+            log.error("Could not create directory for {}", storageFilePath, e);
+        }
+        if (new File(storageFilePath).exists()) {
+            Serializable serializable = Persistence.read(storageFilePath);
+            if (serializable instanceof HashMap) {
+                @SuppressWarnings("unchecked")
+                Map<Address, Entry> persisted = (HashMap<Address, Entry>) serializable;
+                entryByAddress.putAll(persisted);
+            }
+        }
+        readJournal();
+        prune();
+        log.info("We loaded {} peers from our address book", entryByAddress.size());
+    }
+
+    // The records are length prefixed. A record which got cut off at a crash is ignored.
+    private void readJournal() {
+        File journalFile = new File(journalFilePath);
+        if (!journalFile.exists()) {
+            return;
+        }
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)))) {
+            while (true) {
+                int length = inputStream.readInt();
+                if (length <= 0 || length > MAX_RECORD_SIZE) {
+                    log.warn("Invalid record length {} in address book journal", length);
+                    return;
+                }
+                byte[] bytes = new byte[length];
+                inputStream.readFully(bytes);
+                Change change = (Change) ObjectSerializer.deserialize(bytes);
+                if (change.entry != null) {
+                    entryByAddress.put(change.address, change.entry);
+                } else {
+                    entryByAddress.remove(change.address);
+                }
+                numJournalRecords++;
+            }
+        } catch (EOFException ignore) {
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not read address book journal. {}", e.toString());
+        }
+    }
+
+    private synchronized void persist() {
+        if (storageFilePath == null || changedAddresses.isEmpty()) {
+            return;
+        }
+        List<Address> changed = new ArrayList<>(changedAddresses);
+        changedAddresses.removeAll(changed);
+        if (numJournalRecords + changed.size() > MAX_SIZE) {
+            if (!compact()) {
+                // We keep the journal and append the changes at the next write
+                changedAddresses.addAll(changed);
+            }
+            return;
+        }
+        try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(journalFilePath, true)))) {
+            for (Address address : changed) {
+                byte[] bytes = ObjectSerializer.serialize(new Change(address, entryByAddress.get(address)));
+                outputStream.writeInt(bytes.length);
+                outputStream.write(bytes);
+            }
+            numJournalRecords += changed.size();
+        } catch (IOException e) {
+            log.error("Could not write address book journal", e);
+        }
+    }
+
+    // Writes all entries to a temp file which replaces the snapshot file once it is synced to disk. Only then the
+    // journal gets deleted, so a crash at any point leaves either the old snapshot and journal or the new snapshot.
+    private boolean compact() {
+        File tempFile = new File(storageFilePath + "_tmp");
+        try {
+            try (FileOutputStream fileOutputStream = new FileOutputStream(tempFile);
+                 ObjectOutputStream objectOutputStream = new ObjectOutputStream(fileOutputStream)) {
+                objectOutputStream.writeObject(new HashMap<>(entryByAddress));
+                objectOutputStream.flush();
+                fileOutputStream.getFD().sync();
+            }
+            Files.move(tempFile.toPath(), Paths.get(storageFilePath),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.error("Could not write address book snapshot", e);
+            if (tempFile.exists() && !tempFile.delete()) {
+                log.warn("Could not delete {}", tempFile);
+            }
+            return false;
+        }
+
+        if (!new File(journalFilePath).delete()) {
+            log.debug("No address book journal to delete");
+        }
+        numJournalRecords = 0;
+        return true;
+    }
+
+    // Remove entries we have not been connected to since MAX_AGE and if still too large the ones with the oldest
+    // last success.
+    private void prune() {
+        long now = System.currentTimeMillis();
+        List<Address> removed = entryByAddress.values().stream()
+                .filter(entry -> now - entry.lastSuccess > MAX_AGE)
+                .map(Entry::getAddress)
+                .collect(Collectors.toList());
+        removed.forEach(entryByAddress::remove);
+        int numSurplus = entryByAddress.size() - MAX_SIZE;
+        if (numSurplus > 0) {
+            entryByAddress.values().stream()
+                    .sorted(Comparator.comparingLong(Entry::getLastSuccess))
+                    .limit(numSurplus)
+                    .map(Entry::getAddress)
+                    .collect(Collectors.toList())
+                    .forEach(address -> {
+                        entryByAddress.remove(address);
+                        removed.add(address);
+                    });
+        }
+        changedAddresses.addAll(removed);
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.peers;
+
+import misq.p2p.Address;
+import misq.p2p.NetworkType;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Selects peers so that our connections are spread over different address groups (the /16 network for clear net
+ * addresses, see ReportedPeers.getGroup) and network types. That makes it harder for a single operator to control
+ * our view of the network and avoids that we depend on a single network.
+ * <p>
+ * NUM_RESERVED_FOR_BEST slots are reserved for the best scored peers. Those slots count our existing connections as
+ * well, so only candidates which score better than our existing peers are selected without constraints. If the
+ * constraints leave slots unused we fill them with the remaining candidates, as having connections is more important
+ * than diversity.
+ */
+public class ConnectionDiversity {
+    static final int NUM_RESERVED_FOR_BEST = 2;
+    // Max. number of connections in the same address group
+    static final int MAX_PER_GROUP = 2;
+    // Max. share of a single network type if candidates of other network types are available
+    static final double MAX_NETWORK_TYPE_SHARE = 0.67;
+
+    /**
+     * Selects without scores. Our existing connections are considered to be the best peers, so candidates only get a
+     * reserved slot if we have less than NUM_RESERVED_FOR_BEST existing connections.
+     *
+     * @param candidates  Candidates ordered by preference
+     * @param existing    Addresses of our existing and pending connections
+     * @param numToSelect Number of addresses to select
+     */
+    public static List<Address> select(List<Address> candidates, Collection<Address> existing, int numToSelect) {
+        Set<Address> existingSet = new HashSet<>(existing);
+        return select(candidates, existing, numToSelect, Comparator.comparing(address -> !existingSet.contains(address)));
+    }
+
+    /**
+     * @param candidates  Candidates ordered by preference, e.g. by score
+     * @param existing    Addresses of our existing and pending connections
+     * @param numToSelect Number of addresses to select
+     * @param byScore     Comparator sorting the best scored addresses first
+     * @return The selected addresses ordered by preference. The diverse ones and the ones in reserved slots first,
+     * then the ones used for filling up.
+     */
+    public static List<Address> select(List<Address> candidates,
+                                       Collection<Address> existing,
+                                       int numToSelect,
+                                       Comparator<Address> byScore) {
+        List<Address> selected = new ArrayList<>();
+        if (numToSelect <= 0) {
+            return selected;
+        }
+
+        // The candidates which are among the best scored peers of our existing connections and the candidates.
+        // At equal scores our existing connections keep their slot.
+        Set<Address> reserved = Stream.concat(existing.stream(), candidates.stream())
+                .distinct()
+                .sorted(byScore)
+                .limit(NUM_RESERVED_FOR_BEST)
+                .collect(Collectors.toSet());
+        reserved.removeAll(existing);
+
+        Map<String, Integer> numByGroup = new HashMap<>();
+        Map<NetworkType, Integer> numByNetworkType = new EnumMap<>(NetworkType.class);
+        existing.forEach(address -> add(address, numByGroup, numByNetworkType));
+
+        int targetSize = existing.size() + numToSelect;
+        long numCandidateNetworkTypes = candidates.stream().map(Address::getNetworkType).distinct().count();
+        int maxPerNetworkType = numCandidateNetworkTypes > 1 ?
+                Math.max(1, (int) (targetSize * MAX_NETWORK_TYPE_SHARE)) :
+                Integer.MAX_VALUE;
+
+        // Candidates we have visited already, so duplicates are neither selected nor used for filling up twice
+        Set<Address> visited = new HashSet<>();
+        List<Address> remaining = new ArrayList<>();
+        for (Address candidate : candidates) {
+            if (selected.size() >= numToSelect) {
+                break;
+            }
+            if (!visited.add(candidate)) {
+                continue;
+            }
+            boolean isReserved = reserved.contains(candidate);
+            boolean isDiverse = numByGroup.getOrDefault(ReportedPeers.getGroup(candidate), 0) < MAX_PER_GROUP &&
+                    numByNetworkType.getOrDefault(candidate.getNetworkType(), 0) < maxPerNetworkType;
+            if (isReserved || isDiverse) {
+                selected.add(candidate);
+                add(candidate, numByGroup, numByNetworkType);
+            } else {
+                remaining.add(candidate);
+            }
+        }
+
+        remaining.stream()
+                .limit(numToSelect - selected.size())
+                .forEach(selected::add);
+        return selected;
+    }
+
+    /**
+     * @return The number of addresses by address group
+     */
+    public static Map<String, Long> getNumByGroup(Collection<Address> addresses) {
+        return addresses.stream().collect(Collectors.groupingBy(ReportedPeers::getGroup, Collectors.counting()));
+    }
+
+    private static void add(Address address,
+                            Map<String, Integer> numByGroup,
+                            Map<NetworkType, Integer> numByNetworkType) {
+        numByGroup.merge(ReportedPeers.getGroup(address), 1, Integer::sum);
+        numByNetworkType.merge(address.getNetworkType(), 1, Integer::sum);
+    }
+}
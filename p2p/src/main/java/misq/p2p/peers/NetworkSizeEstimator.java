@@ -0,0 +1,89 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.peers;
+
+import misq.p2p.Address;
+import misq.p2p.peers.exchange.PeerExchangeGraph;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Estimates the number of nodes in the network from the peer exchange data.
+ * <p>
+ * The lower bound is the number of distinct addresses we know about (connected, reported, persisted and the nodes in
+ * the PeerExchangeGraph). As each peer only reports a sample of the network we use the peer lists reported by different
+ * peers as independent samples and apply the Lincoln-Petersen capture-recapture estimate
+ * N = |A| * |B| / |A intersect B| on each pair of samples. The median of those estimates is used if it exceeds the
+ * lower bound.
+ * <p>
+ * The PeerExchangeGraph also contains the peers we have dialed ourself, with our address as source. Those are not
+ * chosen independently from the reported peers, so we do not use them as a sample.
+ */
+public class NetworkSizeEstimator {
+    private static final int MAX_SAMPLES = 20;
+
+    private final PeerGroup peerGroup;
+
+    public NetworkSizeEstimator(PeerGroup peerGroup) {
+        this.peerGroup = peerGroup;
+    }
+
+    public int estimate() {
+        PeerExchangeGraph peerExchangeGraph = peerGroup.getPeerExchangeGraph();
+        Set<Address> knownAddresses = Stream.of(peerGroup.getConnectedPeerAddresses(),
+                peerGroup.getReportedPeers().stream().map(Peer::getAddress).collect(Collectors.toSet()),
+                peerGroup.getPersistedPeers().stream().map(Peer::getAddress).collect(Collectors.toSet()),
+                peerExchangeGraph.getNodes())
+                .flatMap(Collection::stream)
+                .filter(peerGroup::notMyself)
+                .collect(Collectors.toSet());
+        List<Set<Address>> samples = peerExchangeGraph.getTargetsBySource().entrySet().stream()
+                .filter(entry -> peerGroup.notMyself(entry.getKey()))
+                .map(Map.Entry::getValue)
+                .collect(Collectors.toList());
+        // We count ourself as well
+        return estimate(samples, knownAddresses.size() + 1);
+    }
+
+    static int estimate(Collection<Set<Address>> samples, int numKnownAddresses) {
+        List<Set<Address>> list = samples.stream()
+                .filter(sample -> !sample.isEmpty())
+                .limit(MAX_SAMPLES)
+                .collect(Collectors.toList());
+        List<Double> estimates = new ArrayList<>();
+        for (int i = 0; i < list.size(); i++) {
+            for (int j = i + 1; j < list.size(); j++) {
+                Set<Address> a = list.get(i);
+                Set<Address> b = list.get(j);
+                long numInBoth = a.stream().filter(b::contains).count();
+                if (numInBoth > 0) {
+                    estimates.add(a.size() * (double) b.size() / numInBoth);
+                }
+            }
+        }
+        if (estimates.isEmpty()) {
+            return numKnownAddresses;
+        }
+        Collections.sort(estimates);
+        double median = estimates.get(estimates.size() / 2);
+        return Math.max(numKnownAddresses, (int) Math.round(median));
+    }
+}
@@ -31,8 +31,12 @@ public class Peer implements Serializable {
     private final long created;
 
     public Peer(Capability capability) {
+        this(capability, System.currentTimeMillis());
+    }
+
+    public Peer(Capability capability, long created) {
         this.capability = capability;
-        this.created = System.currentTimeMillis();
+        this.created = created;
     }
 
     public Date getDate() {
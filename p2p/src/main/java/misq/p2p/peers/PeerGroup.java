@@ -24,6 +24,8 @@ import misq.p2p.Address;
 import misq.p2p.node.Connection;
 import misq.p2p.node.ConnectionListener;
 import misq.p2p.node.Node;
+import misq.p2p.peers.exchange.AddressCooldown;
+import misq.p2p.peers.exchange.PeerExchangeGraph;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
@@ -39,22 +41,34 @@ public class PeerGroup implements ConnectionListener {
     private final ImmutableList<Address> seedNodes;
     private final Map<Address, Peer> connectedPeerByAddress = new ConcurrentHashMap<>();
     public final int serverPort;
-
-
-    public Set<Peer> getReportedPeers() {
-        return reportedPeers;
-    }
-
-    // @Getter
-    private final Set<Peer> reportedPeers = new CopyOnWriteArraySet<>();
+    private final ReportedPeers reportedPeers = new ReportedPeers();
     @Getter
     private final Set<Peer> persistedPeers = new CopyOnWriteArraySet<>();
     @Getter
     private final Set<Connection> connections = new CopyOnWriteArraySet<>();
+    @Getter
+    private final PeerExchangeGraph peerExchangeGraph = new PeerExchangeGraph();
+    @Getter
+    private final PeerScores peerScores = new PeerScores();
+    @Getter
+    private final AddressCooldown addressCooldown = new AddressCooldown();
+    @Getter
+    private final AddressBook addressBook;
 
     public PeerGroup(Node node, PeerConfig peerConfig, int serverPort) {
+        this(node, peerConfig, serverPort, new AddressBook());
+    }
+
+    public PeerGroup(Node node, PeerConfig peerConfig, int serverPort, AddressBook addressBook) {
         this.serverPort = serverPort;
         this.node = node;
+        this.addressBook = addressBook;
+
+        // The peers from previous sessions. We share the PeerScore objects, so the scores get persisted as well.
+        addressBook.getEntries().forEach(entry -> {
+            persistedPeers.add(entry.getPeer());
+            peerScores.putIfAbsent(entry.getAddress(), entry.getPeerScore());
+        });
 
         List<Address> seeds = new ArrayList<>(peerConfig.getSeedNodes());
         Collections.shuffle(seeds);
@@ -68,11 +82,30 @@ public class PeerGroup implements ConnectionListener {
         Peer peer = new Peer(connection.getCapability());
         connectedPeerByAddress.put(peer.getAddress(), peer);
         connections.add(connection);
+        peerScores.onConnection(connection);
+        // The address of an inbound peer is claimed by the peer and not verified, so we only record peers we have
+        // dialed ourselves. Otherwise anyone could fill our address book with addresses we dial at the next start.
+        if (connection.isOutbound()) {
+            addressBook.onConnection(peer, peerScores.getPeerScore(peer.getAddress()));
+        }
     }
 
     @Override
     public void onDisconnect(Connection connection) {
         connectedPeerByAddress.remove(connection.getPeerAddress());
+        connections.remove(connection);
+        peerScores.onDisconnect(connection);
+        addressBook.onDisconnect(connection.getPeerAddress());
+    }
+
+    @Override
+    public void onOutboundConnectionAttempt(Address peerAddress, boolean isSuccess, long duration) {
+        peerScores.onOutboundConnectionAttempt(peerAddress, isSuccess, duration);
+    }
+
+    public void shutdown() {
+        node.removeConnectionListener(this);
+        addressBook.shutdown();
     }
 
     public Set<Address> getConnectedPeerAddresses() {
@@ -83,8 +116,26 @@ public class PeerGroup implements ConnectionListener {
         return connectedPeerByAddress.values();
     }
 
-    public void addReportedPeers(Set<Peer> peers) {
-        reportedPeers.addAll(peers);
+    /**
+     * @param source The address of the peer which reported the peers to us
+     */
+    public void addReportedPeers(Set<Peer> peers, Address source) {
+        reportedPeers.addAll(peers, source);
+    }
+
+    /**
+     * @return A copy of all reported peers. Use sampleReportedPeers if a subset is sufficient.
+     */
+    public Set<Peer> getReportedPeers() {
+        return reportedPeers.getAll();
+    }
+
+    public List<Peer> sampleReportedPeers(int numPeers) {
+        return reportedPeers.sample(numPeers);
+    }
+
+    public int getNumReportedPeers() {
+        return reportedPeers.size();
     }
 
     public Set<Peer> getAllConnectedPeers() {
@@ -100,6 +151,14 @@ public class PeerGroup implements ConnectionListener {
         return notMyself(peer.getAddress());
     }
 
+    /**
+     * @return true if our address is in the seed node list
+     */
+    public boolean isSeed() {
+        Optional<Address> optionalMyAddress = node.findMyAddress();
+        return optionalMyAddress.isPresent() && !notASeed(optionalMyAddress.get());
+    }
+
     public boolean notASeed(Address address) {
         return seedNodes.stream().noneMatch(e -> e.equals(address));
     }
@@ -15,25 +15,236 @@
  * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
  */
 
+
 package misq.p2p.peers;
 
+import com.google.common.annotations.VisibleForTesting;
+import lombok.extern.slf4j.Slf4j;
+import misq.common.util.ThreadingUtils;
+import misq.p2p.Address;
+import misq.p2p.node.Connection;
 import misq.p2p.node.Node;
+import misq.p2p.peers.exchange.AddressCooldown;
 
+import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+/**
+ * Maintains the number of connections between minNumConnectedPeers and maxNumConnectedPeers after bootstrap.
+ * <p>
+ * At each maintenance run (jittered around MAINTENANCE_INTERVAL) we
+ * - close surplus connections if we have more than maxNumConnectedPeers. Connections to seed nodes are closed first,
+ * then inbound connections, as we have chosen our outbound peers ourself.
+ * - rotate a small fraction of our connections once per ROTATION_INTERVAL, so an attacker cannot hold on to our
+ * connection slots forever (eclipse attack).
+ * - connect to reported and persisted peers if we have less than minNumConnectedPeers. Seed nodes are only used if
+ * we do not have enough other candidates.
+ * <p>
+ * Trimming and rotation never close the connections to our best scored peers. Addresses in the AddressCooldown, either
+ * because connecting failed recently or because the peer asked us to retry later, are not used for topping up.
+ */
+@Slf4j
 public class PeerGroupHealth {
+    private static final long MAINTENANCE_INTERVAL = TimeUnit.SECONDS.toMillis(30);
+    private static final double JITTER = 0.25;
+    private static final long ROTATION_INTERVAL = TimeUnit.MINUTES.toMillis(10);
+    private static final double ROTATION_FRACTION = 0.1;
+    // We only consider a random sample of the reported peers as candidates for new connections
+    private static final int NUM_REPORTED_CANDIDATES = 100;
+
     private final Node node;
     private final PeerGroup peerGroup;
+    private final PeerConfig peerConfig;
+    private final ScheduledExecutorService executor = ThreadingUtils.getSingleThreadScheduledExecutor("PeerGroupHealth");
+    private final Random random = new Random();
+    private final Set<Address> addressesOfPendingConnections = Collections.synchronizedSet(new HashSet<>());
+    private final Object isStoppedLock = new Object();
+    private volatile boolean isStopped;
+    private final long rotationInterval;
+    private long lastRotation = System.currentTimeMillis();
 
-    public PeerGroupHealth(Node node, PeerGroup peerGroup) {
+    public PeerGroupHealth(Node node, PeerGroup peerGroup, PeerConfig peerConfig) {
+        this(node, peerGroup, peerConfig, ROTATION_INTERVAL);
+    }
+
+    @VisibleForTesting
+    PeerGroupHealth(Node node, PeerGroup peerGroup, PeerConfig peerConfig, long rotationInterval) {
         this.node = node;
         this.peerGroup = peerGroup;
+        this.peerConfig = peerConfig;
+        this.rotationInterval = rotationInterval;
     }
 
     public CompletableFuture<Boolean> bootstrap() {
+        scheduleMaintenance(0);
         return CompletableFuture.completedFuture(true);
     }
 
     public void shutdown() {
+        synchronized (isStoppedLock) {
+            isStopped = true;
+        }
+        ThreadingUtils.shutdownAndAwaitTermination(executor);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private void scheduleMaintenance(long delay) {
+        if (isStopped) {
+            return;
+        }
+        executor.schedule(() -> {
+            try {
+                maintain();
+            } catch (Throwable t) {
+                log.error("Maintenance of peer group failed", t);
+            }
+            scheduleMaintenance(getJitteredInterval());
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private long getJitteredInterval() {
+        double factor = 1 + JITTER * (2 * random.nextDouble() - 1);
+        return Math.round(MAINTENANCE_INTERVAL * factor);
+    }
+
+    @VisibleForTesting
+    void maintain() {
+        if (isStopped) {
+            return;
+        }
+        // Closing a connection is not completed immediately, so we pass the closed peers to topUp to not count them
+        Set<Address> closed = new HashSet<>(trim());
+        closed.addAll(maybeRotate());
+        topUp(closed);
+    }
+
+    // Returns the addresses of the closed connections
+    private Set<Address> trim() {
+        List<Connection> connections = getConnections();
+        int numSurplus = connections.size() - peerConfig.getMaxNumConnectedPeers();
+        if (numSurplus <= 0) {
+            return Set.of();
+        }
+        PeerScores peerScores = peerGroup.getPeerScores();
+        Set<Address> best = getBestPeers();
+        // Seeds first, then inbound, then outbound connections. Inside those groups the ones in the most crowded
+        // address groups and then the lowest scored peers first.
+        Map<String, Long> numByGroup = ConnectionDiversity.getNumByGroup(connections.stream()
+                .map(Connection::getPeerAddress)
+                .collect(Collectors.toList()));
+        connections.sort(Comparator.comparing((Connection connection) -> peerGroup.notASeed(connection.getPeerAddress()))
+                .thenComparing(Connection::isOutbound)
+                .thenComparing(connection -> -numByGroup.get(ReportedPeers.getGroup(connection.getPeerAddress())))
+                .thenComparing(Connection::getPeerAddress, peerScores.byScore().reversed()));
+        log.info("We have {} connections and close {} surplus connections", connections.size(), numSurplus);
+        return disconnect(connections.stream()
+                .filter(connection -> !best.contains(connection.getPeerAddress()))
+                .limit(numSurplus));
+    }
+
+    // Returns the addresses of the rotated out connections
+    private Set<Address> maybeRotate() {
+        long now = System.currentTimeMillis();
+        if (now - lastRotation < rotationInterval) {
+            return Set.of();
+        }
+        lastRotation = now;
+        List<Connection> connections = getConnections();
+        if (connections.size() < peerConfig.getMinNumConnectedPeers()) {
+            // We rather top up first
+            return Set.of();
+        }
+        int numToRotate = Math.max(1, (int) Math.round(connections.size() * ROTATION_FRACTION));
+        Set<Address> best = getBestPeers();
+        Collections.shuffle(connections);
+        log.info("We rotate {} of our {} connections", numToRotate, connections.size());
+        return disconnect(connections.stream()
+                .filter(connection -> !best.contains(connection.getPeerAddress()))
+                .limit(numToRotate));
+    }
+
+    // Connections we have just closed might still be reported as connected, so we do not count them. We also do not
+    // reconnect to them.
+    private void topUp(Set<Address> closed) {
+        Set<Address> connectedPeerAddresses = peerGroup.getConnectedPeerAddresses();
+        long numConnected = connectedPeerAddresses.stream()
+                .filter(address -> !closed.contains(address))
+                .count();
+        int numMissing = (int) (peerConfig.getMinNumConnectedPeers() - numConnected - addressesOfPendingConnections.size());
+        if (numMissing <= 0) {
+            return;
+        }
+        AddressCooldown addressCooldown = peerGroup.getAddressCooldown();
+        List<Address> candidates = Stream.concat(peerGroup.sampleReportedPeers(NUM_REPORTED_CANDIDATES).stream(),
+                peerGroup.getPersistedPeers().stream())
+                .map(Peer::getAddress)
+                .filter(peerGroup::notMyself)
+                .filter(peerGroup::notASeed)
+                .filter(address -> !connectedPeerAddresses.contains(address))
+                .filter(address -> !addressesOfPendingConnections.contains(address))
+                .filter(addressCooldown::isAvailable)
+                .distinct()
+                .sorted(peerGroup.getPeerScores().byScore())
+                .collect(Collectors.toList());
+        Set<Address> existing = new HashSet<>(connectedPeerAddresses);
+        existing.removeAll(closed);
+        existing.addAll(addressesOfPendingConnections);
+        candidates = new ArrayList<>(ConnectionDiversity.select(candidates,
+                existing,
+                numMissing,
+                peerGroup.getPeerScores().byScore()));
+        if (candidates.size() < numMissing) {
+            List<Address> seeds = peerGroup.getSeedNodes().stream()
+                    .filter(peerGroup::notMyself)
+                    .filter(address -> !connectedPeerAddresses.contains(address))
+                    .filter(address -> !addressesOfPendingConnections.contains(address))
+                    .filter(addressCooldown::isAvailable)
+                    .collect(Collectors.toList());
+            candidates.addAll(seeds);
+        }
+        log.info("We are missing {} connections and connect to {}", numMissing,
+                candidates.subList(0, Math.min(numMissing, candidates.size())));
+        candidates.stream().limit(numMissing).forEach(address -> {
+            addressesOfPendingConnections.add(address);
+            node.getConnection(address)
+                    .whenComplete((connection, throwable) -> {
+                        addressesOfPendingConnections.remove(address);
+                        if (throwable != null) {
+                            log.debug("Connecting to {} failed. {}", address, throwable.toString());
+                            addressCooldown.onFailure(address);
+                        }
+                    });
+        });
+    }
+
+    private Set<Address> disconnect(Stream<Connection> connections) {
+        Set<Address> closed = new HashSet<>();
+        connections.forEach(connection -> {
+            node.disconnect(connection);
+            closed.add(connection.getPeerAddress());
+        });
+        return closed;
+    }
+
+    // The best scored peers are never closed
+    private Set<Address> getBestPeers() {
+        return peerGroup.getPeerScores().sortByScore(peerGroup.getConnectedPeerAddresses()).stream()
+                .limit(ConnectionDiversity.NUM_RESERVED_FOR_BEST)
+                .collect(Collectors.toSet());
+    }
+
+    private List<Connection> getConnections() {
+        return peerGroup.getConnectedPeerAddresses().stream()
+                .map(node::findConnection)
+                .flatMap(Optional::stream)
+                .collect(Collectors.toList());
     }
 }
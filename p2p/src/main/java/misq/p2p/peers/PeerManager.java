@@ -67,8 +67,11 @@ public class PeerManager {
         this.peerGroup = peerGroup;
         this.peerConfig = peerConfig;
 
-        peerExchangeManager = new PeerExchangeManager(node, peerExchangeStrategy);
-        peerGroupHealth = new PeerGroupHealth(node, peerGroup);
+        peerExchangeManager = new PeerExchangeManager(node,
+                peerExchangeStrategy,
+                peerGroup.getPeerExchangeGraph(),
+                peerGroup.getAddressCooldown());
+        peerGroupHealth = new PeerGroupHealth(node, peerGroup, peerConfig);
     }
 
     public CompletableFuture<Boolean> bootstrap(String serverId, int serverPort) {
@@ -86,6 +89,7 @@ public class PeerManager {
         }
         peerExchangeManager.shutdown();
         peerGroupHealth.shutdown();
+        peerGroup.shutdown();
     }
 
     public boolean sufficientPeersAtPeerExchange() {
@@ -93,7 +97,7 @@ public class PeerManager {
     }
 
     private boolean sufficientReportedPeers() {
-        return peerGroup.getReportedPeers().size() >= peerConfig.getMinNumReportedPeers();
+        return peerGroup.getNumReportedPeers() >= peerConfig.getMinNumReportedPeers();
     }
 
     private boolean sufficientConnections() {
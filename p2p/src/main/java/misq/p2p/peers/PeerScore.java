@@ -0,0 +1,111 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.peers;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reliability and latency record of a peer.
+ * The RTT samples are the durations of establishing a connection including the handshake round trip. On Tor that
+ * reflects the circuit latency which is what matters for us.
+ */
+@Getter
+public class PeerScore implements Serializable {
+    // Weight of a new sample in the exponentially weighted moving average
+    private static final double RTT_SMOOTHING = 0.2;
+    // RTT at which the latency factor is 0.5
+    private static final long REFERENCE_RTT = TimeUnit.SECONDS.toMillis(2);
+    // Uptime at which the uptime factor reaches 1
+    private static final long REFERENCE_UPTIME = TimeUnit.HOURS.toMillis(1);
+    // Bytes served at which the served factor reaches 1
+    private static final long REFERENCE_BYTES_SERVED = 10_000_000;
+    private static final double PENALTY_WEIGHT = 0.1;
+
+    private int numConnectAttempts;
+    private int numConnectSuccesses;
+    // -1 if we have no sample yet
+    private double smoothedRtt = -1;
+    private long uptime;
+    private long bytesServed;
+    private int penalty;
+    private transient long connectedSince;
+
+    synchronized void onConnectAttempt(boolean isSuccess, long duration) {
+        numConnectAttempts++;
+        if (isSuccess) {
+            numConnectSuccesses++;
+            smoothedRtt = smoothedRtt < 0 ? duration : RTT_SMOOTHING * duration + (1 - RTT_SMOOTHING) * smoothedRtt;
+        }
+    }
+
+    synchronized void onConnection() {
+        connectedSince = System.currentTimeMillis();
+    }
+
+    synchronized void onDisconnect(long bytesReceived) {
+        if (connectedSince > 0) {
+            uptime += System.currentTimeMillis() - connectedSince;
+            connectedSince = 0;
+        }
+        bytesServed += bytesReceived;
+    }
+
+    synchronized void penalize(int points) {
+        penalty += points;
+    }
+
+    synchronized boolean isConnected() {
+        return connectedSince > 0;
+    }
+
+    /**
+     * @return A score where higher is better. Peers we have no data about get a medium score.
+     */
+    public synchronized double getScore() {
+        // We use Laplace smoothing so that a single attempt has not a too strong impact
+        double successRate = (numConnectSuccesses + 1d) / (numConnectAttempts + 2d);
+        double latency = smoothedRtt < 0 ? 0.5 : REFERENCE_RTT / (REFERENCE_RTT + smoothedRtt);
+        long currentUptime = connectedSince > 0 ? uptime + System.currentTimeMillis() - connectedSince : uptime;
+        double uptimeFactor = Math.min(1, currentUptime / (double) REFERENCE_UPTIME);
+        double served = Math.min(1, bytesServed / (double) REFERENCE_BYTES_SERVED);
+        return 0.4 * successRate + 0.3 * latency + 0.2 * uptimeFactor + 0.1 * served - PENALTY_WEIGHT * penalty;
+    }
+
+    // The score gets persisted by the AddressBook while it might get updated
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "PeerScore{" +
+                "\n     numConnectAttempts=" + numConnectAttempts +
+                ",\n     numConnectSuccesses=" + numConnectSuccesses +
+                ",\n     smoothedRtt=" + smoothedRtt +
+                ",\n     uptime=" + uptime +
+                ",\n     bytesServed=" + bytesServed +
+                ",\n     penalty=" + penalty +
+                "\n}";
+    }
+}
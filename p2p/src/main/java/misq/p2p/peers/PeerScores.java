@@ -0,0 +1,148 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.peers;
+
+import com.google.common.annotations.VisibleForTesting;
+import misq.p2p.Address;
+import misq.p2p.node.Connection;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the PeerScore of each peer we had a connection or connection attempt with.
+ * Gets updated by the PeerGroup from the node events.
+ * <p>
+ * If we have more than MAX_SIZE entries we evict the ones of unconnected peers which carry the least information,
+ * that is, whose score is closest to the one of an unknown peer. Penalized peers get evicted last. We evict down to
+ * 90% of MAX_SIZE, so we do not need to sort at each added entry.
+ */
+public class PeerScores {
+    // Penalty points for misbehaviour
+    public static final int PENALTY_INVALID_MESSAGE = 2;
+    public static final int PENALTY_INVALID_DATA = 5;
+
+    // We pick randomly from the best candidates, so we do not always use the same peers
+    private static final int NUM_BEST_CANDIDATES = 3;
+    static final int MAX_SIZE = 5000;
+    private static final double NEUTRAL_SCORE = new PeerScore().getScore();
+
+    private final Map<Address, PeerScore> scoreByAddress = new ConcurrentHashMap<>();
+    private final Random random = new Random();
+
+    public PeerScore getPeerScore(Address address) {
+        PeerScore peerScore = scoreByAddress.get(address);
+        if (peerScore != null) {
+            return peerScore;
+        }
+        peerScore = scoreByAddress.computeIfAbsent(address, key -> new PeerScore());
+        if (scoreByAddress.size() > MAX_SIZE) {
+            evict(address);
+        }
+        return peerScore;
+    }
+
+    public double getScore(Address address) {
+        PeerScore peerScore = scoreByAddress.get(address);
+        return peerScore != null ? peerScore.getScore() : NEUTRAL_SCORE;
+    }
+
+    public void penalize(Address address, int points) {
+        getPeerScore(address).penalize(points);
+    }
+
+    /**
+     * The score of connected peers changes over time. To keep the order consistent during a sort, each returned
+     * comparator uses the score of an address at the time it got compared first. It must not be used concurrently.
+     *
+     * @return Comparator sorting the addresses with the highest score first
+     */
+    public Comparator<Address> byScore() {
+        Map<Address, Double> snapshot = new HashMap<>();
+        return Comparator.comparingDouble((Address address) -> snapshot.computeIfAbsent(address, this::getScore))
+                .reversed();
+    }
+
+    public List<Address> sortByScore(Collection<Address> addresses) {
+        return addresses.stream().sorted(byScore()).collect(Collectors.toList());
+    }
+
+    /**
+     * @return A random address out of the best scored candidates
+     */
+    public Optional<Address> selectBest(Collection<Address> candidates) {
+        List<Address> best = candidates.stream()
+                .sorted(byScore())
+                .limit(NUM_BEST_CANDIDATES)
+                .collect(Collectors.toList());
+        if (best.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(best.get(random.nextInt(best.size())));
+    }
+
+    public Map<Address, PeerScore> getScoreByAddress() {
+        return new HashMap<>(scoreByAddress);
+    }
+
+    void putIfAbsent(Address address, PeerScore peerScore) {
+        scoreByAddress.putIfAbsent(address, peerScore);
+    }
+
+    @VisibleForTesting
+    int size() {
+        return scoreByAddress.size();
+    }
+
+    void onOutboundConnectionAttempt(Address peerAddress, boolean isSuccess, long duration) {
+        getPeerScore(peerAddress).onConnectAttempt(isSuccess, duration);
+    }
+
+    void onConnection(Connection connection) {
+        getPeerScore(connection.getPeerAddress()).onConnection();
+    }
+
+    void onDisconnect(Connection connection) {
+        getPeerScore(connection.getPeerAddress()).onDisconnect(connection.getNumBytesReceived());
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private synchronized void evict(Address added) {
+        if (scoreByAddress.size() <= MAX_SIZE) {
+            return;
+        }
+        int numToEvict = scoreByAddress.size() - MAX_SIZE * 9 / 10;
+        Comparator<Map.Entry<Address, PeerScore>> byInformation = Comparator
+                .comparing((Map.Entry<Address, PeerScore> entry) -> entry.getValue().getPenalty() > 0)
+                .thenComparingDouble(entry -> Math.abs(entry.getValue().getScore() - NEUTRAL_SCORE));
+        List<Address> evicted = scoreByAddress.entrySet().stream()
+                .filter(entry -> !entry.getKey().equals(added))
+                .filter(entry -> !entry.getValue().isConnected())
+                .sorted(byInformation)
+                .limit(numToEvict)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+        evicted.forEach(scoreByAddress::remove);
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.peers;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import misq.p2p.Address;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded store for the peers reported to us by other peers via the peer exchange, following the bucket design of
+ * Bitcoin Core's address manager.
+ * <p>
+ * The table consists of NUM_BUCKETS buckets with BUCKET_SIZE slots each. The bucket is derived from a keyed hash of the
+ * address group of the source and the reported address, where each source group can only use
+ * NUM_BUCKETS_PER_SOURCE_GROUP buckets. The slot inside the bucket is derived from the reported address. The key is
+ * random per instance, so peers cannot predict the slots.
+ * If a slot is taken by another address, the existing entry only gets evicted if it is older than MIN_AGE_FOR_EVICTION.
+ * That way a peer spamming us with addresses can only affect a small part of the table and memory stays bounded.
+ * <p>
+ * Insert, remove and random sampling are O(1) per element. We keep all entries additionally in a list for sampling.
+ */
+public class ReportedPeers {
+    private static final int NUM_BUCKETS = 256;
+    private static final int BUCKET_SIZE = 64;
+    private static final int NUM_BUCKETS_PER_SOURCE_GROUP = 8;
+    static final long MIN_AGE_FOR_EVICTION = TimeUnit.MINUTES.toMillis(10);
+
+    private static class Entry {
+        private final Peer peer;
+        private final int slot;
+        private final long added;
+        private int listIndex;
+
+        private Entry(Peer peer, int slot, long added) {
+            this.peer = peer;
+            this.slot = slot;
+            this.added = added;
+        }
+    }
+
+    private final HashFunction hashFunction;
+    private final Entry[] slots = new Entry[NUM_BUCKETS * BUCKET_SIZE];
+    private final Map<Address, Entry> entryByAddress = new HashMap<>();
+    private final List<Entry> entries = new ArrayList<>();
+    private final Random random = new Random();
+
+    public ReportedPeers() {
+        SecureRandom secureRandom = new SecureRandom();
+        hashFunction = Hashing.sipHash24(secureRandom.nextLong(), secureRandom.nextLong());
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * @param peer   The reported peer
+     * @param source The address of the peer which reported it to us
+     * @return true if the peer got added or updated
+     */
+    public synchronized boolean add(Peer peer, Address source) {
+        return add(peer, source, System.currentTimeMillis());
+    }
+
+    @VisibleForTesting
+    synchronized boolean add(Peer peer, Address source, long now) {
+        Address address = peer.getAddress();
+        Entry existing = entryByAddress.get(address);
+        if (existing != null) {
+            // We keep the slot but update the peer, e.g. it might have changed its capability. We keep the time it
+            // got added, otherwise re-reporting would protect an entry from eviction forever.
+            remove(existing);
+            insert(new Entry(peer, existing.slot, existing.added));
+            return true;
+        }
+
+        int slot = getSlot(address, source);
+        Entry occupant = slots[slot];
+        if (occupant != null) {
+            if (now - occupant.added < MIN_AGE_FOR_EVICTION) {
+                return false;
+            }
+            remove(occupant);
+        }
+        insert(new Entry(peer, slot, now));
+        return true;
+    }
+
+    public synchronized void addAll(Collection<Peer> peers, Address source) {
+        peers.forEach(peer -> add(peer, source));
+    }
+
+    public synchronized void remove(Address address) {
+        Entry entry = entryByAddress.get(address);
+        if (entry != null) {
+            remove(entry);
+        }
+    }
+
+    public synchronized boolean contains(Address address) {
+        return entryByAddress.containsKey(address);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return Up to numPeers randomly selected peers
+     */
+    public synchronized List<Peer> sample(int numPeers) {
+        int size = entries.size();
+        int n = Math.min(numPeers, size);
+        List<Peer> result = new ArrayList<>(n);
+        // Partial Fisher-Yates shuffle. The order of the list has no meaning, so we shuffle in place.
+        for (int i = 0; i < n; i++) {
+            int j = i + random.nextInt(size - i);
+            swap(i, j);
+            result.add(entries.get(i).peer);
+        }
+        return result;
+    }
+
+    public synchronized Set<Peer> getAll() {
+        Set<Peer> result = new HashSet<>(entries.size());
+        entries.forEach(entry -> result.add(entry.peer));
+        return result;
+    }
+
+    /**
+     * @return The group used for limiting the buckets a source can use. For clear net addresses it is the /16
+     * network, for Tor and I2P addresses the host.
+     */
+    public static String getGroup(Address address) {
+        String host = address.getHost();
+        if (address.isClearNet()) {
+            String[] tokens = host.split("\\.");
+            if (tokens.length == 4) {
+                return tokens[0] + "." + tokens[1];
+            }
+        }
+        return host;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private int getSlot(Address address, Address source) {
+        String addressString = address.toString();
+        String sourceGroup = getGroup(source);
+        int bucketOfGroup = Math.floorMod(hash(addressString), NUM_BUCKETS_PER_SOURCE_GROUP);
+        int bucket = Math.floorMod(hash(sourceGroup + "/" + bucketOfGroup), NUM_BUCKETS);
+        int position = Math.floorMod(hash(bucket + "/" + addressString), BUCKET_SIZE);
+        return bucket * BUCKET_SIZE + position;
+    }
+
+    private int hash(String value) {
+        return hashFunction.hashString(value, StandardCharsets.UTF_8).asInt();
+    }
+
+    private void insert(Entry entry) {
+        slots[entry.slot] = entry;
+        entryByAddress.put(entry.peer.getAddress(), entry);
+        entry.listIndex = entries.size();
+        entries.add(entry);
+    }
+
+    private void remove(Entry entry) {
+        slots[entry.slot] = null;
+        entryByAddress.remove(entry.peer.getAddress());
+        // Swap with the last element, so removal is O(1)
+        int lastIndex = entries.size() - 1;
+        swap(entry.listIndex, lastIndex);
+        entries.remove(lastIndex);
+    }
+
+    private void swap(int i, int j) {
+        if (i == j) {
+            return;
+        }
+        Entry entryI = entries.get(i);
+        Entry entryJ = entries.get(j);
+        entries.set(i, entryJ);
+        entries.set(j, entryI);
+        entryJ.listIndex = i;
+        entryI.listIndex = j;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.peers.exchange;
+
+import misq.p2p.Address;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks failed peer exchanges per address. After a failure the address is not used again until its cooldown is over.
+ * The cooldown doubles with each further failure, so dead addresses are rarely redialed.
+ * It is shared by the PeerExchangeManager and the PeerGroupHealth, so both respect it.
+ */
+public class AddressCooldown {
+    private static final long INITIAL_COOLDOWN = TimeUnit.SECONDS.toMillis(30);
+    private static final long MAX_COOLDOWN = TimeUnit.HOURS.toMillis(1);
+    private static final int MAX_SIZE = 10_000;
+
+    private static class Entry {
+        private final int numFailures;
+        private final long until;
+
+        private Entry(int numFailures, long until) {
+            this.numFailures = numFailures;
+            this.until = until;
+        }
+    }
+
+    private final Map<Address, Entry> entryByAddress = new ConcurrentHashMap<>();
+
+    public void onFailure(Address address) {
+        long now = System.currentTimeMillis();
+        if (entryByAddress.size() > MAX_SIZE) {
+            entryByAddress.values().removeIf(entry -> entry.until < now);
+        }
+        entryByAddress.compute(address, (key, entry) -> {
+            int numFailures = entry == null ? 1 : entry.numFailures + 1;
+            long cooldown = Math.min(MAX_COOLDOWN, INITIAL_COOLDOWN << Math.min(numFailures - 1, 30));
+            return new Entry(numFailures, now + cooldown);
+        });
+    }
+
+    /**
+     * The peer is overloaded and asked us to not connect again before retryAfter ms.
+     */
+    public void onRetryAfter(Address address, long retryAfter) {
+        long until = System.currentTimeMillis() + Math.min(retryAfter, MAX_COOLDOWN);
+        entryByAddress.compute(address, (key, entry) -> new Entry(entry == null ? 0 : entry.numFailures, until));
+    }
+
+    public void onSuccess(Address address) {
+        entryByAddress.remove(address);
+    }
+
+    public boolean isAvailable(Address address) {
+        Entry entry = entryByAddress.get(address);
+        return entry == null || entry.until <= System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.peers.exchange;
+
+import java.util.Random;
+
+/**
+ * Exponential backoff with jitter. Each call of getNextDelay doubles the delay up to maxDelay. The jitter spreads
+ * the retries of many nodes, e.g. after a network outage, so they do not all hit the same peers at the same time.
+ */
+class Backoff {
+    private static final double JITTER = 0.25;
+
+    private final long initialDelay;
+    private final long maxDelay;
+    private final Random random = new Random();
+    private int numAttempts;
+
+    /**
+     * @param initialDelay Delay in ms of the first attempt
+     * @param maxDelay     Max. delay in ms
+     */
+    Backoff(long initialDelay, long maxDelay) {
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+    }
+
+    synchronized long getNextDelay() {
+        // We limit the exponent to avoid an overflow
+        long delay = Math.min(maxDelay, initialDelay << Math.min(numAttempts, 30));
+        numAttempts++;
+        double factor = 1 + JITTER * (2 * random.nextDouble() - 1);
+        return Math.round(delay * factor);
+    }
+
+    synchronized int getNumAttempts() {
+        return numAttempts;
+    }
+
+    synchronized void reset() {
+        numAttempts = 0;
+    }
+}
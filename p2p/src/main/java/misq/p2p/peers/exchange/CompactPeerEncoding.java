@@ -0,0 +1,135 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.peers.exchange;
+
+import com.google.common.net.InetAddresses;
+import lombok.extern.slf4j.Slf4j;
+import misq.p2p.Address;
+import misq.p2p.NetworkType;
+import misq.p2p.node.capability.Capability;
+import misq.p2p.peers.Peer;
+
+import java.io.*;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compact binary encoding of the peers used in the peer exchange messages. Java serialization of a Peer costs several
+ * hundred bytes, with that encoding an IPv4 peer takes 12 bytes, a Tor v3 peer 72 bytes.
+ * <p>
+ * Format: number of peers (int), followed by each peer as:
+ * - bitmask of the supported network types by ordinal (byte)
+ * - host type (byte): IPv4 as 4 bytes, otherwise as UTF string
+ * - port (unsigned short)
+ * - creation date in minutes since epoch (int)
+ */
+@Slf4j
+class CompactPeerEncoding {
+    // Upper limit when decoding, so a peer cannot make us allocate large collections
+    static final int MAX_NUM_PEERS = 1000;
+
+    private static final byte HOST_TYPE_IPV4 = 0;
+    private static final byte HOST_TYPE_STRING = 1;
+
+    static byte[] encode(Collection<Peer> peers) {
+        try (ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+             DataOutputStream out = new DataOutputStream(byteArrayOutputStream)) {
+            out.writeInt(peers.size());
+            for (Peer peer : peers) {
+                Capability capability = peer.getCapability();
+                out.writeByte(toBitmask(capability.getSupportedNetworkTypes()));
+                Address address = capability.getAddress();
+                String host = address.getHost();
+                if (isIpV4(host)) {
+                    out.writeByte(HOST_TYPE_IPV4);
+                    out.write(InetAddresses.forString(host).getAddress());
+                } else {
+                    out.writeByte(HOST_TYPE_STRING);
+                    out.writeUTF(host);
+                }
+                out.writeShort(address.getPort());
+                out.writeInt((int) TimeUnit.MILLISECONDS.toMinutes(peer.getCreated()));
+            }
+            out.flush();
+            return byteArrayOutputStream.toByteArray();
+        } catch (IOException e) {
+            // Cannot happen with a ByteArrayOutputStream
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return The decoded peers or an empty set if the data are invalid
+     */
+    static Set<Peer> decode(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            int numPeers = in.readInt();
+            if (numPeers < 0 || numPeers > MAX_NUM_PEERS) {
+                throw new IOException("Invalid number of peers: " + numPeers);
+            }
+            Set<Peer> peers = new HashSet<>();
+            for (int i = 0; i < numPeers; i++) {
+                Set<NetworkType> supportedNetworkTypes = fromBitmask(in.readByte());
+                byte hostType = in.readByte();
+                String host;
+                if (hostType == HOST_TYPE_IPV4) {
+                    byte[] bytes = new byte[4];
+                    in.readFully(bytes);
+                    host = InetAddresses.toAddrString(InetAddress.getByAddress(bytes));
+                } else if (hostType == HOST_TYPE_STRING) {
+                    host = in.readUTF();
+                } else {
+                    throw new IOException("Invalid host type: " + hostType);
+                }
+                int port = in.readUnsignedShort();
+                long created = TimeUnit.MINUTES.toMillis(in.readInt());
+                Address address = new Address(host, port);
+                peers.add(new Peer(new Capability(address, supportedNetworkTypes), created));
+            }
+            return peers;
+        } catch (IOException e) {
+            log.warn("Could not decode peers. {}", e.toString());
+            return new HashSet<>();
+        }
+    }
+
+    private static boolean isIpV4(String host) {
+        return InetAddresses.isInetAddress(host) && InetAddresses.forString(host) instanceof Inet4Address;
+    }
+
+    private static byte toBitmask(Set<NetworkType> networkTypes) {
+        int bitmask = 0;
+        for (NetworkType networkType : networkTypes) {
+            bitmask |= 1 << networkType.ordinal();
+        }
+        return (byte) bitmask;
+    }
+
+    private static Set<NetworkType> fromBitmask(byte bitmask) {
+        Set<NetworkType> networkTypes = EnumSet.noneOf(NetworkType.class);
+        for (NetworkType networkType : NetworkType.values()) {
+            if ((bitmask & (1 << networkType.ordinal())) != 0) {
+                networkTypes.add(networkType);
+            }
+        }
+        return networkTypes;
+    }
+}
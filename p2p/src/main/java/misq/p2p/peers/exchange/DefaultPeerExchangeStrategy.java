@@ -19,11 +19,13 @@ package misq.p2p.peers.exchange;
 
 import lombok.extern.slf4j.Slf4j;
 import misq.p2p.Address;
+import misq.p2p.peers.ConnectionDiversity;
 import misq.p2p.peers.Peer;
 import misq.p2p.peers.PeerConfig;
 import misq.p2p.peers.PeerGroup;
 
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -31,12 +33,17 @@ import java.util.stream.Collectors;
  */
 @Slf4j
 public class DefaultPeerExchangeStrategy implements PeerExchangeStrategy {
+    private static final int MAX_REPORTED_PEERS = 100;
+    // Time an overloaded seed node asks the requesting peers to wait until they connect again
+    private static final long SEED_RETRY_AFTER = TimeUnit.MINUTES.toMillis(10);
+
     private final PeerGroup peerGroup;
     private final PeerConfig peerConfig;
     private final PeerExchangeConfig peerExchangeConfig;
     // We keep track of the addresses we contacted so in case we need to make a repeated request round that we do not \
     // pick the same addresses.
     private final Set<Address> usedAddresses = new HashSet<>();
+    private final Random random = new Random();
 
     public DefaultPeerExchangeStrategy(PeerGroup peerGroup, PeerConfig peerConfig) {
         this.peerGroup = peerGroup;
@@ -49,31 +56,40 @@ public class DefaultPeerExchangeStrategy implements PeerExchangeStrategy {
         Set<Peer> collect = peers.stream()
                 .filter(peerGroup::notMyself)
                 .collect(Collectors.toSet());
-        peerGroup.addReportedPeers(collect);
-        log.debug("addPeersFromPeerExchange at {} from {} peers={}, collect={} ## {}", peerGroup.serverPort, senderAddress, peers, collect, peerGroup.getReportedPeers().size());
+        peerGroup.addReportedPeers(collect, senderAddress);
+        collect.forEach(peer -> peerGroup.getPeerExchangeGraph().add(senderAddress, peer.getAddress()));
+        log.debug("addPeersFromPeerExchange at {} from {} peers={}, collect={} ## {}", peerGroup.serverPort, senderAddress, peers, collect, peerGroup.getNumReportedPeers());
         if (peerGroup.getConnections().size() > 1 && peerGroup.serverPort == 1000 && senderAddress.toString().equals("127.0.0.1:5001")) {
             int serverPort = peerGroup.serverPort;
-            log.error("addPeersFromPeerExchange at {} from {} peers={}, collect={} ## {}", serverPort, senderAddress, peers, collect, peerGroup.getReportedPeers().size());
+            log.error("addPeersFromPeerExchange at {} from {} peers={}, collect={} ## {}", serverPort, senderAddress, peers, collect, peerGroup.getNumReportedPeers());
         }
         if (peerGroup.getConnections().size() > 1 && peerGroup.serverPort == 5001) {
             int serverPort = peerGroup.serverPort;
-            log.error("addPeersFromPeerExchange at {} from {} peers={}, collect={} ## {}", serverPort, senderAddress, peers, collect, peerGroup.getReportedPeers().size());
+            log.error("addPeersFromPeerExchange at {} from {} peers={}, collect={} ## {}", serverPort, senderAddress, peers, collect, peerGroup.getNumReportedPeers());
         }
     }
 
     @Override
     public Set<Peer> getPeersForPeerExchange(Address peerAddress) {
-        List<Peer> list = peerGroup.getReportedPeers().stream()
-                .sorted(Comparator.comparing(Peer::getDate))
-                .limit(100)
+        return getPeersForPeerExchange().stream()
+                .filter(peer -> notDirectPeer(peerAddress, peer))
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public Set<Peer> getPeersForPeerExchange() {
+        // From a random sample of the reported peers we prefer the peers which have proven to be reliable, then the
+        // most recent ones.
+        Comparator<Peer> byScore = Comparator.comparing(Peer::getAddress, peerGroup.getPeerScores().byScore());
+        List<Peer> list = peerGroup.sampleReportedPeers(2 * MAX_REPORTED_PEERS).stream()
+                .sorted(byScore.thenComparing(Comparator.comparing(Peer::getDate).reversed()))
+                .limit(MAX_REPORTED_PEERS)
                 .collect(Collectors.toList());
         Set<Peer> allConnectedPeers = peerGroup.getAllConnectedPeers();
         list.addAll(allConnectedPeers);
-        Set<Peer> collect = list.stream()
+        return list.stream()
                 .filter(peerGroup::notASeed)
-                .filter(peer -> notDirectPeer(peerAddress, peer))
                 .collect(Collectors.toSet());
-        return collect;
     }
 
     @Override
@@ -83,33 +99,45 @@ public class DefaultPeerExchangeStrategy implements PeerExchangeStrategy {
         int numReportedPeersAtBoostrap = peerExchangeConfig.getNumReportedPeersAtBoostrap();
         int minNumConnectedPeers = peerConfig.getMinNumConnectedPeers();
 
-        Set<Address> seeds = peerGroup.getSeedNodes().stream()
+        List<Address> seeds = peerGroup.getSeedNodes().stream()
                 .filter(peerGroup::notMyself)
                 .filter(this::notUsedYet)
                 .limit(numSeeNodesAtBoostrap)
-                .collect(Collectors.toSet()); //2
+                .collect(Collectors.toList()); //2
+
+        Set<Address> connectedPeerAddresses = peerGroup.getConnectedPeerAddresses().stream()
+                .filter(peerGroup::notMyself)
+                /* .filter(this::notUsedYet)
+                 .filter(peerGroup::notASeed)*/
+                .collect(Collectors.toSet());
 
         // Usually we don't have reported peers at startup, but in case or repeated bootstrap attempts we likely have
         // as well it could be that other nodes have started peer exchange to ourself before we start the peer exchange.
-        Set<Address> reported = peerGroup.getReportedPeers().stream()
+        List<Address> reportedAddresses = peerGroup.getReportedPeers().stream()
                 .map(Peer::getAddress)
                 .filter(peerGroup::notMyself)
                 /* .filter(this::notUsedYet)
                  .limit(numReportedPeersAtBoostrap)*/
-                .collect(Collectors.toSet()); //4
-
-        Set<Address> persisted = peerGroup.getPersistedPeers().stream()
+                .sorted(peerGroup.getPeerScores().byScore())
+                .collect(Collectors.toList()); //4
+        // We keep all but order them so that the best scored and then the diverse peers are used first
+        List<Address> reported = ConnectionDiversity.select(reportedAddresses,
+                connectedPeerAddresses,
+                reportedAddresses.size(),
+                peerGroup.getPeerScores().byScore());
+
+        // Peers from our address book we have been connected to in previous sessions. We dial the best scored ones in
+        // parallel with the seeds, spread over different address groups and network types.
+        List<Address> persistedByScore = peerGroup.getPersistedPeers().stream()
                 .map(Peer::getAddress)
                 .filter(peerGroup::notMyself)
-                /* .filter(this::notUsedYet)
-                 .limit(numPersistedPeersAtBoostrap)*/
-                .collect(Collectors.toSet()); //8
-
-        Set<Address> connectedPeerAddresses = peerGroup.getConnectedPeerAddresses().stream()
-                .filter(peerGroup::notMyself)
-                /* .filter(this::notUsedYet)
-                 .filter(peerGroup::notASeed)*/
-                .collect(Collectors.toSet());
+                .filter(peerGroup::notASeed)
+                .sorted(peerGroup.getPeerScores().byScore())
+                .collect(Collectors.toList());
+        List<Address> persisted = ConnectionDiversity.select(persistedByScore,
+                connectedPeerAddresses,
+                numPersistedPeersAtBoostrap,
+                peerGroup.getPeerScores().byScore()); //8
 
         // If we have already connections (at repeated bootstraps) we limit the new set to what is missing to reach out
         // target.
@@ -120,20 +148,45 @@ public class DefaultPeerExchangeStrategy implements PeerExchangeStrategy {
                 : candidates;
         missingConnections = Math.max(0, missingConnections);
 
-        // In case we apply the limit it will be applied at the persisted first which is intended as those are the least
-        // likely to be successful.
-        List<Address> all = new ArrayList<>(seeds);
+        // The order defines which peers are used first at the staggered bootstrap. Our connected peers complete
+        // instantly, then we alternate between our best persisted peers and the seeds, so we do not depend on slow
+        // seeds. Reported peers are used last.
+        List<Address> all = new ArrayList<>(connectedPeerAddresses);
+        for (int i = 0; i < Math.max(persisted.size(), seeds.size()); i++) {
+            if (i < persisted.size()) {
+                all.add(persisted.get(i));
+            }
+            if (i < seeds.size()) {
+                all.add(seeds.get(i));
+            }
+        }
         all.addAll(reported);
-        all.addAll(persisted);
-        all.addAll(connectedPeerAddresses);
 
         Set<Address> result = all.stream()
                 /*.limit(missingConnections)*/
-                .collect(Collectors.toSet());
+                .collect(Collectors.toCollection(LinkedHashSet::new));
         usedAddresses.addAll(result);
         return result;
     }
 
+    @Override
+    public int getMinNumConnectedPeers() {
+        return peerConfig.getMinNumConnectedPeers();
+    }
+
+    /**
+     * Seed nodes shed load once they have more than maxNumConnectedPeers connections. The requesting peer gets a sample
+     * of our peers and the connection gets closed. The retry after time has 25% jitter so the retries are spread.
+     */
+    @Override
+    public long getRetryAfterForLoadShedding() {
+        if (!peerGroup.isSeed() || peerGroup.getConnections().size() <= peerConfig.getMaxNumConnectedPeers()) {
+            return 0;
+        }
+        double factor = 1 + 0.25 * (2 * random.nextDouble() - 1);
+        return Math.round(SEED_RETRY_AFTER * factor);
+    }
+
     @Override
     public boolean repeatBootstrap(long numSuccess, int numFutures) {
         long failures = numFutures - numSuccess;
@@ -150,10 +203,11 @@ public class DefaultPeerExchangeStrategy implements PeerExchangeStrategy {
     }
 
     private boolean sufficientReportedPeers() {
-        return peerGroup.getReportedPeers().size() >= peerConfig.getMinNumReportedPeers();
+        return peerGroup.getNumReportedPeers() >= peerConfig.getMinNumReportedPeers();
     }
 
-    private boolean sufficientConnections() {
+    @Override
+    public boolean sufficientConnections() {
         return peerGroup.getAllConnectedPeers().size() >= peerConfig.getMinNumConnectedPeers();
     }
 
@@ -19,15 +19,18 @@ package misq.p2p.peers.exchange;
 
 import lombok.Getter;
 
+import java.util.concurrent.TimeUnit;
+
 @Getter
 public class PeerExchangeConfig {
     private final int numSeeNodesAtBoostrap;
     private final int numPersistedPeersAtBoostrap;
     private final int numReportedPeersAtBoostrap;
+    // Max. delay in ms for repeated bootstrap attempts
     private final int repeatPeerExchangeDelay;
 
     public PeerExchangeConfig() {
-        this(2, 8, 4, 300);
+        this(2, 8, 4, (int) TimeUnit.MINUTES.toMillis(5));
     }
 
     public PeerExchangeConfig(int numSeeNodesAtBoostrap,
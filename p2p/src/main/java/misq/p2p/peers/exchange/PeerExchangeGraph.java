@@ -15,19 +15,220 @@
  * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
  */
 
+
 package misq.p2p.peers.exchange;
 
-import misq.common.util.Tuple2;
 import misq.p2p.Address;
 
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
+/**
+ * Graph of the peer exchanges: an edge from source to target is added when source reported target to us or if we
+ * have done a peer exchange with target (then we are the source).
+ * <p>
+ * The analytics (degree distribution, clustering, diameter) use the undirected view of the graph. As we only see
+ * the peers which have been reported to us the graph is a partial view of the network topology.
+ */
 public class PeerExchangeGraph {
+    // Limits to keep memory and the costs of the analytics bounded
+    static final int MAX_NUM_SOURCES = 1000;
+    static final int MAX_NUM_TARGETS_PER_SOURCE = 500;
+    static final int MAX_NUM_NODES = 10_000;
+    private static final int MAX_NUM_CLUSTERING_SAMPLES = 1000;
+    // Above that number of neighbor pairs we estimate the local clustering coefficient from a random sample of pairs
+    static final int MAX_NUM_NEIGHBOR_PAIRS = 1000;
+    private static final int NUM_DIAMETER_SAMPLES = 10;
 
-    private final List<Tuple2<Address, Address>> vectors = new CopyOnWriteArrayList<>();
+    private final Map<Address, Set<Address>> targetsBySource = new ConcurrentHashMap<>();
+    private final Map<Address, Set<Address>> neighborsByNode = new ConcurrentHashMap<>();
+    private final Random random = new Random();
 
     public void add(Address source, Address target) {
-        vectors.add(new Tuple2<>(source, target));
+        if (source == null || target == null || source.equals(target)) {
+            return;
+        }
+        if (!targetsBySource.containsKey(source) && targetsBySource.size() >= MAX_NUM_SOURCES) {
+            return;
+        }
+        int numNewNodes = (neighborsByNode.containsKey(source) ? 0 : 1) + (neighborsByNode.containsKey(target) ? 0 : 1);
+        if (numNewNodes > 0 && neighborsByNode.size() + numNewNodes > MAX_NUM_NODES) {
+            return;
+        }
+        Set<Address> targets = targetsBySource.computeIfAbsent(source, key -> ConcurrentHashMap.newKeySet());
+        if (!targets.contains(target) && targets.size() >= MAX_NUM_TARGETS_PER_SOURCE) {
+            return;
+        }
+        targets.add(target);
+        neighborsByNode.computeIfAbsent(source, key -> ConcurrentHashMap.newKeySet()).add(target);
+        neighborsByNode.computeIfAbsent(target, key -> ConcurrentHashMap.newKeySet()).add(source);
+    }
+
+    /**
+     * @return All addresses which appeared as source or target
+     */
+    public Set<Address> getNodes() {
+        return new HashSet<>(neighborsByNode.keySet());
+    }
+
+    /**
+     * @return The targets by source address
+     */
+    public Map<Address, Set<Address>> getTargetsBySource() {
+        Map<Address, Set<Address>> map = new HashMap<>();
+        targetsBySource.forEach((source, targets) -> map.put(source, new HashSet<>(targets)));
+        return map;
+    }
+
+    public Set<Address> getNeighbors(Address address) {
+        return new HashSet<>(neighborsByNode.getOrDefault(address, Set.of()));
+    }
+
+    public int getNumEdges() {
+        // Each undirected edge is contained in the neighbor sets of both nodes
+        return neighborsByNode.values().stream().mapToInt(Set::size).sum() / 2;
+    }
+
+    /**
+     * @return Number of nodes by degree, sorted by degree
+     */
+    public SortedMap<Integer, Integer> getDegreeDistribution() {
+        SortedMap<Integer, Integer> distribution = new TreeMap<>();
+        neighborsByNode.values().forEach(neighbors -> distribution.merge(neighbors.size(), 1, Integer::sum));
+        return distribution;
+    }
+
+    public double getAverageDegree() {
+        return neighborsByNode.values().stream().mapToInt(Set::size).average().orElse(0);
+    }
+
+    /**
+     * @return The average local clustering coefficient of the nodes with at least 2 neighbors. For large graphs it is
+     * calculated from a random sample of nodes.
+     */
+    public double getClusteringCoefficient() {
+        List<Address> nodes = neighborsByNode.entrySet().stream()
+                .filter(entry -> entry.getValue().size() >= 2)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+        if (nodes.size() > MAX_NUM_CLUSTERING_SAMPLES) {
+            Collections.shuffle(nodes, random);
+            nodes = nodes.subList(0, MAX_NUM_CLUSTERING_SAMPLES);
+        }
+        return nodes.stream()
+                .mapToDouble(this::getLocalClusteringCoefficient)
+                .average()
+                .orElse(0);
+    }
+
+    /**
+     * Estimates the diameter with breadth first searches from a few random nodes, each followed by a search from the
+     * farthest node found (double sweep). The result is a lower bound which is usually exact for sparse graphs.
+     * Unconnected nodes are ignored.
+     */
+    public int estimateDiameter() {
+        List<Address> nodes = new ArrayList<>(neighborsByNode.keySet());
+        if (nodes.isEmpty()) {
+            return 0;
+        }
+        Collections.shuffle(nodes, random);
+        int diameter = 0;
+        for (Address start : nodes.subList(0, Math.min(NUM_DIAMETER_SAMPLES, nodes.size()))) {
+            Map<Address, Integer> distances = getDistances(start);
+            Address farthest = getFarthest(distances);
+            diameter = Math.max(diameter, distances.get(farthest));
+            Map<Address, Integer> distancesFromFarthest = getDistances(farthest);
+            diameter = Math.max(diameter, distancesFromFarthest.get(getFarthest(distancesFromFarthest)));
+        }
+        return diameter;
+    }
+
+    public TopologyStats getTopologyStats() {
+        return new TopologyStats(neighborsByNode.size(),
+                getNumEdges(),
+                getAverageDegree(),
+                getDegreeDistribution(),
+                getClusteringCoefficient(),
+                estimateDiameter());
+    }
+
+    /**
+     * @return JSON object with the directed edges and the topology stats, e.g. for visualisation or for analysing
+     * simulations
+     */
+    public String toJson() {
+        String edges = getTargetsBySource().entrySet().stream()
+                .flatMap(entry -> entry.getValue().stream()
+                        .map(target -> "{\"source\":" + TopologyStats.quote(entry.getKey().toString()) +
+                                ",\"target\":" + TopologyStats.quote(target.toString()) + "}"))
+                .collect(Collectors.joining(","));
+        return "{\"edges\":[" + edges + "],\"stats\":" + getTopologyStats().toJson() + "}";
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private double getLocalClusteringCoefficient(Address node) {
+        List<Address> neighbors = new ArrayList<>(neighborsByNode.getOrDefault(node, Set.of()));
+        int k = neighbors.size();
+        if (k < 2) {
+            return 0;
+        }
+        long numPairs = (long) k * (k - 1) / 2;
+        if (numPairs > MAX_NUM_NEIGHBOR_PAIRS) {
+            return getSampledLocalClusteringCoefficient(neighbors);
+        }
+        int numLinks = 0;
+        for (int i = 0; i < k; i++) {
+            Set<Address> neighborsOfNeighbor = neighborsByNode.getOrDefault(neighbors.get(i), Set.of());
+            for (int j = i + 1; j < k; j++) {
+                if (neighborsOfNeighbor.contains(neighbors.get(j))) {
+                    numLinks++;
+                }
+            }
+        }
+        return 2d * numLinks / (k * (k - 1));
+    }
+
+    // Share of linked pairs in a random sample of MAX_NUM_NEIGHBOR_PAIRS neighbor pairs
+    private double getSampledLocalClusteringCoefficient(List<Address> neighbors) {
+        int k = neighbors.size();
+        int numLinks = 0;
+        for (int n = 0; n < MAX_NUM_NEIGHBOR_PAIRS; n++) {
+            int i = random.nextInt(k);
+            int j = random.nextInt(k - 1);
+            if (j >= i) {
+                j++;
+            }
+            if (neighborsByNode.getOrDefault(neighbors.get(i), Set.of()).contains(neighbors.get(j))) {
+                numLinks++;
+            }
+        }
+        return numLinks / (double) MAX_NUM_NEIGHBOR_PAIRS;
+    }
+
+    private Map<Address, Integer> getDistances(Address start) {
+        Map<Address, Integer> distances = new HashMap<>();
+        Deque<Address> queue = new ArrayDeque<>();
+        distances.put(start, 0);
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            Address node = queue.poll();
+            int distance = distances.get(node);
+            neighborsByNode.getOrDefault(node, Set.of()).forEach(neighbor -> {
+                if (!distances.containsKey(neighbor)) {
+                    distances.put(neighbor, distance + 1);
+                    queue.add(neighbor);
+                }
+            });
+        }
+        return distances;
+    }
+
+    private Address getFarthest(Map<Address, Integer> distances) {
+        return Collections.max(distances.entrySet(), Map.Entry.comparingByValue()).getKey();
     }
 }
@@ -18,18 +18,23 @@
 package misq.p2p.peers.exchange;
 
 import lombok.extern.slf4j.Slf4j;
-import misq.common.util.CollectionUtil;
 import misq.common.util.MapUtils;
+import misq.common.util.ThreadingUtils;
 import misq.p2p.Address;
 import misq.p2p.node.Connection;
 import misq.p2p.node.ConnectionListener;
 import misq.p2p.node.Node;
 import misq.p2p.peers.Peer;
 
+import javax.annotation.Nullable;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -40,6 +45,27 @@ import java.util.stream.Collectors;
 @Slf4j
 public class PeerExchangeManager implements ConnectionListener {
     public static final int TIMEOUT = 300;
+    // Number of peer exchanges we start in parallel at bootstrap
+    private static final int NUM_INITIAL_EXCHANGES = 4;
+    // Delay until we start the next peer exchange if we have not reached the required number of successful exchanges
+    private static final long STAGGER_DELAY = TimeUnit.SECONDS.toMillis(2);
+    // Max. number of peers we remember per connection as known by the peer
+    private static final int MAX_NUM_KNOWN_PEERS = 10_000;
+
+    // The initial delay of the repeated bootstrap depends on the cause. E.g. if we lost connections we want to recover
+    // quickly, if none of our exchanges succeeded we are likely offline.
+    private enum BootstrapFailure {
+        CONNECTION_LOST(TimeUnit.SECONDS.toMillis(2)),
+        NO_SUCCESS(TimeUnit.SECONDS.toMillis(5)),
+        INSUFFICIENT_CONNECTIONS(TimeUnit.SECONDS.toMillis(30)),
+        TIMEOUT(TimeUnit.SECONDS.toMillis(60));
+
+        private final long initialDelay;
+
+        BootstrapFailure(long initialDelay) {
+            this.initialDelay = initialDelay;
+        }
+    }
 
     private final Node node;
     private final PeerExchangeStrategy peerExchangeStrategy;
@@ -47,13 +73,43 @@ public class PeerExchangeManager implements ConnectionListener {
     private final Map<String, PeerExchangeRequestHandler> requestHandlerMap = new ConcurrentHashMap<>();
     private final Object isStoppedLock = new Object();
     private final PeerExchangeGraph peerExchangeGraph;
+    private final ScheduledExecutorService executor;
+    private final Set<StaggeredBootstrap> staggeredBootstraps = new CopyOnWriteArraySet<>();
+    private final Map<BootstrapFailure, Backoff> backoffByFailure = new EnumMap<>(BootstrapFailure.class);
+    private final AddressCooldown addressCooldown;
+    // Peers we have sent to or received from the peer of a connection
+    private final Map<String, Set<Peer>> knownPeersByConnectionId = new ConcurrentHashMap<>();
+    private final PeerExchangeResponsePool responsePool;
     private volatile boolean isStopped;
+    private volatile boolean isBootstrapped;
+    @Nullable
+    private ScheduledFuture<?> repeatBootstrapFuture;
 
     public PeerExchangeManager(Node node, PeerExchangeStrategy peerExchangeStrategy) {
+        this(node, peerExchangeStrategy, new PeerExchangeGraph());
+    }
+
+    public PeerExchangeManager(Node node,
+                               PeerExchangeStrategy peerExchangeStrategy,
+                               PeerExchangeGraph peerExchangeGraph) {
+        this(node, peerExchangeStrategy, peerExchangeGraph, new AddressCooldown());
+    }
+
+    public PeerExchangeManager(Node node,
+                               PeerExchangeStrategy peerExchangeStrategy,
+                               PeerExchangeGraph peerExchangeGraph,
+                               AddressCooldown addressCooldown) {
         this.node = node;
         this.peerExchangeStrategy = peerExchangeStrategy;
+        this.peerExchangeGraph = peerExchangeGraph;
+        this.addressCooldown = addressCooldown;
+        responsePool = new PeerExchangeResponsePool(peerExchangeStrategy::getPeersForPeerExchange);
+        executor = ThreadingUtils.getSingleThreadScheduledExecutor("PeerExchangeManager");
+        long maxDelay = peerExchangeStrategy.getRepeatBootstrapDelay();
+        for (BootstrapFailure failure : BootstrapFailure.values()) {
+            backoffByFailure.put(failure, new Backoff(Math.min(failure.initialDelay, maxDelay), maxDelay));
+        }
 
-        peerExchangeGraph = new PeerExchangeGraph();
         node.addConnectionListener(this);
     }
 
@@ -64,18 +120,12 @@ public class PeerExchangeManager implements ConnectionListener {
     @Override
     public void onConnection(Connection connection) {
         Address peerAddress = connection.getPeerAddress();
-        Set<Peer> peersForPeerExchange = peerExchangeStrategy.getPeersForPeerExchange(peerAddress);
+        addressCooldown.onSuccess(peerAddress);
+        String connectionId = connection.getId();
         PeerExchangeResponseHandler responseHandler = new PeerExchangeResponseHandler(node,
-                connection.getId(),
-                peersForPeerExchange,
-                peers -> {
-                    log.error("PeerExchangeManager.onConnection {}", connection);
-                    if (!isStopped) {
-                        peerExchangeStrategy.addPeersFromPeerExchange(peers, peerAddress);
-                        // We do not remove the handler as we might do repeated exchanges
-                    }
-                });
-        responseHandlerMap.put(connection.getId(), responseHandler);
+                connectionId,
+                peers -> onPeerExchangeRequest(connectionId, peerAddress, peers));
+        responseHandlerMap.put(connectionId, responseHandler);
     }
 
 
@@ -83,7 +133,14 @@ public class PeerExchangeManager implements ConnectionListener {
     public void onDisconnect(Connection connection) {
         String connectionId = connection.getId();
         MapUtils.disposeAndRemove(connectionId, requestHandlerMap);
-        MapUtils.disposeAndRemove(connectionId, requestHandlerMap);
+        MapUtils.disposeAndRemove(connectionId, responseHandlerMap);
+        knownPeersByConnectionId.remove(connectionId);
+
+        // If we drop below our target after the initial bootstrap we repeat it, unless a bootstrap is running
+        if (isBootstrapped && !isStopped && staggeredBootstraps.isEmpty() &&
+                !peerExchangeStrategy.sufficientConnections()) {
+            scheduleRepeatBootstrap(BootstrapFailure.CONNECTION_LOST);
+        }
     }
 
 
@@ -91,37 +148,19 @@ public class PeerExchangeManager implements ConnectionListener {
     // API
     ///////////////////////////////////////////////////////////////////////////////////////////////////
 
+    /**
+     * Starts the peer exchanges staggered (see StaggeredBootstrap) and completes once we have the min. number of
+     * connected peers or all exchanges have been completed.
+     * If the bootstrap was not sufficient we repeat it with an exponential backoff. We also repeat it if we lose
+     * connections later.
+     */
     public CompletableFuture<Boolean> bootstrap() {
-        Address myAddress = node.getMyAddress();
-        Set<Address> addressesForBootstrap = peerExchangeStrategy.getAddressesForBootstrap();
-        List<CompletableFuture<Boolean>> allFutures = addressesForBootstrap.stream()
-                .map(address -> exchangeWithPeer(address)
-                        .whenComplete((success, throwable) -> {
-                            // log.error("exchangeWithPeer whenComplete myAddress={} peerAddress={}", myAddress, address);
-                            peerExchangeGraph.add(myAddress, address);
-                        })
-                )
-                .collect(Collectors.toList());
-        if (allFutures.isEmpty()) {
-            //  maybeRepeatBootstrap(myAddress, 0, 0);
-            return CompletableFuture.completedFuture(true);
-        } else {
-            return CollectionUtil.allOf(allFutures)
-                    .whenComplete((s, e) -> {
-                        log.error("");
-                    })                            // We require all futures the be completed
-                    .thenApply(resultList -> {
-                        return resultList.stream().filter(e -> e).count();
-                    })
-                    .orTimeout(TIMEOUT, TimeUnit.SECONDS)
-                    .thenCompose(numSuccess -> {
-                        //  maybeRepeatBootstrap(myAddress, numSuccess, allFutures.size());
-                        // Even we don't have any connection (first peer in network case) we return true.
-                        return CompletableFuture.completedFuture(true);
-                    }).whenComplete((s, e) -> {
-                        log.error("");
-                    });
-        }
+        return doBootstrap()
+                .thenApply(numSuccess -> {
+                    isBootstrapped = true;
+                    // Even we don't have any connection (first peer in network case) we return true.
+                    return true;
+                });
     }
 
     public void shutdown() {
@@ -129,8 +168,15 @@ public class PeerExchangeManager implements ConnectionListener {
             isStopped = true;
         }
         node.removeConnectionListener(this);
+        staggeredBootstraps.forEach(StaggeredBootstrap::cancel);
+        if (repeatBootstrapFuture != null) {
+            repeatBootstrapFuture.cancel(false);
+        }
+        ThreadingUtils.shutdownAndAwaitTermination(executor);
         MapUtils.disposeAndRemoveAll(requestHandlerMap);
         MapUtils.disposeAndRemoveAll(responseHandlerMap);
+        knownPeersByConnectionId.clear();
+        responsePool.clear();
     }
 
 
@@ -138,37 +184,144 @@ public class PeerExchangeManager implements ConnectionListener {
     // Private
     ///////////////////////////////////////////////////////////////////////////////////////////////////
 
-    private CompletableFuture<Boolean> exchangeWithPeer(Address peerAddress) {
+    /**
+     * @param redirectHandler Receives the addresses of the peers reported by an overloaded peer which closes the
+     *                        connection after the exchange
+     */
+    private CompletableFuture<Boolean> exchangeWithPeer(Address peerAddress,
+                                                        Consumer<Set<Address>> redirectHandler) {
         return node.getConnection(peerAddress)
                 .thenCompose(connection -> {
-                    PeerExchangeRequestHandler requestHandler = new PeerExchangeRequestHandler(node, connection.getId());
-                    requestHandlerMap.put(connection.getId(), requestHandler);
-                    return requestHandler.request(peerExchangeStrategy.getPeersForPeerExchange(peerAddress), peerAddress);
-                })
-                .thenCompose(peers -> {
-                    peerExchangeStrategy.addPeersFromPeerExchange(peers, peerAddress);
-                    return CompletableFuture.completedFuture(true);
+                    String connectionId = connection.getId();
+                    PeerExchangeRequestHandler requestHandler = new PeerExchangeRequestHandler(node, connectionId);
+                    requestHandlerMap.put(connectionId, requestHandler);
+                    return requestHandler.request(getPeersForPeerExchange(connectionId, peerAddress), peerAddress)
+                            .thenApply(peers -> {
+                                addKnownPeers(connectionId, peers);
+                                peerExchangeStrategy.addPeersFromPeerExchange(peers, peerAddress);
+                                long retryAfter = requestHandler.getRetryAfter();
+                                if (retryAfter <= 0) {
+                                    return true;
+                                }
+
+                                // The peer is overloaded. We do not count it as success and continue with the
+                                // peers it has reported.
+                                log.info("{} is overloaded and asks us to retry after {} ms", peerAddress, retryAfter);
+                                addressCooldown.onRetryAfter(peerAddress, retryAfter);
+                                Optional<Address> myAddress = node.findMyAddress();
+                                redirectHandler.accept(peers.stream()
+                                        .map(Peer::getAddress)
+                                        .filter(address -> !myAddress.isPresent() || !myAddress.get().equals(address))
+                                        .filter(addressCooldown::isAvailable)
+                                        .collect(Collectors.toSet()));
+                                return false;
+                            });
                 })
                 .exceptionally(e -> {
                     log.error(e.toString());
+                    addressCooldown.onFailure(peerAddress);
                     return false;
                 });
     }
 
-    private void maybeRepeatBootstrap(Address myAddress, long numSuccess, int numFutures) {
-        boolean repeatBootstrap = peerExchangeStrategy.repeatBootstrap(numSuccess, numFutures);
-        if (repeatBootstrap && !isStopped) {
-            log.warn("{} repeats the bootstrap call. numSuccess={}; numFutures={}",
-                    myAddress,
-                    numSuccess,
-                    numFutures);
-            new Timer("PeerExchange.repeatBootstrap-" + myAddress).schedule(new TimerTask() {
-                public void run() {
-                    if (!isStopped) {
-                        bootstrap();
+    private PeerExchangeResponse onPeerExchangeRequest(String connectionId, Address peerAddress, Set<Peer> peers) {
+        long retryAfter = responsePool.getRetryAfter(peerAddress);
+        if (retryAfter > 0) {
+            // We neither apply the peers nor provide any. As with load shedding the requester gets the time after
+            // which it can request again, so it does not count the exchange as success, and we close the connection.
+            log.info("Peer exchange request from {} got rate limited. RetryAfter={} ms", peerAddress, retryAfter);
+            return new PeerExchangeResponse(Set.of(), retryAfter);
+        }
+
+        // We apply the request first, so the response does not contain the peers we just received
+        addKnownPeers(connectionId, peers);
+        if (!isStopped) {
+            peerExchangeStrategy.addPeersFromPeerExchange(peers, peerAddress);
+            // We do not remove the handler as we might do repeated exchanges
+        }
+
+        Set<Peer> knownPeers = knownPeersByConnectionId.getOrDefault(connectionId, Set.of());
+        Set<Peer> responsePeers = responsePool.getPeers(peerAddress, peer -> !knownPeers.contains(peer));
+        addKnownPeers(connectionId, responsePeers);
+        return new PeerExchangeResponse(responsePeers, peerExchangeStrategy.getRetryAfterForLoadShedding());
+    }
+
+    // We only send the peers which the peer does not know from previous exchanges on that connection
+    private Set<Peer> getPeersForPeerExchange(String connectionId, Address peerAddress) {
+        Set<Peer> knownPeers = knownPeersByConnectionId.getOrDefault(connectionId, Set.of());
+        Set<Peer> peers = peerExchangeStrategy.getPeersForPeerExchange(peerAddress).stream()
+                .filter(peer -> !knownPeers.contains(peer))
+                .limit(CompactPeerEncoding.MAX_NUM_PEERS)
+                .collect(Collectors.toSet());
+        addKnownPeers(connectionId, peers);
+        return peers;
+    }
+
+    private void addKnownPeers(String connectionId, Set<Peer> peers) {
+        Set<Peer> knownPeers = knownPeersByConnectionId.computeIfAbsent(connectionId,
+                key -> ConcurrentHashMap.newKeySet());
+        if (knownPeers.size() + peers.size() > MAX_NUM_KNOWN_PEERS) {
+            // We start over, at the cost of sending some peers again
+            knownPeers.clear();
+        }
+        knownPeers.addAll(peers);
+    }
+
+    // Completes with the number of successful exchanges or -1 at a timeout
+    private CompletableFuture<Integer> doBootstrap() {
+        Address myAddress = node.getMyAddress();
+        Set<Address> addressesForBootstrap = peerExchangeStrategy.getAddressesForBootstrap();
+        // We skip addresses which failed recently, unless we would not have any address left
+        Set<Address> availableAddresses = addressesForBootstrap.stream()
+                .filter(addressCooldown::isAvailable)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        if (availableAddresses.isEmpty()) {
+            availableAddresses = addressesForBootstrap;
+        }
+        StaggeredBootstrap staggeredBootstrap = new StaggeredBootstrap(availableAddresses,
+                peerExchangeStrategy.getMinNumConnectedPeers(),
+                NUM_INITIAL_EXCHANGES,
+                STAGGER_DELAY,
+                executor);
+        staggeredBootstraps.add(staggeredBootstrap);
+        return staggeredBootstrap.start(address -> exchangeWithPeer(address, staggeredBootstrap::addAddresses)
+                        .whenComplete((success, throwable) -> peerExchangeGraph.add(myAddress, address)))
+                .orTimeout(TIMEOUT, TimeUnit.SECONDS)
+                .handle((numSuccess, throwable) -> {
+                    staggeredBootstraps.remove(staggeredBootstrap);
+                    staggeredBootstrap.cancel();
+                    int numStarted = staggeredBootstrap.getNumStarted();
+                    if (throwable != null) {
+                        log.warn("Bootstrap did not complete in {} sec.", TIMEOUT);
+                        scheduleRepeatBootstrap(BootstrapFailure.TIMEOUT);
+                        return -1;
+                    }
+
+                    log.info("Bootstrap completed with {} successful peer exchanges out of {}", numSuccess, numStarted);
+                    if (peerExchangeStrategy.repeatBootstrap(numSuccess, numStarted)) {
+                        scheduleRepeatBootstrap(numSuccess == 0 ?
+                                BootstrapFailure.NO_SUCCESS :
+                                BootstrapFailure.INSUFFICIENT_CONNECTIONS);
+                    } else {
+                        backoffByFailure.values().forEach(Backoff::reset);
                     }
+                    return numSuccess;
+                });
+    }
+
+    private void scheduleRepeatBootstrap(BootstrapFailure failure) {
+        synchronized (isStoppedLock) {
+            if (isStopped || (repeatBootstrapFuture != null && !repeatBootstrapFuture.isDone())) {
+                return;
+            }
+            Backoff backoff = backoffByFailure.get(failure);
+            long delay = backoff.getNextDelay();
+            log.info("We repeat the bootstrap in {} ms. Cause: {}; Attempt: {}", delay, failure, backoff.getNumAttempts());
+            repeatBootstrapFuture = executor.schedule(() -> {
+                if (!isStopped) {
+                    doBootstrap();
                 }
-            }, peerExchangeStrategy.getRepeatBootstrapDelay());
+            }, delay, TimeUnit.MILLISECONDS);
         }
     }
 }
@@ -28,19 +28,24 @@ import java.util.UUID;
 @EqualsAndHashCode
 @Getter
 class PeerExchangeRequest implements Message {
-    private final Set<Peer> peers;
+    // Peers in compact encoding, see CompactPeerEncoding
+    private final byte[] encodedPeers;
     private final String uid;
 
     public PeerExchangeRequest(Set<Peer> peers) {
-        this.peers = peers;
+        this.encodedPeers = CompactPeerEncoding.encode(peers);
         uid = UUID.randomUUID().toString();
     }
 
+    public Set<Peer> getPeers() {
+        return CompactPeerEncoding.decode(encodedPeers);
+    }
+
 
     @Override
     public String toString() {
         return "PeerExchangeRequest{" +
-                "\n     peers=" + peers +
+                "\n     numBytes=" + encodedPeers.length +
                 ",\n     uid='" + uid + '\'' +
                 "\n}";
     }
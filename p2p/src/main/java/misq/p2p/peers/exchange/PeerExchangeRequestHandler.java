@@ -37,6 +37,7 @@ public class PeerExchangeRequestHandler implements MessageListener, Disposable {
     private final Node node;
     private final String connectionId;
     private final CompletableFuture<Set<Peer>> future = new CompletableFuture<>();
+    private volatile long retryAfter;
 
     public PeerExchangeRequestHandler(Node node, String connectionId) {
         this.node = node;
@@ -60,7 +61,16 @@ public class PeerExchangeRequestHandler implements MessageListener, Disposable {
         if (connectionId.equals(connection.getId()) && message instanceof PeerExchangeResponse) {
             PeerExchangeResponse peerExchangeResponse = (PeerExchangeResponse) message;
             node.removeMessageListener(this);
+            retryAfter = peerExchangeResponse.getRetryAfter();
             future.complete(peerExchangeResponse.getPeers());
         }
     }
+
+    /**
+     * @return The time in ms after which we should connect again if the peer is overloaded and sheds load, otherwise 0.
+     * Only valid after the future has completed.
+     */
+    public long getRetryAfter() {
+        return retryAfter;
+    }
 }
@@ -28,19 +28,38 @@ import java.util.UUID;
 @EqualsAndHashCode
 @Getter
 class PeerExchangeResponse implements Message {
-    private final Set<Peer> peers;
+    // Peers in compact encoding, see CompactPeerEncoding
+    private final byte[] encodedPeers;
     private final String uid;
+    // If > 0 the responder is overloaded or has rate limited the request and closes the connection after the
+    // response. The requester should not connect again before that time in ms has passed and use the peers from the
+    // response instead.
+    private final long retryAfter;
 
     public PeerExchangeResponse(Set<Peer> peers) {
-        this.peers = peers;
+        this(peers, 0);
+    }
+
+    public PeerExchangeResponse(Set<Peer> peers, long retryAfter) {
+        this.encodedPeers = CompactPeerEncoding.encode(peers);
+        this.retryAfter = retryAfter;
         uid = UUID.randomUUID().toString();
     }
 
+    public boolean isLoadShedding() {
+        return retryAfter > 0;
+    }
+
+    public Set<Peer> getPeers() {
+        return CompactPeerEncoding.decode(encodedPeers);
+    }
+
     @Override
     public String toString() {
         return "PeerExchangeResponse{" +
-                "\n     peers=" + peers +
+                "\n     numBytes=" + encodedPeers.length +
                 ",\n     uid='" + uid + '\'' +
+                ",\n     retryAfter=" + retryAfter +
                 "\n}";
     }
 }
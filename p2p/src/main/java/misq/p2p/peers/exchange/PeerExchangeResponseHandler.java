@@ -26,23 +26,24 @@ import misq.p2p.node.Node;
 import misq.p2p.peers.Peer;
 
 import java.util.Set;
-import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Slf4j
 public class PeerExchangeResponseHandler implements MessageListener, Disposable {
     private final Node node;
     private final String connectionId;
-    private final Set<Peer> peers;
-    private final Consumer<Set<Peer>> resultHandler;
+    private final Function<Set<Peer>, PeerExchangeResponse> requestHandler;
 
-    public PeerExchangeResponseHandler(Node node,
-                                       String connectionId,
-                                       Set<Peer> peers,
-                                       Consumer<Set<Peer>> resultHandler) {
+    /**
+     * @param requestHandler Applies the peers from the request and creates the response. If the response is load
+     *                       shedding or rate limited (it has a retryAfter) we close the connection after the response.
+     */
+    PeerExchangeResponseHandler(Node node,
+                                String connectionId,
+                                Function<Set<Peer>, PeerExchangeResponse> requestHandler) {
         this.node = node;
         this.connectionId = connectionId;
-        this.peers = peers;
-        this.resultHandler = resultHandler;
+        this.requestHandler = requestHandler;
         node.addMessageListener(this);
     }
 
@@ -54,10 +55,16 @@ public class PeerExchangeResponseHandler implements MessageListener, Disposable
     public void onMessage(Message message, Connection connection) {
         if (connectionId.equals(connection.getId()) && message instanceof PeerExchangeRequest) {
             PeerExchangeRequest peerExchangeRequest = (PeerExchangeRequest) message;
-            PeerExchangeResponse response = new PeerExchangeResponse(peers);
+            PeerExchangeResponse response = requestHandler.apply(peerExchangeRequest.getPeers());
+            if (response.isLoadShedding()) {
+                log.info("We close the connection to {} after the peer exchange response. " +
+                        "RetryAfter={} ms", connection.getPeerAddress(), response.getRetryAfter());
+                node.send(response, connection)
+                        .whenComplete((c, throwable) -> node.disconnect(connection));
+                return;
+            }
             node.send(response, connection);
             // We do not remove the MessageListener as we might do repeated exchanges
-            resultHandler.accept(peerExchangeRequest.getPeers());
         }
     }
 
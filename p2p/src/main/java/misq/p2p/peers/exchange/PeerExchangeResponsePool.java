@@ -0,0 +1,112 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.peers.exchange;
+
+import com.google.common.annotations.VisibleForTesting;
+import misq.p2p.Address;
+import misq.p2p.peers.Peer;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Pool of peers used for the responses to peer exchange requests. The pool gets filled from the PeerExchangeStrategy
+ * and is refreshed at most once per REFRESH_INTERVAL, so the costs for a request do not depend on the number of
+ * requests or of our reported peers. Each requester gets a random subset of the pool.
+ * <p>
+ * Requests from the same peer within MIN_REQUEST_INTERVAL after its last served request are rate limited.
+ */
+class PeerExchangeResponsePool {
+    static final long REFRESH_INTERVAL = TimeUnit.SECONDS.toMillis(30);
+    static final long MIN_REQUEST_INTERVAL = TimeUnit.SECONDS.toMillis(10);
+    static final int MAX_PEERS_PER_RESPONSE = 50;
+    private static final int MAX_NUM_REQUESTERS = 10_000;
+
+    private final Supplier<Set<Peer>> peersSupplier;
+    private final Map<Address, Long> lastRequestByAddress = new ConcurrentHashMap<>();
+    private final Random random = new Random();
+    private volatile List<Peer> pool = List.of();
+    private volatile long lastRefresh;
+
+    PeerExchangeResponsePool(Supplier<Set<Peer>> peersSupplier) {
+        this.peersSupplier = peersSupplier;
+    }
+
+    /**
+     * @param requester The address of the requesting peer. It is never contained in the result.
+     * @param filter    Peers not matching the filter are not added, e.g. peers the requester knows already
+     * @return Up to MAX_PEERS_PER_RESPONSE random peers of the pool
+     */
+    Set<Peer> getPeers(Address requester, Predicate<Peer> filter) {
+        List<Peer> candidates = new ArrayList<>(getPool());
+        Set<Peer> result = new HashSet<>();
+        // Partial Fisher-Yates shuffle over the candidates
+        for (int i = 0; i < candidates.size() && result.size() < MAX_PEERS_PER_RESPONSE; i++) {
+            Collections.swap(candidates, i, i + random.nextInt(candidates.size() - i));
+            Peer peer = candidates.get(i);
+            if (!peer.getAddress().equals(requester) && filter.test(peer)) {
+                result.add(peer);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return 0 if the request gets served, in which case it is recorded. Otherwise the time in ms until the requester
+     * gets served again. Rate limited requests are not recorded, so they do not extend that time.
+     */
+    long getRetryAfter(Address requester) {
+        return getRetryAfter(requester, System.currentTimeMillis());
+    }
+
+    @VisibleForTesting
+    long getRetryAfter(Address requester, long now) {
+        if (lastRequestByAddress.size() > MAX_NUM_REQUESTERS) {
+            lastRequestByAddress.values().removeIf(lastRequest -> now - lastRequest > MIN_REQUEST_INTERVAL);
+        }
+        Long lastRequest = lastRequestByAddress.get(requester);
+        if (lastRequest != null && now - lastRequest < MIN_REQUEST_INTERVAL) {
+            return MIN_REQUEST_INTERVAL - (now - lastRequest);
+        }
+        lastRequestByAddress.put(requester, now);
+        return 0;
+    }
+
+    void clear() {
+        pool = List.of();
+        lastRefresh = 0;
+        lastRequestByAddress.clear();
+    }
+
+    private List<Peer> getPool() {
+        long now = System.currentTimeMillis();
+        if (now - lastRefresh > REFRESH_INTERVAL) {
+            synchronized (this) {
+                if (now - lastRefresh > REFRESH_INTERVAL) {
+                    pool = List.copyOf(peersSupplier.get());
+                    lastRefresh = now;
+                }
+            }
+        }
+        return pool;
+    }
+}
@@ -28,11 +28,35 @@ import java.util.Set;
 public interface PeerExchangeStrategy {
     void addPeersFromPeerExchange(Set<Peer> peers, Address senderAddress);
 
+    /**
+     * @return The peers we provide in a peer exchange with the given peer
+     */
     Set<Peer> getPeersForPeerExchange(Address peerAddress);
 
+    /**
+     * @return The peers we provide in peer exchanges, not specific to a peer
+     */
+    Set<Peer> getPeersForPeerExchange();
+
+    /**
+     * @return The addresses for the bootstrap in the order they should be used
+     */
     Set<Address> getAddressesForBootstrap();
 
+    int getMinNumConnectedPeers();
+
     boolean repeatBootstrap(long numSuccess, int numFutures);
 
+    boolean sufficientConnections();
+
+    /**
+     * @return The time in ms a requesting peer should wait until it connects again if we are overloaded and close the
+     * connection after the peer exchange, otherwise 0.
+     */
+    long getRetryAfterForLoadShedding();
+
+    /**
+     * @return Max. delay in ms for repeated bootstrap attempts
+     */
     long getRepeatBootstrapDelay();
 }
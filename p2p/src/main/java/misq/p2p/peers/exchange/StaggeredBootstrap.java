@@ -0,0 +1,172 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.peers.exchange;
+
+import lombok.extern.slf4j.Slf4j;
+import misq.p2p.Address;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Runs the peer exchanges of a bootstrap staggered, similar to the happy eyeballs algorithm (RFC 8305).
+ * We start with numInitialExchanges in parallel. Every staggerDelay and after each failed exchange we start the next
+ * one. The future completes as soon as numRequiredSuccess exchanges succeeded or all exchanges have been completed.
+ * Addresses can be added while running, e.g. the peers reported by an overloaded seed node.
+ * Once completed we do not start the remaining exchanges. Exchanges in flight are not interrupted, their results are
+ * still applied.
+ * <p>
+ * The future completes with the number of successful exchanges.
+ */
+@Slf4j
+class StaggeredBootstrap {
+    private final Deque<Address> pendingAddresses;
+    private final Set<Address> usedAddresses;
+    private final int numRequiredSuccess;
+    private final int numInitialExchanges;
+    private final long staggerDelay;
+    private final ScheduledExecutorService executor;
+    private final CompletableFuture<Integer> future = new CompletableFuture<>();
+    private int numInFlight;
+    private int numStarted;
+    private int numSuccess;
+    private ScheduledFuture<?> staggerTask;
+    private Function<Address, CompletableFuture<Boolean>> exchangeFunction;
+
+    /**
+     * @param addresses           The addresses in the order they should be used
+     * @param numRequiredSuccess  Number of successful exchanges after which we complete
+     * @param numInitialExchanges Number of exchanges we start in parallel
+     * @param staggerDelay        Delay in ms after which we start the next exchange
+     */
+    StaggeredBootstrap(Collection<Address> addresses,
+                       int numRequiredSuccess,
+                       int numInitialExchanges,
+                       long staggerDelay,
+                       ScheduledExecutorService executor) {
+        this.pendingAddresses = new ArrayDeque<>(addresses);
+        this.usedAddresses = new HashSet<>(addresses);
+        this.numRequiredSuccess = numRequiredSuccess;
+        this.numInitialExchanges = numInitialExchanges;
+        this.staggerDelay = staggerDelay;
+        this.executor = executor;
+    }
+
+    /**
+     * @param exchangeFunction Starts the exchange and returns a future completing with true if successful
+     */
+    CompletableFuture<Integer> start(Function<Address, CompletableFuture<Boolean>> exchangeFunction) {
+        synchronized (this) {
+            this.exchangeFunction = exchangeFunction;
+            if (pendingAddresses.isEmpty() || numRequiredSuccess <= 0) {
+                future.complete(0);
+                return future;
+            }
+            for (int i = 0; i < numInitialExchanges; i++) {
+                startNext();
+            }
+            if (!future.isDone()) {
+                staggerTask = executor.scheduleWithFixedDelay(this::onStaggerDelay,
+                        staggerDelay,
+                        staggerDelay,
+                        TimeUnit.MILLISECONDS);
+            }
+        }
+        return future;
+    }
+
+    /**
+     * Adds addresses we have not used yet to the end of the pending addresses. E.g. the peers we received from an
+     * overloaded seed node.
+     */
+    synchronized void addAddresses(Collection<Address> addresses) {
+        if (future.isDone()) {
+            return;
+        }
+        addresses.stream()
+                .filter(usedAddresses::add)
+                .forEach(pendingAddresses::add);
+    }
+
+    synchronized int getNumStarted() {
+        return numStarted;
+    }
+
+    void cancel() {
+        synchronized (this) {
+            pendingAddresses.clear();
+            complete();
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private synchronized void onStaggerDelay() {
+        startNext();
+    }
+
+    // Must be called in a synchronized block
+    private void startNext() {
+        if (future.isDone()) {
+            return;
+        }
+        Address address = pendingAddresses.poll();
+        if (address == null) {
+            return;
+        }
+        numInFlight++;
+        numStarted++;
+        exchangeFunction.apply(address)
+                .whenComplete((success, throwable) -> onResult(address, success != null && success));
+    }
+
+    private synchronized void onResult(Address address, boolean success) {
+        numInFlight--;
+        if (success) {
+            numSuccess++;
+            if (numSuccess >= numRequiredSuccess) {
+                log.info("Bootstrap reached the required {} successful peer exchanges. {} addresses not used.",
+                        numRequiredSuccess, pendingAddresses.size());
+                complete();
+                return;
+            }
+        } else {
+            log.debug("Peer exchange with {} failed. We start the next one.", address);
+            startNext();
+        }
+        if (pendingAddresses.isEmpty() && numInFlight == 0) {
+            complete();
+        }
+    }
+
+    // Must be called in a synchronized block
+    private void complete() {
+        if (staggerTask != null) {
+            staggerTask.cancel(false);
+        }
+        future.complete(numSuccess);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.peers.exchange;
+
+import lombok.Getter;
+
+import java.util.Locale;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Snapshot of the topology metrics of the PeerExchangeGraph.
+ */
+@Getter
+public class TopologyStats {
+    private final int numNodes;
+    private final int numEdges;
+    private final double averageDegree;
+    private final SortedMap<Integer, Integer> degreeDistribution;
+    private final double clusteringCoefficient;
+    private final int estimatedDiameter;
+
+    public TopologyStats(int numNodes,
+                         int numEdges,
+                         double averageDegree,
+                         SortedMap<Integer, Integer> degreeDistribution,
+                         double clusteringCoefficient,
+                         int estimatedDiameter) {
+        this.numNodes = numNodes;
+        this.numEdges = numEdges;
+        this.averageDegree = averageDegree;
+        this.degreeDistribution = new TreeMap<>(degreeDistribution);
+        this.clusteringCoefficient = clusteringCoefficient;
+        this.estimatedDiameter = estimatedDiameter;
+    }
+
+    public String toJson() {
+        String distribution = degreeDistribution.entrySet().stream()
+                .map(entry -> quote(String.valueOf(entry.getKey())) + ":" + entry.getValue())
+                .collect(Collectors.joining(","));
+        return "{\"numNodes\":" + numNodes +
+                ",\"numEdges\":" + numEdges +
+                ",\"averageDegree\":" + format(averageDegree) +
+                ",\"degreeDistribution\":{" + distribution + "}" +
+                ",\"clusteringCoefficient\":" + format(clusteringCoefficient) +
+                ",\"estimatedDiameter\":" + estimatedDiameter +
+                "}";
+    }
+
+    static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.US, "%.4f", value);
+    }
+
+    @Override
+    public String toString() {
+        return "TopologyStats{" +
+                "\n     numNodes=" + numNodes +
+                ",\n     numEdges=" + numEdges +
+                ",\n     averageDegree=" + averageDegree +
+                ",\n     degreeDistribution=" + degreeDistribution +
+                ",\n     clusteringCoefficient=" + clusteringCoefficient +
+                ",\n     estimatedDiameter=" + estimatedDiameter +
+                "\n}";
+    }
+}
@@ -31,6 +31,8 @@
  * <p>
  * Peer: Encapsulate another node with meta data useful for our context.
  * <p>
+ * AddressBook: Persists the peers we have been connected to together with their PeerScore for warm restarts.
+ * <p>
  * We have 4 categories of peers:
  * - Seed nodes (provided to application as hard coded list or application configuration, using PeerExchangeSelection)
  * - Persisted peers (persisted from previous sessions, selected by PeerExchangeSelection)
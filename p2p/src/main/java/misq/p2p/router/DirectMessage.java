@@ -0,0 +1,57 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.router;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import misq.p2p.message.ExpirableMessage;
+import misq.p2p.message.Message;
+import misq.p2p.message.SupersedeKey;
+
+import java.util.Optional;
+
+/**
+ * Wrapper for messages sent with the DIRECT strategy. Receivers deliver it but do not forward it.
+ */
+@EqualsAndHashCode
+@Getter
+class DirectMessage implements ExpirableMessage {
+    private final Message message;
+
+    DirectMessage(Message message) {
+        this.message = message;
+    }
+
+    @Override
+    public long getDeadline() {
+        return ExpirableMessage.getDeadline(message);
+    }
+
+    @Override
+    public Optional<SupersedeKey> getSupersedeKey() {
+        return ExpirableMessage.getSupersedeKey(message);
+    }
+
+    @Override
+    public String toString() {
+        return "DirectMessage{" +
+                "\n     message=" + message +
+                "\n}";
+    }
+}
@@ -23,9 +23,18 @@ import misq.p2p.node.Connection;
 import misq.p2p.node.MessageListener;
 import misq.p2p.node.Node;
 import misq.p2p.peers.PeerGroup;
+import misq.p2p.router.gossip.BroadcastPolicy;
+import misq.p2p.router.gossip.BroadcastTracker;
+import misq.p2p.router.gossip.GossipMetrics;
 import misq.p2p.router.gossip.GossipResult;
+import misq.p2p.router.gossip.GossipResultListener;
 import misq.p2p.router.gossip.GossipRouter;
+import misq.p2p.router.inv.InvMetrics;
+import misq.p2p.router.inv.InvRouter;
+import misq.p2p.router.plumtree.PlumtreeMetrics;
+import misq.p2p.router.plumtree.PlumtreeRouter;
 
+import javax.annotation.Nullable;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArraySet;
@@ -33,20 +42,68 @@ import java.util.concurrent.CopyOnWriteArraySet;
 /**
  * Responsibility:
  * - Supports multiple routers
- * - Decides which router is used for which message
+ * - Decides which router is used for which message based on the RoutingStrategy from the RoutingTable
+ * - Sends and receives DirectMessages for the DIRECT strategy
  * - MessageListeners will get the consolidated messages from multiple routers
  */
 public class Router implements MessageListener {
+    private final Node node;
+    private final PeerGroup peerGroup;
+    private final RoutingTable routingTable;
     private final GossipRouter gossipRouter;
+    private final PlumtreeRouter plumtreeRouter;
+    private final InvRouter invRouter;
     private final Set<MessageListener> messageListeners = new CopyOnWriteArraySet<>();
+    private final MessageListener directMessageListener = this::onDirectMessage;
 
     public Router(Node node, PeerGroup peerGroup) {
+        this(node, peerGroup, new RoutingTable());
+    }
+
+    public Router(Node node, PeerGroup peerGroup, RoutingTable routingTable) {
+        this.node = node;
+        this.peerGroup = peerGroup;
+        this.routingTable = routingTable;
+
         gossipRouter = new GossipRouter(node, peerGroup);
         gossipRouter.addMessageListener(this);
+        plumtreeRouter = new PlumtreeRouter(node, peerGroup);
+        plumtreeRouter.addMessageListener(this);
+        invRouter = new InvRouter(node, peerGroup);
+        invRouter.addMessageListener(this);
+        node.addMessageListener(directMessageListener);
     }
 
     public CompletableFuture<GossipResult> broadcast(Message message) {
-        return gossipRouter.broadcast(message);
+        return broadcast(message, BroadcastPolicy.all(), null);
+    }
+
+    /**
+     * @param policy             Defines when the returned future completes, e.g. after the first k successful sends
+     * @param lateResultListener Optional listener for the send results arriving after the future got completed
+     */
+    public CompletableFuture<GossipResult> broadcast(Message message,
+                                                     BroadcastPolicy policy,
+                                                     @Nullable GossipResultListener lateResultListener) {
+        // We serialize only once and pass it to the routers which need the serialized message
+        byte[] serializedMessage = message.serialize();
+        switch (routingTable.getStrategy(message, serializedMessage.length)) {
+            case PLUMTREE:
+                return plumtreeRouter.broadcast(message, serializedMessage, policy, lateResultListener);
+            case INV:
+                return invRouter.broadcast(message, serializedMessage, policy, lateResultListener);
+            case DIRECT:
+                return sendDirect(message, policy, lateResultListener);
+            case K_RANDOM:
+                return gossipRouter.broadcastToRandomPeers(message,
+                        serializedMessage,
+                        routingTable.getNumRandomPeers(),
+                        policy,
+                        lateResultListener);
+            case FLOOD:
+            default:
+                return gossipRouter.broadcast(message, serializedMessage, policy, lateResultListener);
+        }
     }
 
     public void addMessageListener(MessageListener messageListener) {
@@ -66,9 +123,52 @@ public class Router implements MessageListener {
         return gossipRouter.getPeerAddressesForInventoryRequest();
     }
 
+    public GossipMetrics getGossipMetrics() {
+        return gossipRouter.getMetrics();
+    }
+
+    public double getPropagationCoverage() {
+        return gossipRouter.getPropagationCoverage();
+    }
+
+    public PlumtreeMetrics getPlumtreeMetrics() {
+        return plumtreeRouter.getMetrics();
+    }
+
+    public InvMetrics getInvMetrics() {
+        return invRouter.getMetrics();
+    }
+
     public void shutdown() {
         messageListeners.clear();
         gossipRouter.removeMessageListener(this);
         gossipRouter.shutdown();
+        plumtreeRouter.removeMessageListener(this);
+        plumtreeRouter.shutdown();
+        invRouter.removeMessageListener(this);
+        invRouter.shutdown();
+        node.removeMessageListener(directMessageListener);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private CompletableFuture<GossipResult> sendDirect(Message message,
+                                                       BroadcastPolicy policy,
+                                                       @Nullable GossipResultListener lateResultListener) {
+        Set<Address> connectedPeerAddresses = peerGroup.getConnectedPeerAddresses();
+        BroadcastTracker tracker = new BroadcastTracker(connectedPeerAddresses.size(), policy, lateResultListener);
+        DirectMessage directMessage = new DirectMessage(message);
+        connectedPeerAddresses.forEach(address -> node.send(directMessage, address)
+                .whenComplete((connection, throwable) -> tracker.onResult(connection != null)));
+        return tracker.getFuture();
+    }
+
+    private void onDirectMessage(Message message, Connection connection) {
+        if (message instanceof DirectMessage) {
+            onMessage(((DirectMessage) message).getMessage(), connection);
+        }
     }
 }
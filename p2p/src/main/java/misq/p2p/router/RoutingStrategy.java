@@ -0,0 +1,32 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.router;
+
+public enum RoutingStrategy {
+    // Gossip to ln(N) + c random peers at each hop, adjusted by the FanoutController
+    FLOOD,
+    // Epidemic broadcast tree: Full message to the eager push peers, only the hash to the lazy push peers
+    PLUMTREE,
+    // Only the hash gets announced, peers missing the message fetch it
+    INV,
+    // Sent to the connected peers only, without forwarding
+    DIRECT,
+    // Gossip to k random connected peers, which forward it like at FLOOD
+    K_RANDOM
+}
@@ -0,0 +1,73 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.router;
+
+import lombok.Getter;
+import misq.p2p.message.Message;
+import misq.p2p.message.PayloadMessage;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps payload or message types to the RoutingStrategy used for broadcasting them.
+ * For PayloadMessages we look up the payload type first, so e.g. offers and alerts can use different strategies
+ * although both are sent as AddAuthenticatedDataRequest. Types without an entry use the INV strategy if their
+ * serialized size exceeds largeMessageSize, otherwise the defaultStrategy.
+ */
+@Getter
+public class RoutingTable {
+    private final Map<Class<?>, RoutingStrategy> strategyByType;
+    private final RoutingStrategy defaultStrategy;
+    private final int largeMessageSize;
+    // Number of peers used at the K_RANDOM strategy
+    private final int numRandomPeers;
+
+    public RoutingTable() {
+        this(new HashMap<>(), RoutingStrategy.FLOOD, 10_000, 4);
+    }
+
+    /**
+     * @param strategyByType Payload or message types and their strategy
+     */
+    public RoutingTable(Map<Class<?>, RoutingStrategy> strategyByType,
+                        RoutingStrategy defaultStrategy,
+                        int largeMessageSize,
+                        int numRandomPeers) {
+        this.strategyByType = Map.copyOf(strategyByType);
+        this.defaultStrategy = defaultStrategy;
+        this.largeMessageSize = largeMessageSize;
+        this.numRandomPeers = numRandomPeers;
+    }
+
+    /**
+     * @param serializedSize The size of the serialized message. The caller passes it as it needs the serialized
+     *                       message anyway, so we do not serialize it a second time.
+     */
+    public RoutingStrategy getStrategy(Message message, int serializedSize) {
+        RoutingStrategy strategy = strategyByType.get(PayloadMessage.getPayloadType(message));
+        if (strategy == null) {
+            strategy = strategyByType.get(message.getClass());
+        }
+        if (strategy != null) {
+            return strategy;
+        }
+        return serializedSize > largeMessageSize ? RoutingStrategy.INV : defaultStrategy;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.router.gossip;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * Defines when a broadcast is considered done: After a number of successful sends (first-k), after a fraction of the
+ * target peers have been reached, or after a deadline, whatever comes first. A broadcast to zero peers is done
+ * immediately. If all peers have answered the broadcast is done as well, even if the policy was not met.
+ */
+@EqualsAndHashCode
+@Getter
+public class BroadcastPolicy {
+    private static final BroadcastPolicy ALL = new BroadcastPolicy(Integer.MAX_VALUE, 1, 0);
+
+    private final int numSuccess;
+    private final double fraction;
+    // Time in ms after the broadcast started. 0 means no deadline.
+    private final long deadline;
+
+    public static BroadcastPolicy all() {
+        return ALL;
+    }
+
+    public static BroadcastPolicy firstK(int numSuccess) {
+        return new BroadcastPolicy(numSuccess, 1, 0);
+    }
+
+    public static BroadcastPolicy fraction(double fraction) {
+        return new BroadcastPolicy(Integer.MAX_VALUE, fraction, 0);
+    }
+
+    public static BroadcastPolicy deadline(long deadline) {
+        return new BroadcastPolicy(Integer.MAX_VALUE, 1, deadline);
+    }
+
+    private BroadcastPolicy(int numSuccess, double fraction, long deadline) {
+        this.numSuccess = numSuccess;
+        this.fraction = fraction;
+        this.deadline = deadline;
+    }
+
+    public BroadcastPolicy withDeadline(long deadline) {
+        return new BroadcastPolicy(numSuccess, fraction, deadline);
+    }
+
+    /**
+     * @return The number of successful sends required for the given number of target peers
+     */
+    public int getRequiredNumSuccess(int target) {
+        int byFraction = (int) Math.ceil(fraction * target);
+        return Math.min(target, Math.min(numSuccess, byFraction));
+    }
+
+    @Override
+    public String toString() {
+        return "BroadcastPolicy{" +
+                "\n     numSuccess=" + numSuccess +
+                ",\n     fraction=" + fraction +
+                ",\n     deadline=" + deadline +
+                "\n}";
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.router.gossip;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts the send results of a broadcast and completes the future once the BroadcastPolicy is met. Results arriving
+ * later are passed to the optional GossipResultListener.
+ */
+public class BroadcastTracker {
+    private static final long BROADCAST_TIMEOUT = 90;
+
+    private final int target;
+    private final int requiredNumSuccess;
+    @Nullable
+    private final GossipResultListener lateResultListener;
+    private final long ts = System.currentTimeMillis();
+    private final CompletableFuture<GossipResult> future = new CompletableFuture<>();
+    private int numSuccess;
+    private int numFaults;
+
+    public BroadcastTracker(int target, BroadcastPolicy policy, @Nullable GossipResultListener lateResultListener) {
+        this.target = target;
+        this.lateResultListener = lateResultListener;
+        requiredNumSuccess = policy.getRequiredNumSuccess(target);
+
+        future.orTimeout(BROADCAST_TIMEOUT, TimeUnit.SECONDS);
+        if (target == 0) {
+            future.complete(getResult());
+        } else if (policy.getDeadline() > 0) {
+            CompletableFuture.delayedExecutor(policy.getDeadline(), TimeUnit.MILLISECONDS)
+                    .execute(() -> {
+                        synchronized (this) {
+                            future.complete(getResult());
+                        }
+                    });
+        }
+    }
+
+    public void onResult(boolean isSuccess) {
+        GossipResult result;
+        boolean isLate;
+        synchronized (this) {
+            if (isSuccess) {
+                numSuccess++;
+            } else {
+                numFaults++;
+            }
+            result = getResult();
+            isLate = future.isDone();
+            if (!isLate && (numSuccess >= requiredNumSuccess || numSuccess + numFaults >= target)) {
+                future.complete(result);
+            }
+        }
+        if (isLate && lateResultListener != null) {
+            lateResultListener.onLateResult(result);
+        }
+    }
+
+    public CompletableFuture<GossipResult> getFuture() {
+        return future;
+    }
+
+    private GossipResult getResult() {
+        return new GossipResult(numSuccess, numFaults, System.currentTimeMillis() - ts);
+    }
+}
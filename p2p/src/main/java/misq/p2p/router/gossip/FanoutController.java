@@ -0,0 +1,94 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.router.gossip;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.function.IntSupplier;
+
+/**
+ * Provides the number of peers a gossip message gets sent to at each hop: ln(N) + c, where N is the estimated network
+ * size. With a fanout of f each node receives about f copies of a message, so we expect a duplicate ratio of about
+ * 1 - 1/f. If we observe considerably more duplicates the fanout is higher than needed and we decrease c. If we observe
+ * considerably fewer, messages likely do not reach all nodes and we increase c.
+ */
+@Slf4j
+class FanoutController {
+    static final int MIN_EXTRA_FANOUT = 1;
+    static final int MAX_EXTRA_FANOUT = 6;
+    private static final double TOLERANCE = 0.1;
+    // Min. number of received messages in an interval to adjust the fanout
+    private static final int MIN_SAMPLE_SIZE = 20;
+    // The estimation is not cheap, so we cache it for that time
+    private static final long NETWORK_SIZE_CACHE_TIME = 10_000;
+
+    private final IntSupplier networkSizeSupplier;
+    private volatile int extraFanout = 2;
+    private volatile int networkSize = 1;
+    private volatile long networkSizeTimestamp;
+    private long lastNumReceived;
+    private long lastNumDuplicates;
+
+    FanoutController(IntSupplier networkSizeSupplier) {
+        this.networkSizeSupplier = networkSizeSupplier;
+    }
+
+    int getFanout() {
+        return (int) Math.ceil(Math.log(getNetworkSize())) + extraFanout;
+    }
+
+    int getNetworkSize() {
+        long now = System.currentTimeMillis();
+        if (now - networkSizeTimestamp > NETWORK_SIZE_CACHE_TIME) {
+            networkSize = Math.max(1, networkSizeSupplier.getAsInt());
+            networkSizeTimestamp = now;
+        }
+        return networkSize;
+    }
+
+    int getExtraFanout() {
+        return extraFanout;
+    }
+
+    /**
+     * Adjusts the fanout based on the duplicates received since the last call.
+     *
+     * @param numReceived   Total number of received gossip messages
+     * @param numDuplicates Total number of received duplicates
+     */
+    synchronized void adjust(long numReceived, long numDuplicates) {
+        long received = numReceived - lastNumReceived;
+        long duplicates = numDuplicates - lastNumDuplicates;
+        if (received < MIN_SAMPLE_SIZE) {
+            return;
+        }
+        lastNumReceived = numReceived;
+        lastNumDuplicates = numDuplicates;
+
+        double duplicateRatio = duplicates / (double) received;
+        double expectedDuplicateRatio = 1 - 1d / getFanout();
+        if (duplicateRatio > expectedDuplicateRatio + TOLERANCE) {
+            extraFanout = Math.max(MIN_EXTRA_FANOUT, extraFanout - 1);
+        } else if (duplicateRatio < expectedDuplicateRatio - TOLERANCE) {
+            extraFanout = Math.min(MAX_EXTRA_FANOUT, extraFanout + 1);
+        }
+        log.debug("duplicateRatio={}, expectedDuplicateRatio={}, extraFanout={}",
+                duplicateRatio, expectedDuplicateRatio, extraFanout);
+    }
+}
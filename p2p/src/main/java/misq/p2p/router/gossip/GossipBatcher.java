@@ -0,0 +1,132 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.router.gossip;
+
+import lombok.extern.slf4j.Slf4j;
+import misq.common.util.Tuple2;
+import misq.p2p.Address;
+import misq.p2p.data.storage.MapKey;
+import misq.p2p.message.ExpirableMessage;
+import misq.p2p.node.Connection;
+import misq.p2p.node.Node;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Collects the outbound GossipMessages per peer over a short window and sends them as one GossipBundle.
+ * During bursts (e.g. republishing of offers after startup) that saves the framing, the GuardedMessage and permit and
+ * the socket writes per message. A single message in the window gets sent as it is.
+ * Expired messages and messages superseded by a newer version in the same window are dropped at flush.
+ */
+@Slf4j
+class GossipBatcher {
+    private final Node node;
+    private final ScheduledExecutorService executor;
+    private final long window;
+    private final int maxBundleSize;
+    private final Map<Address, List<Tuple2<GossipMessage, CompletableFuture<Connection>>>> pendingByAddress =
+            new HashMap<>();
+
+    /**
+     * @param window        Time in ms we wait for further messages after the first one got added
+     * @param maxBundleSize Max. number of messages in a bundle. If reached the bundle is sent immediately.
+     */
+    GossipBatcher(Node node, ScheduledExecutorService executor, long window, int maxBundleSize) {
+        this.node = node;
+        this.executor = executor;
+        this.window = window;
+        this.maxBundleSize = maxBundleSize;
+    }
+
+    CompletableFuture<Connection> send(GossipMessage gossipMessage, Address address) {
+        CompletableFuture<Connection> future = new CompletableFuture<>();
+        boolean isFull;
+        synchronized (pendingByAddress) {
+            List<Tuple2<GossipMessage, CompletableFuture<Connection>>> pending =
+                    pendingByAddress.computeIfAbsent(address, key -> new ArrayList<>());
+            pending.add(new Tuple2<>(gossipMessage, future));
+            isFull = pending.size() >= maxBundleSize;
+            if (pending.size() == 1 && !isFull) {
+                executor.schedule(() -> flush(address), window, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (isFull) {
+            flush(address);
+        }
+        return future;
+    }
+
+    void shutdown() {
+        synchronized (pendingByAddress) {
+            pendingByAddress.values().stream()
+                    .flatMap(Collection::stream)
+                    .forEach(tuple -> tuple.second.completeExceptionally(new Exception("GossipBatcher shut down")));
+            pendingByAddress.clear();
+        }
+    }
+
+    private void flush(Address address) {
+        List<Tuple2<GossipMessage, CompletableFuture<Connection>>> pending;
+        synchronized (pendingByAddress) {
+            pending = pendingByAddress.remove(address);
+        }
+        if (pending == null) {
+            return;
+        }
+        pending = dropStale(pending);
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<GossipMessage> gossipMessages = pending.stream().map(tuple -> tuple.first).collect(Collectors.toList());
+        CompletableFuture<Connection> sendFuture = gossipMessages.size() == 1 ?
+                node.send(gossipMessages.get(0), address) :
+                node.send(new GossipBundle(gossipMessages), address);
+        List<Tuple2<GossipMessage, CompletableFuture<Connection>>> toComplete = pending;
+        sendFuture.whenComplete((connection, throwable) -> toComplete.forEach(tuple -> {
+            if (connection != null) {
+                tuple.second.complete(connection);
+            } else {
+                tuple.second.completeExceptionally(throwable);
+            }
+        }));
+    }
+
+    private List<Tuple2<GossipMessage, CompletableFuture<Connection>>> dropStale(
+            List<Tuple2<GossipMessage, CompletableFuture<Connection>>> pending) {
+        Map<MapKey, Integer> sequenceNumberByPayloadHash = new HashMap<>();
+        pending.forEach(tuple -> tuple.first.getSupersedeKey().ifPresent(key ->
+                sequenceNumberByPayloadHash.merge(key.getPayloadHash(), key.getSequenceNumber(), Math::max)));
+        List<Tuple2<GossipMessage, CompletableFuture<Connection>>> result = new ArrayList<>();
+        pending.forEach(tuple -> {
+            boolean isSuperseded = tuple.first.getSupersedeKey()
+                    .map(key -> sequenceNumberByPayloadHash.get(key.getPayloadHash()) > key.getSequenceNumber())
+                    .orElse(false);
+            if (isSuperseded || ExpirableMessage.isExpired(tuple.first)) {
+                tuple.second.completeExceptionally(new Exception("Message got stale before it was sent."));
+            } else {
+                result.add(tuple);
+            }
+        });
+        return result;
+    }
+}
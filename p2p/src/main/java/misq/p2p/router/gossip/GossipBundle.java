@@ -0,0 +1,67 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.router.gossip;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import misq.p2p.message.ExpirableMessage;
+import misq.p2p.message.SupersedeKey;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Multiple GossipMessages to the same peer collected by the GossipBatcher and sent as one message.
+ */
+@EqualsAndHashCode
+@Getter
+public class GossipBundle implements ExpirableMessage {
+    private final List<GossipMessage> gossipMessages;
+
+    public GossipBundle(List<GossipMessage> gossipMessages) {
+        this.gossipMessages = gossipMessages;
+    }
+
+    /**
+     * The bundle is stale only if all its messages are expired.
+     */
+    @Override
+    public long getDeadline() {
+        long deadline = 0;
+        for (GossipMessage gossipMessage : gossipMessages) {
+            if (gossipMessage.getDeadline() == 0) {
+                return 0;
+            }
+            deadline = Math.max(deadline, gossipMessage.getDeadline());
+        }
+        return deadline;
+    }
+
+    @Override
+    public Optional<SupersedeKey> getSupersedeKey() {
+        return Optional.empty();
+    }
+
+    @Override
+    public String toString() {
+        return "GossipBundle{" +
+                "\n     gossipMessages=" + gossipMessages +
+                "\n}";
+    }
+}
@@ -15,18 +15,107 @@
  * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
  */
 
+
 package misq.p2p.router.gossip;
 
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import misq.common.util.ObjectSerializer;
+import misq.p2p.message.ExpirableMessage;
 import misq.p2p.message.Message;
+import misq.p2p.message.SupersedeKey;
+
+import javax.annotation.Nullable;
+import java.util.Objects;
+import java.util.Optional;
 
+/**
+ * Carries the gossiped message in serialized form, so relaying nodes can forward the payload bytes without
+ * decoding it. Relays only read the header (number of hops, deadline and supersede key). The message is decoded
+ * lazily by getMessage for local delivery, where the header gets checked against the decoded message.
+ */
+@Slf4j
 @EqualsAndHashCode
 @Getter
-public class GossipMessage implements Message {
-    private final Message message;
+public class GossipMessage implements ExpirableMessage {
+    private final byte[] payload;
+    // Number of hops the message has travelled. The originator sends it with 0.
+    private final int numHops;
+    private final long deadline;
+    @Nullable
+    private final SupersedeKey supersedeKey;
+    @Nullable
+    private transient Message message;
 
     public GossipMessage(Message message) {
+        this(message, message.serialize());
+    }
+
+    /**
+     * @param serializedMessage The serialized message, if the caller has it already
+     */
+    public GossipMessage(Message message, byte[] serializedMessage) {
+        this(serializedMessage,
+                0,
+                ExpirableMessage.getDeadline(message),
+                ExpirableMessage.getSupersedeKey(message).orElse(null));
         this.message = message;
     }
+
+    GossipMessage(byte[] payload, int numHops, long deadline, @Nullable SupersedeKey supersedeKey) {
+        this.payload = payload;
+        this.numHops = numHops;
+        this.deadline = deadline;
+        this.supersedeKey = supersedeKey;
+    }
+
+    /**
+     * @return A copy with the same payload and header but the given number of hops
+     */
+    public GossipMessage withNumHops(int numHops) {
+        GossipMessage gossipMessage = new GossipMessage(payload, numHops, deadline, supersedeKey);
+        gossipMessage.message = message;
+        return gossipMessage;
+    }
+
+    /**
+     * The header is not authenticated, so a sender could forge it, e.g. to keep an expired message alive.
+     *
+     * @return True if the deadline and supersede key of the header match the decoded message
+     */
+    public boolean hasValidHeader(Message message) {
+        return deadline == ExpirableMessage.getDeadline(message) &&
+                Objects.equals(supersedeKey, ExpirableMessage.getSupersedeKey(message).orElse(null));
+    }
+
+    /**
+     * @return The decoded message or empty if decoding failed
+     */
+    public Optional<Message> getMessage() {
+        if (message == null) {
+            try {
+                message = (Message) ObjectSerializer.deserialize(payload);
+            } catch (RuntimeException e) {
+                log.warn("Could not decode gossip payload. {}", e.toString());
+                return Optional.empty();
+            }
+        }
+        return Optional.of(message);
+    }
+
+    @Override
+    public Optional<SupersedeKey> getSupersedeKey() {
+        return Optional.ofNullable(supersedeKey);
+    }
+
+    @Override
+    public String toString() {
+        return "GossipMessage{" +
+                "\n     payload=" + payload.length + " bytes" +
+                ",\n     numHops=" + numHops +
+                ",\n     deadline=" + deadline +
+                ",\n     supersedeKey=" + supersedeKey +
+                "\n}";
+    }
 }
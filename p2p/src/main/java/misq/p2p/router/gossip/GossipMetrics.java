@@ -0,0 +1,79 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package misq.p2p.router.gossip;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for the gossip protocol.
+ * The duplicate ratio is the fraction of received gossip messages we had seen already.
+ * The propagation coverage is provided by the GossipRouter as it depends on the SeenMessageCache.
+ */
+public class GossipMetrics {
+    private final AtomicLong numReceived = new AtomicLong();
+    private final AtomicLong numDuplicates = new AtomicLong();
+    private final AtomicLong numForwarded = new AtomicLong();
+    private final AtomicLong numBroadcast = new AtomicLong();
+
+    void onReceived(boolean isDuplicate) {
+        numReceived.incrementAndGet();
+        if (isDuplicate) {
+            numDuplicates.incrementAndGet();
+        }
+    }
+
+    void onForwarded(int numPeers) {
+        numForwarded.addAndGet(numPeers);
+    }
+
+    void onBroadcast(int numPeers) {
+        numBroadcast.addAndGet(numPeers);
+    }
+
+    public long getNumReceived() {
+        return numReceived.get();
+    }
+
+    public long getNumDuplicates() {
+        return numDuplicates.get();
+    }
+
+    public long getNumForwarded() {
+        return numForwarded.get();
+    }
+
+    public long getNumBroadcast() {
+        return numBroadcast.get();
+    }
+
+    public double getDuplicateRatio() {
+        long received = numReceived.get();
+        return received == 0 ? 0 : numDuplicates.get() / (double) received;
+    }
+
+    @Override
+    public String toString() {
+        return "GossipMetrics{" +
+                "\n     numReceived=" + numReceived +
+                ",\n     numDuplicates=" + numDuplicates +
+                ",\n     numForwarded=" + numForwarded +
+                ",\n     numBroadcast=" + numBroadcast +
+                ",\n     duplicateRatio=" + getDuplicateRatio() +
+                "\n}";
+    }
+}
@@ -17,36 +17,78 @@
 
 package misq.p2p.router.gossip;
 
-import misq.common.util.CollectionUtil;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import misq.common.security.DigestUtil;
+import misq.common.util.ThreadingUtils;
 import misq.p2p.Address;
+import misq.p2p.data.storage.MapKey;
+import misq.p2p.message.ExpirableMessage;
 import misq.p2p.message.Message;
 import misq.p2p.node.Connection;
 import misq.p2p.node.MessageListener;
 import misq.p2p.node.Node;
+import misq.p2p.peers.NetworkSizeEstimator;
 import misq.p2p.peers.PeerGroup;
+import misq.p2p.peers.PeerScores;
 
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 /**
  * Responsibility:
  * - Creates PeerGroup for peer management
  * - Broadcasts messages to peers provided by PeerGroup
  * - Notifies MessageListeners on messages which have been sent by via a GossipMessage
+ * - Forwards received GossipMessages based on their header without decoding the payload. The payload is decoded only
+ * for local delivery. Senders of undecodable payloads or forged headers get penalized.
+ * - Batches outbound GossipMessages per peer into GossipBundles and unpacks received GossipBundles. Received bundles
+ * with more than MAX_BUNDLE_SIZE messages are dropped.
+ * - Drops GossipMessages we have seen already (using the hash of the inner message)
+ * - Sends new and forwarded GossipMessages to a random subset of our peers which are not known to have it, as long the
+ * message has not reached the max. number of hops. The size of the subset is provided by the FanoutController.
  */
+@Slf4j
 public class GossipRouter implements MessageListener {
-    private static final long BROADCAST_TIMEOUT = 90;
+    private static final int MAX_HOPS = 8;
+    private static final long FANOUT_ADJUST_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+    private static final int SEEN_CACHE_MAX_SIZE = 10_000;
+    private static final long SEEN_CACHE_TTL = TimeUnit.MINUTES.toMillis(10);
+    private static final long BATCH_WINDOW = 50;
+    // Max. number of messages in a bundle we send. Larger bundles we receive are dropped.
+    static final int MAX_BUNDLE_SIZE = 100;
 
     private final Node node;
     private final PeerGroup peerGroup;
     private final Set<MessageListener> messageListeners = new CopyOnWriteArraySet<>();
+    private final SeenMessageCache seenMessageCache = new SeenMessageCache(SEEN_CACHE_MAX_SIZE, SEEN_CACHE_TTL);
+    private final ScheduledExecutorService executor = ThreadingUtils.getSingleThreadScheduledExecutor("GossipRouter");
+    private final GossipBatcher batcher;
+    private final FanoutController fanoutController;
+    @Getter
+    private final GossipMetrics metrics = new GossipMetrics();
 
     public GossipRouter(Node node, PeerGroup peerGroup) {
         this.node = node;
         this.peerGroup = peerGroup;
+        batcher = new GossipBatcher(node, executor, BATCH_WINDOW, MAX_BUNDLE_SIZE);
+        NetworkSizeEstimator networkSizeEstimator = new NetworkSizeEstimator(peerGroup);
+        fanoutController = new FanoutController(networkSizeEstimator::estimate);
+        executor.scheduleWithFixedDelay(
+                () -> fanoutController.adjust(metrics.getNumReceived(), metrics.getNumDuplicates()),
+                FANOUT_ADJUST_INTERVAL,
+                FANOUT_ADJUST_INTERVAL,
+                TimeUnit.MILLISECONDS);
 
         node.addMessageListener(this);
     }
@@ -54,39 +96,71 @@ public class GossipRouter implements MessageListener {
     @Override
     public void onMessage(Message message, Connection connection) {
         if (message instanceof GossipMessage) {
-            GossipMessage gossipMessage = (GossipMessage) message;
-            messageListeners.forEach(listener -> listener.onMessage(gossipMessage.getMessage(), connection));
+            onGossipMessage((GossipMessage) message, connection);
+        } else if (message instanceof GossipBundle) {
+            List<GossipMessage> gossipMessages = ((GossipBundle) message).getGossipMessages();
+            if (gossipMessages.size() > MAX_BUNDLE_SIZE) {
+                log.warn("Dropped GossipBundle from {} with {} messages. Max. bundle size is {}",
+                        connection.getPeerAddress(), gossipMessages.size(), MAX_BUNDLE_SIZE);
+                peerGroup.getPeerScores().penalize(connection.getPeerAddress(), PeerScores.PENALTY_INVALID_MESSAGE);
+                return;
+            }
+            gossipMessages.forEach(gossipMessage -> onGossipMessage(gossipMessage, connection));
         }
     }
 
     public CompletableFuture<GossipResult> broadcast(Message message) {
-        long ts = System.currentTimeMillis();
-        CompletableFuture<GossipResult> future = new CompletableFuture<>();
-        future.orTimeout(BROADCAST_TIMEOUT, TimeUnit.SECONDS);
-        AtomicInteger numSuccess = new AtomicInteger(0);
-        AtomicInteger numFaults = new AtomicInteger(0);
-        Set<Address> connectedPeerAddresses = peerGroup.getConnectedPeerAddresses();
-        int target = connectedPeerAddresses.size();
-        connectedPeerAddresses.forEach(address -> {
-            node.send(new GossipMessage(message), address)
-                    .whenComplete((connection, t) -> {
-                        if (connection != null) {
-                            numSuccess.incrementAndGet();
-                        } else {
-                            numFaults.incrementAndGet();
-                        }
-                        if (numSuccess.get() + numFaults.get() == target) {
-                            future.complete(new GossipResult(numSuccess.get(),
-                                    numFaults.get(),
-                                    System.currentTimeMillis() - ts));
-                        }
-                    });
-        });
-        return future;
+        return broadcast(message, BroadcastPolicy.all(), null);
+    }
+
+    public CompletableFuture<GossipResult> broadcast(Message message,
+                                                     BroadcastPolicy policy,
+                                                     @Nullable GossipResultListener lateResultListener) {
+        return broadcast(message, message.serialize(), policy, lateResultListener);
+    }
+
+    /**
+     * @param serializedMessage The serialized message, if the caller has it already
+     */
+    public CompletableFuture<GossipResult> broadcast(Message message,
+                                                     byte[] serializedMessage,
+                                                     BroadcastPolicy policy,
+                                                     @Nullable GossipResultListener lateResultListener) {
+        return broadcastToRandomPeers(message, serializedMessage, fanoutController.getFanout(), policy,
+                lateResultListener);
+    }
+
+    /**
+     * Broadcasts to numPeers random connected peers. The receivers forward it as usual.
+     */
+    public CompletableFuture<GossipResult> broadcastToRandomPeers(Message message,
+                                                                  int numPeers,
+                                                                  BroadcastPolicy policy,
+                                                                  @Nullable GossipResultListener lateResultListener) {
+        return broadcastToRandomPeers(message, message.serialize(), numPeers, policy, lateResultListener);
+    }
+
+    public CompletableFuture<GossipResult> broadcastToRandomPeers(Message message,
+                                                                  byte[] serializedMessage,
+                                                                  int numPeers,
+                                                                  BroadcastPolicy policy,
+                                                                  @Nullable GossipResultListener lateResultListener) {
+        List<Address> connectedPeerAddresses = new ArrayList<>(peerGroup.getConnectedPeerAddresses());
+        Collections.shuffle(connectedPeerAddresses);
+        Set<Address> peerAddresses = new HashSet<>(connectedPeerAddresses.subList(0,
+                Math.min(numPeers, connectedPeerAddresses.size())));
+        return broadcast(new GossipMessage(message, serializedMessage), peerAddresses, policy, lateResultListener);
     }
 
     public Address getPeerAddressesForInventoryRequest() {
-        return CollectionUtil.getRandomElement(peerGroup.getConnectedPeerAddresses());
+        return peerGroup.getPeerScores().selectBest(peerGroup.getConnectedPeerAddresses()).orElse(null);
+    }
+
+    /**
+     * @return The average fraction of our connected peers which are known to have the messages we have seen recently.
+     */
+    public double getPropagationCoverage() {
+        return seenMessageCache.getCoverage(peerGroup.getConnectedPeerAddresses());
     }
 
     public void addMessageListener(MessageListener messageListener) {
@@ -99,7 +173,87 @@ public class GossipRouter implements MessageListener {
 
     public void shutdown() {
         messageListeners.clear();
+        seenMessageCache.clear();
+        batcher.shutdown();
+        ThreadingUtils.shutdownAndAwaitTermination(executor);
 
         node.removeMessageListener(this);
     }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private CompletableFuture<GossipResult> broadcast(GossipMessage gossipMessage,
+                                                      Set<Address> peerAddresses,
+                                                      BroadcastPolicy policy,
+                                                      @Nullable GossipResultListener lateResultListener) {
+        int target = peerAddresses.size();
+        BroadcastTracker tracker = new BroadcastTracker(target, policy, lateResultListener);
+        // We mark our own message as seen so that we do not process it again when it gets gossiped back to us.
+        MapKey mapKey = getMapKey(gossipMessage);
+        seenMessageCache.add(mapKey, null);
+        seenMessageCache.addPeers(mapKey, peerAddresses);
+        metrics.onBroadcast(target);
+        peerAddresses.forEach(address -> {
+            batcher.send(gossipMessage, address)
+                    .whenComplete((connection, t) -> tracker.onResult(connection != null));
+        });
+        return tracker.getFuture();
+    }
+
+    // Relays forward the payload bytes with the received header and only read the header, so forwarding does not
+    // decode the payload. We decode it after forwarding for our listeners. If the payload is undecodable or the header
+    // does not match the decoded message we penalize the sender, so peers sending garbage lose their connections.
+    private void onGossipMessage(GossipMessage gossipMessage, Connection connection) {
+        MapKey mapKey = getMapKey(gossipMessage);
+        Address sender = connection.getPeerAddress();
+        boolean isNew = seenMessageCache.add(mapKey, sender);
+        metrics.onReceived(!isNew);
+        if (!isNew) {
+            return;
+        }
+
+        int numHops = gossipMessage.getNumHops() + 1;
+        if (numHops < MAX_HOPS && !ExpirableMessage.isExpired(gossipMessage)) {
+            forward(gossipMessage.withNumHops(numHops), mapKey);
+        }
+
+        if (messageListeners.isEmpty()) {
+            return;
+        }
+        Optional<Message> message = gossipMessage.getMessage();
+        if (!message.isPresent()) {
+            peerGroup.getPeerScores().penalize(sender, PeerScores.PENALTY_INVALID_MESSAGE);
+            return;
+        }
+        if (!gossipMessage.hasValidHeader(message.get())) {
+            log.warn("Header of gossip message from {} does not match the message. {}", sender, gossipMessage);
+            peerGroup.getPeerScores().penalize(sender, PeerScores.PENALTY_INVALID_MESSAGE);
+        }
+        messageListeners.forEach(listener -> listener.onMessage(message.get(), connection));
+    }
+
+    private void forward(GossipMessage gossipMessage, MapKey mapKey) {
+        Set<Address> peersHavingMessage = seenMessageCache.getPeers(mapKey);
+        List<Address> candidates = peerGroup.getConnectedPeerAddresses().stream()
+                .filter(address -> !peersHavingMessage.contains(address))
+                .collect(Collectors.toList());
+        Collections.shuffle(candidates);
+        int fanout = fanoutController.getFanout();
+        List<Address> targets = new ArrayList<>(candidates.subList(0, Math.min(fanout, candidates.size())));
+        seenMessageCache.addPeers(mapKey, targets);
+        metrics.onForwarded(targets.size());
+        targets.forEach(address -> batcher.send(gossipMessage, address)
+                .whenComplete((connection, throwable) -> {
+                    if (throwable != null) {
+                        log.debug("Forwarding gossip message to {} failed. {}", address, throwable.toString());
+                    }
+                }));
+    }
+
+    private MapKey getMapKey(GossipMessage gossipMessage) {
+        return new MapKey(DigestUtil.hash(gossipMessage.getPayload()));
+    }
 }
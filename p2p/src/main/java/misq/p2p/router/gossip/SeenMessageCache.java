@@ -0,0 +1,130 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package misq.p2p.router.gossip;
+
+import misq.p2p.Address;
+import misq.p2p.data.storage.MapKey;
+
+import java.util.*;
+
+/**
+ * Bounded and time expiring cache of the hashes of the gossip messages we have seen.
+ * For each message we keep the addresses of the peers which are known to have it (the ones we received it from and the
+ * ones we have sent it to), so we do not send it back to them.
+ */
+public class SeenMessageCache {
+    private static class Entry {
+        private final long created;
+        private final Set<Address> peers = new HashSet<>();
+
+        private Entry(long created) {
+            this.created = created;
+        }
+    }
+
+    private final int maxSize;
+    private final long ttl;
+    // Insertion ordered, so the eldest entries are the first
+    private final LinkedHashMap<MapKey, Entry> map = new LinkedHashMap<>();
+
+    /**
+     * @param maxSize Max. number of entries. If exceeded the eldest entry gets removed.
+     * @param ttl     Time in ms after an entry gets removed.
+     */
+    public SeenMessageCache(int maxSize, long ttl) {
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+    }
+
+    /**
+     * @param mapKey The hash of the message
+     * @param sender The address of the peer we have received the message from or null if we are the originator
+     * @return true if we have not seen the message before
+     */
+    public synchronized boolean add(MapKey mapKey, Address sender) {
+        pruneExpired();
+        Entry entry = map.get(mapKey);
+        boolean isNew = entry == null;
+        if (isNew) {
+            entry = new Entry(System.currentTimeMillis());
+            map.put(mapKey, entry);
+            if (map.size() > maxSize) {
+                Iterator<MapKey> iterator = map.keySet().iterator();
+                iterator.next();
+                iterator.remove();
+            }
+        }
+        if (sender != null) {
+            entry.peers.add(sender);
+        }
+        return isNew;
+    }
+
+    public synchronized boolean contains(MapKey mapKey) {
+        pruneExpired();
+        return map.containsKey(mapKey);
+    }
+
+    public synchronized void addPeers(MapKey mapKey, Collection<Address> peers) {
+        Entry entry = map.get(mapKey);
+        if (entry != null) {
+            entry.peers.addAll(peers);
+        }
+    }
+
+    public synchronized Set<Address> getPeers(MapKey mapKey) {
+        Entry entry = map.get(mapKey);
+        return entry != null ? new HashSet<>(entry.peers) : new HashSet<>();
+    }
+
+    /**
+     * @return The average fraction of the given peers which are known to have the messages in our cache.
+     */
+    public synchronized double getCoverage(Set<Address> connectedPeers) {
+        pruneExpired();
+        if (map.isEmpty() || connectedPeers.isEmpty()) {
+            return 0;
+        }
+        return map.values().stream()
+                .mapToDouble(entry -> entry.peers.stream().filter(connectedPeers::contains).count() /
+                        (double) connectedPeers.size())
+                .average()
+                .orElse(0);
+    }
+
+    public synchronized int size() {
+        return map.size();
+    }
+
+    public synchronized void clear() {
+        map.clear();
+    }
+
+    private void pruneExpired() {
+        long now = System.currentTimeMillis();
+        Iterator<Entry> iterator = map.values().iterator();
+        while (iterator.hasNext()) {
+            if (now - iterator.next().created > ttl) {
+                iterator.remove();
+            } else {
+                // Entries are ordered by creation date so we can stop at the first one which is not expired
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.router.inv;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import misq.common.util.ObjectSerializer;
+import misq.p2p.message.ExpirableMessage;
+import misq.p2p.message.Message;
+import misq.p2p.message.SupersedeKey;
+
+import javax.annotation.Nullable;
+import java.util.Optional;
+
+/**
+ * Response to a GetDataMessage carrying the requested message in serialized form. The receiver matches it to its
+ * request by the hash of the received bytes, so it does not depend on a re-serialization of the decoded message
+ * being byte-identical. The message is decoded lazily by getMessage.
+ */
+@Slf4j
+@EqualsAndHashCode
+@Getter
+class DataMessage implements ExpirableMessage {
+    private final byte[] payload;
+    private final long deadline;
+    @Nullable
+    private final SupersedeKey supersedeKey;
+    @Nullable
+    private transient Message message;
+
+    DataMessage(Message message) {
+        this(message, message.serialize());
+    }
+
+    /**
+     * @param serializedMessage The serialized message. Its hash is the id of the message.
+     */
+    DataMessage(Message message, byte[] serializedMessage) {
+        this.payload = serializedMessage;
+        this.deadline = ExpirableMessage.getDeadline(message);
+        this.supersedeKey = ExpirableMessage.getSupersedeKey(message).orElse(null);
+        this.message = message;
+    }
+
+    /**
+     * @return The decoded message or empty if decoding failed
+     */
+    Optional<Message> getMessage() {
+        if (message == null) {
+            try {
+                message = (Message) ObjectSerializer.deserialize(payload);
+            } catch (RuntimeException e) {
+                log.warn("Could not decode data message payload. {}", e.toString());
+                return Optional.empty();
+            }
+        }
+        return Optional.of(message);
+    }
+
+    @Override
+    public Optional<SupersedeKey> getSupersedeKey() {
+        return Optional.ofNullable(supersedeKey);
+    }
+
+    @Override
+    public String toString() {
+        return "DataMessage{" +
+                "\n     payload=" + payload.length + " bytes" +
+                ",\n     deadline=" + deadline +
+                ",\n     supersedeKey=" + supersedeKey +
+                "\n}";
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.router.inv;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for the announce-then-fetch protocol.
+ * Coalesced announcements are the ones for a message we are already fetching from another peer.
+ */
+public class InvMetrics {
+    private final AtomicLong numAnnouncementsSent = new AtomicLong();
+    private final AtomicLong numAnnouncementsReceived = new AtomicLong();
+    private final AtomicLong numCoalesced = new AtomicLong();
+    private final AtomicLong numRequests = new AtomicLong();
+    private final AtomicLong numTimeouts = new AtomicLong();
+    private final AtomicLong numDelivered = new AtomicLong();
+
+    void onAnnouncementsSent(int numPeers) {
+        numAnnouncementsSent.addAndGet(numPeers);
+    }
+
+    void onAnnouncementReceived(boolean isCoalesced) {
+        numAnnouncementsReceived.incrementAndGet();
+        if (isCoalesced) {
+            numCoalesced.incrementAndGet();
+        }
+    }
+
+    void onRequest() {
+        numRequests.incrementAndGet();
+    }
+
+    void onTimeout() {
+        numTimeouts.incrementAndGet();
+    }
+
+    void onDelivered() {
+        numDelivered.incrementAndGet();
+    }
+
+    public long getNumAnnouncementsSent() {
+        return numAnnouncementsSent.get();
+    }
+
+    public long getNumAnnouncementsReceived() {
+        return numAnnouncementsReceived.get();
+    }
+
+    public long getNumCoalesced() {
+        return numCoalesced.get();
+    }
+
+    public long getNumRequests() {
+        return numRequests.get();
+    }
+
+    public long getNumTimeouts() {
+        return numTimeouts.get();
+    }
+
+    public long getNumDelivered() {
+        return numDelivered.get();
+    }
+
+    @Override
+    public String toString() {
+        return "InvMetrics{" +
+                "\n     numAnnouncementsSent=" + numAnnouncementsSent +
+                ",\n     numAnnouncementsReceived=" + numAnnouncementsReceived +
+                ",\n     numCoalesced=" + numCoalesced +
+                ",\n     numRequests=" + numRequests +
+                ",\n     numTimeouts=" + numTimeouts +
+                ",\n     numDelivered=" + numDelivered +
+                "\n}";
+    }
+}
@@ -0,0 +1,368 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.router.inv;
+
+import com.google.common.annotations.VisibleForTesting;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import misq.common.security.DigestUtil;
+import misq.common.util.ThreadingUtils;
+import misq.p2p.Address;
+import misq.p2p.data.storage.MapKey;
+import misq.p2p.message.Message;
+import misq.p2p.node.Connection;
+import misq.p2p.node.ConnectionListener;
+import misq.p2p.node.MessageListener;
+import misq.p2p.node.Node;
+import misq.p2p.peers.PeerGroup;
+import misq.p2p.peers.PeerScores;
+import misq.p2p.router.gossip.BroadcastPolicy;
+import misq.p2p.router.gossip.BroadcastTracker;
+import misq.p2p.router.gossip.GossipResult;
+import misq.p2p.router.gossip.GossipResultListener;
+import misq.p2p.router.gossip.SeenMessageCache;
+
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+/**
+ * Announce-then-fetch (inv/getdata) dissemination for large messages.
+ * <p>
+ * Responsibility:
+ * - Announces only the hash of a message (InvMessage) to the peers which are not known to have it
+ * - Requests the message (GetDataMessage) from the first announcer. Further announcements for the same hash are
+ * coalesced: They are only kept as fallback if the request does not get answered within GET_DATA_TIMEOUT.
+ * - Responds to GetDataMessages with the message (DataMessage) if we still have it
+ * - Notifies MessageListeners on new messages and announces them to our other peers
+ * <p>
+ * That way the bandwidth scales with the unique data instead of the fanout multiplied by the data size, at the
+ * cost of an additional round trip per hop.
+ */
+@Slf4j
+public class InvRouter implements MessageListener, ConnectionListener {
+    private static final long GET_DATA_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+    private static final int SEEN_CACHE_MAX_SIZE = 10_000;
+    private static final long SEEN_CACHE_TTL = TimeUnit.MINUTES.toMillis(10);
+    static final int MESSAGE_STORE_MAX_SIZE = 1000;
+    // Limits the memory and timers InvMessage spam can cause. Each peer can only create a part of the pending requests.
+    static final int MAX_NUM_PENDING_REQUESTS = 1000;
+    static final int MAX_NUM_PENDING_REQUESTS_PER_PEER = 100;
+    static final int MAX_NUM_ANNOUNCERS = 8;
+
+    // A message we have requested but not received yet
+    private static class PendingRequest {
+        // The peer whose InvMessage created the entry
+        private final Address creator;
+        // The peers we have requested the message from
+        private final Set<Address> requestedPeers = new HashSet<>();
+        private final Queue<Address> announcers = new LinkedList<>();
+        @Nullable
+        private ScheduledFuture<?> timer;
+
+        private PendingRequest(Address creator) {
+            this.creator = creator;
+        }
+    }
+
+    private final Node node;
+    private final PeerGroup peerGroup;
+    private final Set<MessageListener> messageListeners = new CopyOnWriteArraySet<>();
+    private final SeenMessageCache seenMessageCache = new SeenMessageCache(SEEN_CACHE_MAX_SIZE, SEEN_CACHE_TTL);
+    // Messages we can deliver on request
+    private final Map<MapKey, DataMessage> messageStore = new LinkedHashMap<>();
+    private final Map<MapKey, PendingRequest> pendingRequests = new HashMap<>();
+    private final Map<Address, Integer> numPendingRequestsByCreator = new HashMap<>();
+    private final ScheduledExecutorService executor = ThreadingUtils.getSingleThreadScheduledExecutor("InvRouter");
+    @Getter
+    private final InvMetrics metrics = new InvMetrics();
+    private final long getDataTimeout;
+
+    public InvRouter(Node node, PeerGroup peerGroup) {
+        this(node, peerGroup, GET_DATA_TIMEOUT);
+    }
+
+    @VisibleForTesting
+    InvRouter(Node node, PeerGroup peerGroup, long getDataTimeout) {
+        this.node = node;
+        this.peerGroup = peerGroup;
+        this.getDataTimeout = getDataTimeout;
+
+        node.addMessageListener(this);
+        node.addConnectionListener(this);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // MessageListener
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void onMessage(Message message, Connection connection) {
+        Address sender = connection.getPeerAddress();
+        if (message instanceof InvMessage) {
+            onInv(((InvMessage) message).getMessageId(), sender);
+        } else if (message instanceof GetDataMessage) {
+            onGetData(((GetDataMessage) message).getMessageId(), sender);
+        } else if (message instanceof DataMessage) {
+            onData((DataMessage) message, connection);
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // ConnectionListener
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void onConnection(Connection connection) {
+    }
+
+    @Override
+    public void onDisconnect(Connection connection) {
+        Address peerAddress = connection.getPeerAddress();
+        synchronized (pendingRequests) {
+            pendingRequests.values().forEach(pendingRequest -> pendingRequest.announcers.remove(peerAddress));
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * The GossipResult reflects the delivery of the announcements, not of the message itself.
+     */
+    public CompletableFuture<GossipResult> broadcast(Message message) {
+        return broadcast(message, BroadcastPolicy.all(), null);
+    }
+
+    public CompletableFuture<GossipResult> broadcast(Message message,
+                                                     BroadcastPolicy policy,
+                                                     @Nullable GossipResultListener lateResultListener) {
+        return broadcast(message, message.serialize(), policy, lateResultListener);
+    }
+
+    /**
+     * @param serializedMessage The serialized message, if the caller has it already
+     */
+    public CompletableFuture<GossipResult> broadcast(Message message,
+                                                     byte[] serializedMessage,
+                                                     BroadcastPolicy policy,
+                                                     @Nullable GossipResultListener lateResultListener) {
+        MapKey mapKey = new MapKey(DigestUtil.hash(serializedMessage));
+        seenMessageCache.add(mapKey, null);
+        storeMessage(mapKey, new DataMessage(message, serializedMessage));
+
+        Set<Address> connectedPeerAddresses = peerGroup.getConnectedPeerAddresses();
+        seenMessageCache.addPeers(mapKey, connectedPeerAddresses);
+        int target = connectedPeerAddresses.size();
+        BroadcastTracker tracker = new BroadcastTracker(target, policy, lateResultListener);
+        metrics.onAnnouncementsSent(target);
+        InvMessage invMessage = new InvMessage(mapKey);
+        connectedPeerAddresses.forEach(address -> {
+            node.send(invMessage, address)
+                    .whenComplete((connection, t) -> tracker.onResult(connection != null));
+        });
+        return tracker.getFuture();
+    }
+
+    public void addMessageListener(MessageListener messageListener) {
+        messageListeners.add(messageListener);
+    }
+
+    public void removeMessageListener(MessageListener messageListener) {
+        messageListeners.remove(messageListener);
+    }
+
+    public void shutdown() {
+        messageListeners.clear();
+        seenMessageCache.clear();
+        synchronized (messageStore) {
+            messageStore.clear();
+        }
+        synchronized (pendingRequests) {
+            pendingRequests.clear();
+            numPendingRequestsByCreator.clear();
+        }
+        ThreadingUtils.shutdownAndAwaitTermination(executor);
+
+        node.removeMessageListener(this);
+        node.removeConnectionListener(this);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private void onInv(MapKey mapKey, Address sender) {
+        if (seenMessageCache.contains(mapKey)) {
+            seenMessageCache.addPeers(mapKey, Collections.singleton(sender));
+            metrics.onAnnouncementReceived(true);
+            return;
+        }
+        synchronized (pendingRequests) {
+            PendingRequest pendingRequest = pendingRequests.get(mapKey);
+            boolean isCoalesced = pendingRequest != null;
+            metrics.onAnnouncementReceived(isCoalesced);
+            if (isCoalesced) {
+                // We are fetching it already. The sender serves as fallback.
+                if (pendingRequest.announcers.size() < MAX_NUM_ANNOUNCERS &&
+                        !pendingRequest.requestedPeers.contains(sender) &&
+                        !pendingRequest.announcers.contains(sender)) {
+                    pendingRequest.announcers.add(sender);
+                }
+            } else {
+                int numCreated = numPendingRequestsByCreator.getOrDefault(sender, 0);
+                if (pendingRequests.size() >= MAX_NUM_PENDING_REQUESTS ||
+                        numCreated >= MAX_NUM_PENDING_REQUESTS_PER_PEER) {
+                    log.debug("Ignoring InvMessage from {} as we have too many pending requests", sender);
+                    return;
+                }
+                pendingRequest = new PendingRequest(sender);
+                pendingRequests.put(mapKey, pendingRequest);
+                numPendingRequestsByCreator.put(sender, numCreated + 1);
+                request(mapKey, sender, pendingRequest);
+            }
+        }
+    }
+
+    private void onGetData(MapKey mapKey, Address sender) {
+        DataMessage dataMessage;
+        synchronized (messageStore) {
+            dataMessage = messageStore.get(mapKey);
+        }
+        if (dataMessage != null) {
+            seenMessageCache.addPeers(mapKey, Collections.singleton(sender));
+            send(dataMessage, sender);
+        } else {
+            log.debug("We got a GetDataMessage from {} but do not have the message anymore", sender);
+        }
+    }
+
+    // The id of the message is the hash of the received bytes, so we only decode requested messages
+    private void onData(DataMessage dataMessage, Connection connection) {
+        MapKey mapKey = new MapKey(DigestUtil.hash(dataMessage.getPayload()));
+        PendingRequest pendingRequest;
+        synchronized (pendingRequests) {
+            pendingRequest = removePendingRequest(mapKey);
+        }
+        if (pendingRequest == null) {
+            log.debug("We got an unsolicited or late DataMessage from {}", connection.getPeerAddress());
+            return;
+        }
+        if (pendingRequest.timer != null) {
+            pendingRequest.timer.cancel(false);
+        }
+        Address sender = connection.getPeerAddress();
+        Optional<Message> message = dataMessage.getMessage();
+        if (!message.isPresent()) {
+            peerGroup.getPeerScores().penalize(sender, PeerScores.PENALTY_INVALID_MESSAGE);
+            return;
+        }
+        if (!seenMessageCache.add(mapKey, sender)) {
+            return;
+        }
+        // All announcers have it
+        seenMessageCache.addPeers(mapKey, pendingRequest.announcers);
+        // The header of the received DataMessage is not authenticated, so we derive it from the decoded message
+        storeMessage(mapKey, new DataMessage(message.get(), dataMessage.getPayload()));
+        metrics.onDelivered();
+        messageListeners.forEach(listener -> listener.onMessage(message.get(), connection));
+        announce(mapKey);
+    }
+
+    private void request(MapKey mapKey, Address announcer, PendingRequest pendingRequest) {
+        metrics.onRequest();
+        pendingRequest.requestedPeers.add(announcer);
+        pendingRequest.timer = executor.schedule(() -> onRequestTimeout(mapKey), getDataTimeout, TimeUnit.MILLISECONDS);
+        send(new GetDataMessage(mapKey), announcer);
+    }
+
+    // Fall back to the next announcer
+    private void onRequestTimeout(MapKey mapKey) {
+        metrics.onTimeout();
+        synchronized (pendingRequests) {
+            PendingRequest pendingRequest = pendingRequests.get(mapKey);
+            if (pendingRequest == null) {
+                return;
+            }
+            Address announcer = pendingRequest.announcers.poll();
+            if (announcer == null) {
+                log.debug("Requesting message {} failed at all announcers", mapKey);
+                removePendingRequest(mapKey);
+                return;
+            }
+            request(mapKey, announcer, pendingRequest);
+        }
+    }
+
+    // Needs to be called while holding the pendingRequests lock
+    @Nullable
+    private PendingRequest removePendingRequest(MapKey mapKey) {
+        PendingRequest pendingRequest = pendingRequests.remove(mapKey);
+        if (pendingRequest != null) {
+            numPendingRequestsByCreator.computeIfPresent(pendingRequest.creator,
+                    (address, numCreated) -> numCreated > 1 ? numCreated - 1 : null);
+        }
+        return pendingRequest;
+    }
+
+    @VisibleForTesting
+    int getNumPendingRequests() {
+        synchronized (pendingRequests) {
+            return pendingRequests.size();
+        }
+    }
+
+    private void announce(MapKey mapKey) {
+        Set<Address> peersHavingMessage = seenMessageCache.getPeers(mapKey);
+        List<Address> targets = peerGroup.getConnectedPeerAddresses().stream()
+                .filter(address -> !peersHavingMessage.contains(address))
+                .collect(Collectors.toList());
+        seenMessageCache.addPeers(mapKey, targets);
+        metrics.onAnnouncementsSent(targets.size());
+        InvMessage invMessage = new InvMessage(mapKey);
+        targets.forEach(address -> send(invMessage, address));
+    }
+
+    private void storeMessage(MapKey mapKey, DataMessage dataMessage) {
+        synchronized (messageStore) {
+            messageStore.put(mapKey, dataMessage);
+            if (messageStore.size() > MESSAGE_STORE_MAX_SIZE) {
+                Iterator<MapKey> iterator = messageStore.keySet().iterator();
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+
+    private void send(Message message, Address address) {
+        node.send(message, address)
+                .whenComplete((connection, throwable) -> {
+                    if (throwable != null) {
+                        log.debug("Sending {} to {} failed. {}", message.getClass().getSimpleName(), address,
+                                throwable.toString());
+                    }
+                });
+    }
+}
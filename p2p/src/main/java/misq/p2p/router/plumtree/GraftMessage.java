@@ -0,0 +1,47 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.router.plumtree;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import misq.p2p.data.storage.MapKey;
+import misq.p2p.message.Message;
+
+/**
+ * Requests a missing message and adds the link to the eager push peers of the receiver to repair the tree.
+ */
+@EqualsAndHashCode
+@Getter
+class GraftMessage implements Message {
+    private final MapKey messageId;
+    private final int round;
+
+    GraftMessage(MapKey messageId, int round) {
+        this.messageId = messageId;
+        this.round = round;
+    }
+
+    @Override
+    public String toString() {
+        return "GraftMessage{" +
+                "\n     messageId=" + messageId +
+                ",\n     round=" + round +
+                "\n}";
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.router.plumtree;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import misq.common.util.ObjectSerializer;
+import misq.p2p.message.ExpirableMessage;
+import misq.p2p.message.Message;
+import misq.p2p.message.SupersedeKey;
+
+import javax.annotation.Nullable;
+import java.util.Optional;
+
+/**
+ * Carries the payload in serialized form. Sent to the eager push peers. The hash of the payload is the message id at
+ * all hops, so it does not depend on a re-serialization of the decoded message being byte-identical. The message is
+ * decoded lazily by getMessage.
+ */
+@Slf4j
+@EqualsAndHashCode
+@Getter
+class PlumtreeMessage implements ExpirableMessage {
+    private final byte[] payload;
+    private final int round;
+    private final long deadline;
+    @Nullable
+    private final SupersedeKey supersedeKey;
+    @Nullable
+    private transient Message message;
+
+    PlumtreeMessage(Message message, int round) {
+        this(message, message.serialize(), round);
+    }
+
+    /**
+     * @param serializedMessage The serialized message. Its hash is the id of the message.
+     */
+    PlumtreeMessage(Message message, byte[] serializedMessage, int round) {
+        this.payload = serializedMessage;
+        this.round = round;
+        this.deadline = ExpirableMessage.getDeadline(message);
+        this.supersedeKey = ExpirableMessage.getSupersedeKey(message).orElse(null);
+        this.message = message;
+    }
+
+    /**
+     * @return The decoded message or empty if decoding failed
+     */
+    Optional<Message> getMessage() {
+        if (message == null) {
+            try {
+                message = (Message) ObjectSerializer.deserialize(payload);
+            } catch (RuntimeException e) {
+                log.warn("Could not decode plumtree payload. {}", e.toString());
+                return Optional.empty();
+            }
+        }
+        return Optional.of(message);
+    }
+
+    @Override
+    public Optional<SupersedeKey> getSupersedeKey() {
+        return Optional.ofNullable(supersedeKey);
+    }
+
+    @Override
+    public String toString() {
+        return "PlumtreeMessage{" +
+                "\n     payload=" + payload.length + " bytes" +
+                ",\n     round=" + round +
+                ",\n     deadline=" + deadline +
+                ",\n     supersedeKey=" + supersedeKey +
+                "\n}";
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.router.plumtree;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for the Plumtree protocol. Eager pushes carry the payload, lazy pushes only the IHAVE announcement.
+ */
+public class PlumtreeMetrics {
+    private final AtomicLong numReceived = new AtomicLong();
+    private final AtomicLong numDuplicates = new AtomicLong();
+    private final AtomicLong numEagerPushes = new AtomicLong();
+    private final AtomicLong numLazyPushes = new AtomicLong();
+    private final AtomicLong numGrafts = new AtomicLong();
+    private final AtomicLong numPrunes = new AtomicLong();
+
+    void onReceived(boolean isDuplicate) {
+        numReceived.incrementAndGet();
+        if (isDuplicate) {
+            numDuplicates.incrementAndGet();
+        }
+    }
+
+    void onEagerPush(int numPeers) {
+        numEagerPushes.addAndGet(numPeers);
+    }
+
+    void onLazyPush(int numPeers) {
+        numLazyPushes.addAndGet(numPeers);
+    }
+
+    void onGraft() {
+        numGrafts.incrementAndGet();
+    }
+
+    void onPrune() {
+        numPrunes.incrementAndGet();
+    }
+
+    public long getNumReceived() {
+        return numReceived.get();
+    }
+
+    public long getNumDuplicates() {
+        return numDuplicates.get();
+    }
+
+    public long getNumEagerPushes() {
+        return numEagerPushes.get();
+    }
+
+    public long getNumLazyPushes() {
+        return numLazyPushes.get();
+    }
+
+    public long getNumGrafts() {
+        return numGrafts.get();
+    }
+
+    public long getNumPrunes() {
+        return numPrunes.get();
+    }
+
+    public double getDuplicateRatio() {
+        long received = numReceived.get();
+        return received == 0 ? 0 : numDuplicates.get() / (double) received;
+    }
+
+    @Override
+    public String toString() {
+        return "PlumtreeMetrics{" +
+                "\n     numReceived=" + numReceived +
+                ",\n     numDuplicates=" + numDuplicates +
+                ",\n     numEagerPushes=" + numEagerPushes +
+                ",\n     numLazyPushes=" + numLazyPushes +
+                ",\n     numGrafts=" + numGrafts +
+                ",\n     numPrunes=" + numPrunes +
+                "\n}";
+    }
+}
@@ -0,0 +1,394 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.router.plumtree;
+
+import com.google.common.annotations.VisibleForTesting;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import misq.common.security.DigestUtil;
+import misq.common.util.ThreadingUtils;
+import misq.p2p.Address;
+import misq.p2p.data.storage.MapKey;
+import misq.p2p.message.Message;
+import misq.p2p.node.Connection;
+import misq.p2p.node.ConnectionListener;
+import misq.p2p.node.MessageListener;
+import misq.p2p.node.Node;
+import misq.p2p.peers.PeerGroup;
+import misq.p2p.peers.PeerScores;
+import misq.p2p.router.gossip.BroadcastPolicy;
+import misq.p2p.router.gossip.BroadcastTracker;
+import misq.p2p.router.gossip.GossipResult;
+import misq.p2p.router.gossip.GossipResultListener;
+import misq.p2p.router.gossip.SeenMessageCache;
+
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+/**
+ * Epidemic broadcast tree (Plumtree) based on the paper "Epidemic Broadcast Trees" by Leitao, Pereira and Rodrigues.
+ * <p>
+ * Responsibility:
+ * - Sends the full message only to the eager push peers, which form a spanning tree, and only the message hash (IHAVE)
+ * to the lazy push peers.
+ * - A duplicate indicates a redundant link in the tree: The sender gets moved to the lazy push peers and informed by
+ * a PRUNE message.
+ * - If we receive an IHAVE for a message which does not arrive via the tree within MISSING_MESSAGE_TIMEOUT, we GRAFT
+ * the announcer, which sends us the message and moves us back to its eager push peers. That way the tree repairs itself
+ * after peers left.
+ * <p>
+ * New peers start as eager push peers, so the first broadcasts behave like a flood until the tree has been pruned.
+ */
+@Slf4j
+public class PlumtreeRouter implements MessageListener, ConnectionListener {
+    private static final long MISSING_MESSAGE_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+    private static final long GRAFT_TIMEOUT = TimeUnit.SECONDS.toMillis(5);
+    private static final int SEEN_CACHE_MAX_SIZE = 10_000;
+    private static final long SEEN_CACHE_TTL = TimeUnit.MINUTES.toMillis(10);
+    private static final int MESSAGE_STORE_MAX_SIZE = 1000;
+    // Limits the memory and timers IHAVE spam can cause. Each peer can only create a part of the missing messages.
+    static final int MAX_NUM_MISSING_MESSAGES = 1000;
+    static final int MAX_NUM_MISSING_MESSAGES_PER_PEER = 100;
+    static final int MAX_NUM_ANNOUNCERS = 8;
+
+    // Announcements of a message we have not received yet
+    private static class MissingMessage {
+        private final int round;
+        // The peer whose IHAVE created the entry
+        private final Address creator;
+        private final Queue<Address> announcers = new LinkedList<>();
+        @Nullable
+        private ScheduledFuture<?> timer;
+
+        private MissingMessage(int round, Address creator) {
+            this.round = round;
+            this.creator = creator;
+        }
+    }
+
+    private final Node node;
+    private final PeerGroup peerGroup;
+    private final Set<MessageListener> messageListeners = new CopyOnWriteArraySet<>();
+    private final SeenMessageCache seenMessageCache = new SeenMessageCache(SEEN_CACHE_MAX_SIZE, SEEN_CACHE_TTL);
+    // The connected peers which are not in lazyPushPeers are our eager push peers
+    private final Set<Address> lazyPushPeers = ConcurrentHashMap.newKeySet();
+    // Recently received messages for responding to GRAFT messages
+    private final Map<MapKey, PlumtreeMessage> messageStore = new LinkedHashMap<>();
+    private final Map<MapKey, MissingMessage> missingMessages = new HashMap<>();
+    private final Map<Address, Integer> numMissingMessagesByCreator = new HashMap<>();
+    private final ScheduledExecutorService executor = ThreadingUtils.getSingleThreadScheduledExecutor("PlumtreeRouter");
+    @Getter
+    private final PlumtreeMetrics metrics = new PlumtreeMetrics();
+    private final long missingMessageTimeout;
+    private final long graftTimeout;
+
+    public PlumtreeRouter(Node node, PeerGroup peerGroup) {
+        this(node, peerGroup, MISSING_MESSAGE_TIMEOUT, GRAFT_TIMEOUT);
+    }
+
+    @VisibleForTesting
+    PlumtreeRouter(Node node, PeerGroup peerGroup, long missingMessageTimeout, long graftTimeout) {
+        this.node = node;
+        this.peerGroup = peerGroup;
+        this.missingMessageTimeout = missingMessageTimeout;
+        this.graftTimeout = graftTimeout;
+
+        node.addMessageListener(this);
+        node.addConnectionListener(this);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // MessageListener
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void onMessage(Message message, Connection connection) {
+        Address sender = connection.getPeerAddress();
+        if (message instanceof PlumtreeMessage) {
+            onPlumtreeMessage((PlumtreeMessage) message, connection);
+        } else if (message instanceof IHaveMessage) {
+            onIHave((IHaveMessage) message, sender);
+        } else if (message instanceof GraftMessage) {
+            onGraft((GraftMessage) message, sender);
+        } else if (message instanceof PruneMessage) {
+            lazyPushPeers.add(sender);
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // ConnectionListener
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void onConnection(Connection connection) {
+        // New peers are eager push peers
+        lazyPushPeers.remove(connection.getPeerAddress());
+    }
+
+    @Override
+    public void onDisconnect(Connection connection) {
+        Address peerAddress = connection.getPeerAddress();
+        lazyPushPeers.remove(peerAddress);
+        synchronized (missingMessages) {
+            missingMessages.values().forEach(missingMessage -> missingMessage.announcers.remove(peerAddress));
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public CompletableFuture<GossipResult> broadcast(Message message) {
+        return broadcast(message, BroadcastPolicy.all(), null);
+    }
+
+    public CompletableFuture<GossipResult> broadcast(Message message,
+                                                     BroadcastPolicy policy,
+                                                     @Nullable GossipResultListener lateResultListener) {
+        return broadcast(message, message.serialize(), policy, lateResultListener);
+    }
+
+    /**
+     * @param serializedMessage The serialized message, if the caller has it already
+     */
+    public CompletableFuture<GossipResult> broadcast(Message message,
+                                                     byte[] serializedMessage,
+                                                     BroadcastPolicy policy,
+                                                     @Nullable GossipResultListener lateResultListener) {
+        MapKey mapKey = new MapKey(DigestUtil.hash(serializedMessage));
+        seenMessageCache.add(mapKey, null);
+        PlumtreeMessage plumtreeMessage = new PlumtreeMessage(message, serializedMessage, 0);
+        storeMessage(mapKey, plumtreeMessage);
+
+        List<Address> eagerPushPeers = getEagerPushPeers(null);
+        int target = eagerPushPeers.size();
+        BroadcastTracker tracker = new BroadcastTracker(target, policy, lateResultListener);
+        metrics.onEagerPush(target);
+        eagerPushPeers.forEach(address -> {
+            node.send(plumtreeMessage, address)
+                    .whenComplete((connection, t) -> tracker.onResult(connection != null));
+        });
+        lazyPush(mapKey, 0, null);
+        return tracker.getFuture();
+    }
+
+    public Set<Address> getLazyPushPeers() {
+        return new HashSet<>(lazyPushPeers);
+    }
+
+    public void addMessageListener(MessageListener messageListener) {
+        messageListeners.add(messageListener);
+    }
+
+    public void removeMessageListener(MessageListener messageListener) {
+        messageListeners.remove(messageListener);
+    }
+
+    public void shutdown() {
+        messageListeners.clear();
+        seenMessageCache.clear();
+        lazyPushPeers.clear();
+        synchronized (messageStore) {
+            messageStore.clear();
+        }
+        synchronized (missingMessages) {
+            missingMessages.clear();
+            numMissingMessagesByCreator.clear();
+        }
+        ThreadingUtils.shutdownAndAwaitTermination(executor);
+
+        node.removeMessageListener(this);
+        node.removeConnectionListener(this);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+
+    // The message id is the hash of the received bytes. We decode the payload only for new messages.
+    private void onPlumtreeMessage(PlumtreeMessage plumtreeMessage, Connection connection) {
+        MapKey mapKey = new MapKey(DigestUtil.hash(plumtreeMessage.getPayload()));
+        Address sender = connection.getPeerAddress();
+        boolean isNew = seenMessageCache.add(mapKey, sender);
+        metrics.onReceived(!isNew);
+        if (!isNew) {
+            // Redundant link in the tree
+            if (lazyPushPeers.add(sender)) {
+                send(new PruneMessage(), sender);
+                metrics.onPrune();
+            }
+            return;
+        }
+
+        cancelMissingMessage(mapKey);
+        lazyPushPeers.remove(sender);
+        Optional<Message> payload = plumtreeMessage.getMessage();
+        if (!payload.isPresent()) {
+            peerGroup.getPeerScores().penalize(sender, PeerScores.PENALTY_INVALID_MESSAGE);
+            return;
+        }
+        messageListeners.forEach(listener -> listener.onMessage(payload.get(), connection));
+
+        int round = plumtreeMessage.getRound() + 1;
+        // We forward the received bytes. The header is not authenticated, so we derive it from the decoded message.
+        PlumtreeMessage forwardMessage = new PlumtreeMessage(payload.get(), plumtreeMessage.getPayload(), round);
+        storeMessage(mapKey, forwardMessage);
+        List<Address> eagerPushPeers = getEagerPushPeers(sender);
+        metrics.onEagerPush(eagerPushPeers.size());
+        eagerPushPeers.forEach(address -> send(forwardMessage, address));
+        lazyPush(mapKey, round, sender);
+    }
+
+    private void onIHave(IHaveMessage iHaveMessage, Address sender) {
+        MapKey mapKey = iHaveMessage.getMessageId();
+        if (seenMessageCache.contains(mapKey)) {
+            seenMessageCache.addPeers(mapKey, Collections.singleton(sender));
+            return;
+        }
+        synchronized (missingMessages) {
+            MissingMessage missingMessage = missingMessages.get(mapKey);
+            if (missingMessage == null) {
+                int numCreated = numMissingMessagesByCreator.getOrDefault(sender, 0);
+                if (missingMessages.size() >= MAX_NUM_MISSING_MESSAGES ||
+                        numCreated >= MAX_NUM_MISSING_MESSAGES_PER_PEER) {
+                    log.debug("Ignoring IHAVE from {} as we have too many missing messages", sender);
+                    return;
+                }
+                missingMessage = new MissingMessage(iHaveMessage.getRound(), sender);
+                missingMessages.put(mapKey, missingMessage);
+                numMissingMessagesByCreator.put(sender, numCreated + 1);
+            }
+            if (missingMessage.announcers.size() < MAX_NUM_ANNOUNCERS &&
+                    !missingMessage.announcers.contains(sender)) {
+                missingMessage.announcers.add(sender);
+            }
+            if (missingMessage.timer == null) {
+                missingMessage.timer = executor.schedule(() -> onMissingMessageTimeout(mapKey),
+                        missingMessageTimeout, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    // The message has not arrived via the tree. We graft the next announcer and give it GRAFT_TIMEOUT to deliver,
+    // otherwise we try the next one.
+    private void onMissingMessageTimeout(MapKey mapKey) {
+        if (seenMessageCache.contains(mapKey)) {
+            cancelMissingMessage(mapKey);
+            return;
+        }
+        synchronized (missingMessages) {
+            MissingMessage missingMessage = missingMessages.get(mapKey);
+            if (missingMessage == null) {
+                return;
+            }
+            Address announcer = missingMessage.announcers.poll();
+            if (announcer == null) {
+                removeMissingMessage(mapKey);
+                return;
+            }
+            missingMessage.timer = executor.schedule(() -> onMissingMessageTimeout(mapKey),
+                    graftTimeout, TimeUnit.MILLISECONDS);
+            lazyPushPeers.remove(announcer);
+            metrics.onGraft();
+            send(new GraftMessage(mapKey, missingMessage.round), announcer);
+        }
+    }
+
+    private void onGraft(GraftMessage graftMessage, Address sender) {
+        lazyPushPeers.remove(sender);
+        PlumtreeMessage plumtreeMessage;
+        synchronized (messageStore) {
+            plumtreeMessage = messageStore.get(graftMessage.getMessageId());
+        }
+        if (plumtreeMessage != null) {
+            seenMessageCache.addPeers(graftMessage.getMessageId(), Collections.singleton(sender));
+            send(plumtreeMessage, sender);
+        }
+    }
+
+    private void lazyPush(MapKey mapKey, int round, @Nullable Address sender) {
+        List<Address> targets = lazyPushPeers.stream()
+                .filter(address -> !address.equals(sender))
+                .collect(Collectors.toList());
+        metrics.onLazyPush(targets.size());
+        IHaveMessage iHaveMessage = new IHaveMessage(mapKey, round);
+        targets.forEach(address -> send(iHaveMessage, address));
+    }
+
+    private List<Address> getEagerPushPeers(@Nullable Address excluded) {
+        return peerGroup.getConnectedPeerAddresses().stream()
+                .filter(address -> !lazyPushPeers.contains(address))
+                .filter(address -> !address.equals(excluded))
+                .collect(Collectors.toList());
+    }
+
+    private void cancelMissingMessage(MapKey mapKey) {
+        synchronized (missingMessages) {
+            MissingMessage missingMessage = removeMissingMessage(mapKey);
+            if (missingMessage != null && missingMessage.timer != null) {
+                missingMessage.timer.cancel(false);
+            }
+        }
+    }
+
+    // Needs to be called while holding the missingMessages lock
+    @Nullable
+    private MissingMessage removeMissingMessage(MapKey mapKey) {
+        MissingMessage missingMessage = missingMessages.remove(mapKey);
+        if (missingMessage != null) {
+            numMissingMessagesByCreator.computeIfPresent(missingMessage.creator,
+                    (address, numCreated) -> numCreated > 1 ? numCreated - 1 : null);
+        }
+        return missingMessage;
+    }
+
+    @VisibleForTesting
+    int getNumMissingMessages() {
+        synchronized (missingMessages) {
+            return missingMessages.size();
+        }
+    }
+
+    private void storeMessage(MapKey mapKey, PlumtreeMessage plumtreeMessage) {
+        synchronized (messageStore) {
+            messageStore.put(mapKey, plumtreeMessage);
+            if (messageStore.size() > MESSAGE_STORE_MAX_SIZE) {
+                Iterator<MapKey> iterator = messageStore.keySet().iterator();
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+
+    private void send(Message message, Address address) {
+        node.send(message, address)
+                .whenComplete((connection, throwable) -> {
+                    if (throwable != null) {
+                        log.debug("Sending {} to {} failed. {}", message.getClass().getSimpleName(), address,
+                                throwable.toString());
+                    }
+                });
+    }
+}
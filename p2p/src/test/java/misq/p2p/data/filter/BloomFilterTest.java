@@ -0,0 +1,101 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.data.filter;
+
+import misq.common.util.ObjectSerializer;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class BloomFilterTest {
+    private static byte[] getHash(int i) {
+        return ByteBuffer.allocate(20).putInt(i).array();
+    }
+
+    @Test
+    public void testMightContain() {
+        BloomFilter bloomFilter = new BloomFilter("test", 1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            bloomFilter.put(getHash(i), 1);
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(bloomFilter.mightContain(getHash(i), 1));
+        }
+    }
+
+    @Test
+    public void testSequenceNumber() {
+        BloomFilter bloomFilter = new BloomFilter("test", 10, 0.001, 1);
+        bloomFilter.put(getHash(1), 3);
+        assertTrue(bloomFilter.mightContain(getHash(1), 3));
+        // A newer version at the responder does not match
+        assertFalse(bloomFilter.mightContain(getHash(1), 4));
+    }
+
+    @Test
+    public void testFalsePositiveRate() {
+        int numItems = 10_000;
+        double falsePositiveRate = 0.01;
+        BloomFilter bloomFilter = new BloomFilter("test", numItems, falsePositiveRate, 1);
+        for (int i = 0; i < numItems; i++) {
+            bloomFilter.put(getHash(i), 1);
+        }
+        int numFalsePositives = 0;
+        for (int i = numItems; i < 2 * numItems; i++) {
+            if (bloomFilter.mightContain(getHash(i), 1)) {
+                numFalsePositives++;
+            }
+        }
+        double rate = numFalsePositives / (double) numItems;
+        assertEquals(falsePositiveRate, rate, 0.005);
+        assertEquals(falsePositiveRate, bloomFilter.getExpectedFalsePositiveRate(), 0.005);
+        // About 1.2 bytes per entry instead of 24 bytes with the ProtectedDataFilter
+        assertTrue(bloomFilter.getBits().length * 8 < 1.3 * numItems);
+    }
+
+    @Test
+    public void testIndependentTweak() {
+        int numItems = 1000;
+        BloomFilter first = new BloomFilter("test", numItems, BloomFilter.DEFAULT_FALSE_POSITIVE_RATE, 1);
+        BloomFilter followUp = new BloomFilter("test", numItems, BloomFilter.FOLLOW_UP_FALSE_POSITIVE_RATE, 2);
+        for (int i = 0; i < numItems; i++) {
+            first.put(getHash(i), 1);
+            followUp.put(getHash(i), 1);
+        }
+        // Items which are false positives in both rounds are rare
+        int numMissed = 0;
+        for (int i = numItems; i < 100 * numItems; i++) {
+            if (first.mightContain(getHash(i), 1) && followUp.mightContain(getHash(i), 1)) {
+                numMissed++;
+            }
+        }
+        assertTrue(numMissed < 0.002 * 99 * numItems);
+    }
+
+    @Test
+    public void testSerialization() {
+        BloomFilter bloomFilter = new BloomFilter("test", 100, 0.01);
+        bloomFilter.put(getHash(1), 1);
+        BloomFilter deserialized = (BloomFilter) ObjectSerializer.deserialize(ObjectSerializer.serialize(bloomFilter));
+        assertEquals(bloomFilter, deserialized);
+        assertTrue(deserialized.mightContain(getHash(1), 1));
+    }
+}
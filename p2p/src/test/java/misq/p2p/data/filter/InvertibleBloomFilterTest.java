@@ -0,0 +1,143 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.data.filter;
+
+import misq.common.util.ObjectSerializer;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class InvertibleBloomFilterTest {
+    private static byte[] getHash(int i) {
+        return ByteBuffer.allocate(InvertibleBloomFilter.HASH_SIZE).putInt(i).array();
+    }
+
+    private static Set<Integer> toIds(Set<FilterItem> items) {
+        return items.stream()
+                .map(item -> ByteBuffer.wrap(item.getHash()).getInt())
+                .collect(Collectors.toSet());
+    }
+
+    @Test
+    public void testDecodeDifference() {
+        int numCells = InvertibleBloomFilter.getNumCells(50);
+        InvertibleBloomFilter responder = new InvertibleBloomFilter("test", numCells, 1);
+        InvertibleBloomFilter requester = new InvertibleBloomFilter("test", numCells, 1);
+        // 10000 common items
+        for (int i = 0; i < 10_000; i++) {
+            responder.put(getHash(i), 1);
+            requester.put(getHash(i), 1);
+        }
+        // 20 items only at responder, 10 only at requester
+        for (int i = 10_000; i < 10_020; i++) {
+            responder.put(getHash(i), 1);
+        }
+        for (int i = 20_000; i < 20_010; i++) {
+            requester.put(getHash(i), 1);
+        }
+        // One item got updated at the responder
+        responder.put(getHash(30_000), 2);
+        requester.put(getHash(30_000), 1);
+
+        Optional<InvertibleBloomFilter.Difference> difference = responder.subtract(requester).decode();
+        assertTrue(difference.isPresent());
+        Set<FilterItem> onlyInThis = difference.get().getOnlyInThis();
+        Set<FilterItem> onlyInOther = difference.get().getOnlyInOther();
+        assertEquals(21, onlyInThis.size());
+        assertEquals(11, onlyInOther.size());
+        assertTrue(toIds(onlyInThis).contains(10_000));
+        assertTrue(toIds(onlyInOther).contains(20_000));
+        assertTrue(onlyInThis.contains(new FilterItem(getHash(30_000), 2)));
+        assertTrue(onlyInOther.contains(new FilterItem(getHash(30_000), 1)));
+    }
+
+    @Test
+    public void testNoDifference() {
+        InvertibleBloomFilter responder = new InvertibleBloomFilter("test", 30, 1);
+        InvertibleBloomFilter requester = new InvertibleBloomFilter("test", 30, 1);
+        for (int i = 0; i < 1000; i++) {
+            responder.put(getHash(i), 1);
+            requester.put(getHash(i), 1);
+        }
+        Optional<InvertibleBloomFilter.Difference> difference = responder.subtract(requester).decode();
+        assertTrue(difference.isPresent());
+        assertTrue(difference.get().getOnlyInThis().isEmpty());
+        assertTrue(difference.get().getOnlyInOther().isEmpty());
+    }
+
+    @Test
+    public void testDifferenceTooLarge() {
+        InvertibleBloomFilter responder = new InvertibleBloomFilter("test", 30, 1);
+        InvertibleBloomFilter requester = responder.createEmptyCopy();
+        for (int i = 0; i < 1000; i++) {
+            responder.put(getHash(i), 1);
+        }
+        assertFalse(responder.subtract(requester).decode().isPresent());
+    }
+
+    @Test
+    public void testSize() {
+        // The size depends on the expected difference, not on the number of items
+        InvertibleBloomFilter filter = new InvertibleBloomFilter("test", 100);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put(getHash(i), 1);
+        }
+        assertTrue(ObjectSerializer.serialize(filter).length < 8_000);
+    }
+
+    @Test
+    public void testSerialization() {
+        InvertibleBloomFilter filter = new InvertibleBloomFilter("test", 10);
+        filter.put(getHash(1), 1);
+        InvertibleBloomFilter deserialized = (InvertibleBloomFilter) ObjectSerializer.deserialize(ObjectSerializer.serialize(filter));
+        assertEquals(filter, deserialized);
+        Optional<InvertibleBloomFilter.Difference> difference = deserialized.subtract(filter.createEmptyCopy()).decode();
+        assertTrue(difference.isPresent());
+        assertEquals(1, difference.get().getOnlyInThis().size());
+    }
+
+    @Test
+    public void testCraftedTable() throws Exception {
+        // An item in only one of its cells would be peeled back and forth between both sides
+        InvertibleBloomFilter filter = new InvertibleBloomFilter("test", 30, 1);
+        filter.put(getHash(1), 1);
+        InvertibleBloomFilter crafted = filter.createEmptyCopy();
+        int cell = -1;
+        for (int i = 0; i < crafted.getNumCells(); i++) {
+            if (filter.getCounts()[i] != 0) {
+                cell = i;
+                break;
+            }
+        }
+        crafted.getCounts()[cell] = 1;
+        crafted.getChecksums()[cell] = filter.getChecksums()[cell];
+        System.arraycopy(filter.getItemSums(), cell * InvertibleBloomFilter.ITEM_SIZE,
+                crafted.getItemSums(), cell * InvertibleBloomFilter.ITEM_SIZE, InvertibleBloomFilter.ITEM_SIZE);
+
+        CompletableFuture<Boolean> future = CompletableFuture.supplyAsync(() -> crafted.decode().isPresent());
+        assertFalse(future.get(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.data.inventory;
+
+import misq.p2p.Address;
+import misq.p2p.data.filter.DataFilter;
+import misq.p2p.data.filter.ProtectedDataFilter;
+import misq.p2p.node.Connection;
+import misq.p2p.node.MockNode;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class InventoryResponseHandlerTest {
+    @Test
+    public void testInvalidFilterIsIgnored() {
+        MockNode node = new MockNode();
+        Address peer = Address.localHost(1001);
+        Connection connection = node.connect(peer);
+        List<DataFilter> requestedFilters = new ArrayList<>();
+        AtomicBoolean isComplete = new AtomicBoolean();
+        new InventoryResponseHandler(node, connection, filter -> {
+            requestedFilters.add(filter);
+            return new Inventory(new ArrayList<>(), 0);
+        }, () -> isComplete.set(true));
+
+        node.receive(new InventoryRequest(new ProtectedDataFilter("test", new HashSet<>(), 60, 50)), peer);
+        assertTrue(requestedFilters.isEmpty());
+        assertTrue(node.getSentMessages().isEmpty());
+        assertTrue(isComplete.get());
+    }
+
+    @Test
+    public void testIsValid() {
+        assertTrue(new ProtectedDataFilter("test", new HashSet<>()).isValid());
+        assertTrue(new ProtectedDataFilter("test", new HashSet<>(), 50, 50).isValid());
+        assertFalse(new ProtectedDataFilter("test", new HashSet<>(), 101, 0).isValid());
+        assertFalse(new ProtectedDataFilter("test", new HashSet<>(), 50, -1).isValid());
+        assertFalse(new ProtectedDataFilter("test", new HashSet<>(), 60, 50).isValid());
+    }
+}
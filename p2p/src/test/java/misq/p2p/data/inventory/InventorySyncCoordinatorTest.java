@@ -0,0 +1,134 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.data.inventory;
+
+import misq.p2p.Address;
+import misq.p2p.data.filter.DataFilter;
+import misq.p2p.data.filter.ProtectedDataFilter;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class InventorySyncCoordinatorTest {
+    private static DataFilter getFilter(int range, int offset) {
+        return new ProtectedDataFilter("test", new HashSet<>(), range, offset);
+    }
+
+    private static CompletableFuture<RequestInventoryResult> getResult() {
+        return CompletableFuture.completedFuture(new RequestInventoryResult(new Inventory(new ArrayList<>(), 0), 0));
+    }
+
+    @Test
+    public void testCreatePartitions() {
+        List<InventorySyncCoordinator.Partition> partitions = InventorySyncCoordinator.createPartitions(4);
+        assertEquals(4, partitions.size());
+        assertEquals(0, partitions.get(0).getOffset());
+        assertEquals(30, partitions.get(0).getRange());
+        assertEquals(20, partitions.get(1).getOffset());
+        assertEquals(35, partitions.get(1).getRange());
+        assertEquals(70, partitions.get(3).getOffset());
+        assertEquals(30, partitions.get(3).getRange());
+
+        partitions = InventorySyncCoordinator.createPartitions(1);
+        assertEquals(0, partitions.get(0).getOffset());
+        assertEquals(100, partitions.get(0).getRange());
+    }
+
+    @Test
+    public void testSync() throws Exception {
+        List<Address> peers = Arrays.asList(Address.localHost(1001), Address.localHost(1002), Address.localHost(1003));
+        List<Address> requested = new CopyOnWriteArrayList<>();
+        List<Inventory> merged = new CopyOnWriteArrayList<>();
+        InventorySyncCoordinator coordinator = new InventorySyncCoordinator((filter, address) -> {
+            requested.add(address);
+            return getResult();
+        }, InventorySyncCoordinatorTest::getFilter, merged::add);
+        InventorySyncResult result = coordinator.sync(peers).get(1, TimeUnit.SECONDS);
+        assertEquals(3, merged.size());
+        assertEquals(peers, requested);
+        assertEquals(0, result.getNumFailedPartitions());
+    }
+
+    @Test
+    public void testReassignment() throws Exception {
+        Address failing = Address.localHost(1001);
+        Address slow = Address.localHost(1002);
+        List<Address> peers = new ArrayList<>();
+        peers.add(failing);
+        peers.add(slow);
+        for (int i = 0; i < 4; i++) {
+            peers.add(Address.localHost(2000 + i));
+        }
+        Map<Address, DataFilter> filterByPeer = new HashMap<>();
+        List<Inventory> merged = new CopyOnWriteArrayList<>();
+        InventorySyncCoordinator coordinator = new InventorySyncCoordinator((filter, address) -> {
+            synchronized (filterByPeer) {
+                filterByPeer.put(address, filter);
+            }
+            if (address.equals(failing)) {
+                return CompletableFuture.failedFuture(new Exception("test"));
+            } else if (address.equals(slow)) {
+                return new CompletableFuture<>();
+            }
+            return getResult();
+        }, InventorySyncCoordinatorTest::getFilter, merged::add, 100);
+        InventorySyncResult result = coordinator.sync(peers).get(1, TimeUnit.SECONDS);
+        assertEquals(4, merged.size());
+        assertEquals(0, result.getNumFailedPartitions());
+        // The partitions of the failing and the slow peer got reassigned to the spare peers
+        assertEquals(filterByPeer.get(failing), filterByPeer.get(Address.localHost(2002)));
+        assertEquals(filterByPeer.get(slow), filterByPeer.get(Address.localHost(2003)));
+    }
+
+    @Test
+    public void testFailedPartition() throws Exception {
+        List<Address> peers = Arrays.asList(Address.localHost(1001), Address.localHost(1002));
+        InventorySyncCoordinator coordinator = new InventorySyncCoordinator((filter, address) ->
+                address.getPort() == 1001 ? CompletableFuture.failedFuture(new Exception("test")) : getResult(),
+                InventorySyncCoordinatorTest::getFilter, inventory -> {
+        });
+        InventorySyncResult result = coordinator.sync(peers).get(1, TimeUnit.SECONDS);
+        assertEquals(1, result.getNumFailedPartitions());
+        assertFalse(result.isComplete());
+        // The first partition was requested from the failing peer and there was no spare peer for a retry
+        assertEquals(0, result.getFailedPartitions().get(0).getOffset());
+        assertEquals(1, result.getFailedPartitions().get(0).getNumAttempts());
+    }
+
+    @Test
+    public void testAllPartitionsFailed() throws Exception {
+        List<Address> peers = Arrays.asList(Address.localHost(1001), Address.localHost(1002));
+        InventorySyncCoordinator coordinator = new InventorySyncCoordinator((filter, address) ->
+                CompletableFuture.failedFuture(new Exception("test")),
+                InventorySyncCoordinatorTest::getFilter, inventory -> {
+        });
+        try {
+            coordinator.sync(peers).get(1, TimeUnit.SECONDS);
+            fail("Expected exception");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+}
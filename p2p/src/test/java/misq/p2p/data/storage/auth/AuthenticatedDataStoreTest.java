@@ -23,7 +23,9 @@ import misq.common.security.DigestUtil;
 import misq.common.security.KeyPairGeneratorUtil;
 import misq.common.util.ObjectSerializer;
 import misq.common.util.OsUtils;
+import misq.p2p.data.filter.BloomFilter;
 import misq.p2p.data.filter.FilterItem;
+import misq.p2p.data.filter.InvertibleBloomFilter;
 import misq.p2p.data.filter.ProtectedDataFilter;
 import misq.p2p.data.inventory.Inventory;
 import misq.p2p.data.storage.MapKey;
@@ -226,4 +228,76 @@ public class AuthenticatedDataStoreTest {
         log.error("inventory size={}", ObjectSerializer.serialize(inventory).length); //inventory size=238601 for 333 items. 716 bytes per item
         // map with 1440 items: file: 1.068.599 bytes, inventory size=1000517 ,  maxItems=1400
     }
+
+    @Test
+    public void testGetInvWithRange() throws GeneralSecurityException, IOException {
+        MockAuthenticatedPayload data = new MockAuthenticatedPayload("test" + UUID.randomUUID().toString());
+        AuthenticatedDataStore store = new AuthenticatedDataStore(appDirPath, data.getMetaData());
+        KeyPair keyPair = KeyPairGeneratorUtil.generateKeyPair();
+        for (int i = 0; i < 10; i++) {
+            data = new MockAuthenticatedPayload("test" + UUID.randomUUID().toString());
+            assertTrue(store.add(AddAuthenticatedDataRequest.from(store, data, keyPair)).isSuccess());
+        }
+        String dataType = data.getMetaData().getFileName();
+        // Without a partition we get all entries
+        int size = store.getInventory(new ProtectedDataFilter(dataType, new HashSet<>())).getEntries().size();
+        assertTrue(size >= 10);
+        assertTrue(size <= store.getMaxItems());
+
+        // A partition gets applied even if all data would fit into the inventory
+        Inventory first = store.getInventory(new ProtectedDataFilter(dataType, new HashSet<>(), 50, 0));
+        Inventory second = store.getInventory(new ProtectedDataFilter(dataType, new HashSet<>(), 50, 50));
+        assertEquals(Util.getRangeSize(size, 0, 50), first.getEntries().size());
+        assertEquals(size - first.getEntries().size(), second.getEntries().size());
+        assertEquals(0, first.getNumDropped());
+        assertEquals(0, second.getNumDropped());
+
+        // The partitions are disjoint and the first one contains the older entries
+        Set<AuthenticatedDataRequest> all = new HashSet<>(first.getEntries());
+        all.addAll(second.getEntries());
+        assertEquals(size, all.size());
+        long newestOfFirst = first.getEntries().stream().mapToLong(AuthenticatedDataRequest::getCreated).max().orElseThrow();
+        long oldestOfSecond = second.getEntries().stream().mapToLong(AuthenticatedDataRequest::getCreated).min().orElseThrow();
+        assertTrue(newestOfFirst <= oldestOfSecond);
+    }
+
+    @Test
+    public void testGetInvWithBloomFilter() throws GeneralSecurityException, IOException {
+        MockAuthenticatedPayload data = new MockAuthenticatedPayload("test" + UUID.randomUUID().toString());
+        AuthenticatedDataStore store = new AuthenticatedDataStore(appDirPath, data.getMetaData());
+        KeyPair keyPair = KeyPairGeneratorUtil.generateKeyPair();
+        String dataType = data.getMetaData().getFileName();
+        BloomFilter bloomFilter = store.getBloomFilter(dataType, 0.0001);
+        assertTrue(store.getInventory(bloomFilter).getEntries().isEmpty());
+
+        // New entry is not in the filter
+        AddAuthenticatedDataRequest addRequest = AddAuthenticatedDataRequest.from(store, data, keyPair);
+        assertTrue(store.add(addRequest).isSuccess());
+        assertEquals(1, store.getInventory(bloomFilter).getEntries().size());
+
+        // Refreshed entry has a new sequence number
+        bloomFilter = store.getBloomFilter(dataType, 0.0001);
+        assertTrue(store.getInventory(bloomFilter).getEntries().isEmpty());
+        assertTrue(store.refresh(RefreshRequest.from(store, data, keyPair)).isSuccess());
+        assertEquals(1, store.getInventory(bloomFilter).getEntries().size());
+    }
+
+    @Test
+    public void testGetInvWithInvertibleBloomFilter() throws GeneralSecurityException, IOException {
+        MockAuthenticatedPayload data = new MockAuthenticatedPayload("test" + UUID.randomUUID().toString());
+        AuthenticatedDataStore store = new AuthenticatedDataStore(appDirPath, data.getMetaData());
+        KeyPair keyPair = KeyPairGeneratorUtil.generateKeyPair();
+        String dataType = data.getMetaData().getFileName();
+        InvertibleBloomFilter filter = store.getInvertibleBloomFilter(dataType, 10);
+        Inventory inventory = store.getInventory(filter);
+        assertFalse(inventory.isReconciliationFailed());
+        assertTrue(inventory.getEntries().isEmpty());
+
+        // New entry is only in our store
+        AddAuthenticatedDataRequest addRequest = AddAuthenticatedDataRequest.from(store, data, keyPair);
+        assertTrue(store.add(addRequest).isSuccess());
+        inventory = store.getInventory(filter);
+        assertEquals(1, inventory.getEntries().size());
+        assertEquals(addRequest, inventory.getEntries().get(0));
+    }
 }
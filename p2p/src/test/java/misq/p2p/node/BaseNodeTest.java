@@ -0,0 +1,87 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.node;
+
+import misq.common.util.NetworkUtils;
+import misq.common.util.OsUtils;
+import misq.p2p.Address;
+import misq.p2p.MockMessage;
+import misq.p2p.NetworkConfig;
+import misq.p2p.NetworkType;
+import misq.p2p.NodeId;
+import misq.p2p.message.Message;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class BaseNodeTest {
+    private static final long TIMEOUT = 5;
+
+    private final List<Node> nodes = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        nodes.forEach(Node::shutdown);
+    }
+
+    @Test
+    public void testRejectedResumptionTicket() throws Exception {
+        int port = NetworkUtils.findFreeSystemPort();
+        Address bobsAddress = Address.localHost(port);
+        Node alice = createNode(NetworkUtils.findFreeSystemPort(), Set.of(NetworkType.CLEAR));
+        Node bob = createNode(port, Set.of(NetworkType.CLEAR));
+        alice.send(new MockMessage("first"), bobsAddress).get(TIMEOUT, TimeUnit.SECONDS);
+
+        // Bob restarts with a new ticket secret and changed capability, so he rejects our ticket and sends his
+        // capability, which replaces the one we have cached.
+        bob.shutdown();
+        waitUntil(() -> !alice.findConnection(bobsAddress).isPresent());
+        Node restartedBob = createNode(port, Set.of(NetworkType.CLEAR, NetworkType.TOR));
+        BlockingQueue<Message> received = new LinkedBlockingQueue<>();
+        restartedBob.addMessageListener((message, connection) -> received.add(message));
+
+        Connection connection = alice.send(new MockMessage("second"), bobsAddress).get(TIMEOUT, TimeUnit.SECONDS);
+        assertEquals(new MockMessage("second"), received.poll(TIMEOUT, TimeUnit.SECONDS));
+        waitUntil(() -> connection.getCapability().getSupportedNetworkTypes().contains(NetworkType.TOR));
+    }
+
+    private Node createNode(int port, Set<NetworkType> networkTypes) throws Exception {
+        NetworkConfig networkConfig = new NetworkConfig(OsUtils.getUserDataDir().getAbsolutePath() + "/misq_BaseNodeTest",
+                new NodeId("default", port, networkTypes),
+                NetworkType.CLEAR);
+        Node node = new Node(networkConfig);
+        node.initializeServer("default", port).get(TIMEOUT, TimeUnit.SECONDS);
+        nodes.add(node);
+        return node;
+    }
+
+    private void waitUntil(Callable<Boolean> condition) throws Exception {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT);
+        while (!condition.call()) {
+            assertTrue("Condition not met within timeout", System.currentTimeMillis() < deadline);
+            Thread.sleep(20);
+        }
+    }
+}
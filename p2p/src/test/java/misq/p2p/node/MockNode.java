@@ -0,0 +1,205 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.node;
+
+import misq.common.util.OsUtils;
+import misq.common.util.Tuple2;
+import misq.p2p.Address;
+import misq.p2p.NetworkConfig;
+import misq.p2p.NetworkType;
+import misq.p2p.NodeId;
+import misq.p2p.message.Message;
+import misq.p2p.node.capability.Capability;
+import misq.p2p.node.connection.OutboundConnection;
+import misq.p2p.peers.PeerConfig;
+import misq.p2p.peers.exchange.PeerExchangeConfig;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.stream.Collectors;
+
+/**
+ * Node for unit tests without network. Sent messages are recorded and received messages and connections are
+ * injected by the test.
+ */
+public class MockNode extends Node {
+    private final Set<MessageListener> messageListeners = new CopyOnWriteArraySet<>();
+    private final Set<ConnectionListener> connectionListeners = new CopyOnWriteArraySet<>();
+    private final Map<Address, Connection> connectionByAddress = new ConcurrentHashMap<>();
+    private final List<Tuple2<Message, Address>> sentMessages = new CopyOnWriteArrayList<>();
+    private final List<Address> dialedAddresses = new CopyOnWriteArrayList<>();
+    private final Set<Address> unreachableAddresses = new CopyOnWriteArraySet<>();
+    // Connections closed via the Node API while disconnects are deferred. Like at the real node they stay
+    // connected until the close completes.
+    private final Set<Address> pendingDisconnects = new CopyOnWriteArraySet<>();
+    private volatile boolean deferDisconnects;
+    private volatile Optional<Address> myAddress = Optional.empty();
+
+    public MockNode() {
+        super(new NetworkConfig(OsUtils.getUserDataDir().getAbsolutePath() + "/misq_MockNode",
+                new NodeId("MockNode", 9999, Set.of(NetworkType.CLEAR)),
+                NetworkType.CLEAR,
+                new PeerConfig(new PeerExchangeConfig(), new ArrayList<>())));
+    }
+
+    public static Connection createConnection(Address address) {
+        try {
+            return new Connection(new OutboundConnection(new Socket(), address),
+                    NetworkType.CLEAR,
+                    "MockNode",
+                    new Capability(address, Set.of(NetworkType.CLEAR)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public Connection connect(Address address) {
+        Connection connection = connectionByAddress.computeIfAbsent(address, MockNode::createConnection);
+        connectionListeners.forEach(listener -> listener.onConnection(connection));
+        return connection;
+    }
+
+    public void disconnect(Address address) {
+        Connection connection = connectionByAddress.remove(address);
+        if (connection != null) {
+            connectionListeners.forEach(listener -> listener.onDisconnect(connection));
+        }
+    }
+
+    public void setMyAddress(Address myAddress) {
+        this.myAddress = Optional.of(myAddress);
+    }
+
+    public void setDeferDisconnects(boolean deferDisconnects) {
+        this.deferDisconnects = deferDisconnects;
+    }
+
+    public void completeDisconnects() {
+        pendingDisconnects.forEach(this::disconnect);
+        pendingDisconnects.clear();
+    }
+
+    public void setUnreachable(Address address) {
+        unreachableAddresses.add(address);
+    }
+
+    public List<Address> getDialedAddresses() {
+        return new ArrayList<>(dialedAddresses);
+    }
+
+    public int getNumMessageListeners() {
+        return messageListeners.size();
+    }
+
+    public void receive(Message message, Address sender) {
+        Connection connection = connectionByAddress.computeIfAbsent(sender, MockNode::createConnection);
+        messageListeners.forEach(listener -> listener.onMessage(message, connection));
+    }
+
+    public List<Tuple2<Message, Address>> getSentMessages() {
+        return new ArrayList<>(sentMessages);
+    }
+
+    public <T extends Message> List<Address> getReceivers(Class<T> messageClass) {
+        return sentMessages.stream()
+                .filter(tuple -> messageClass.isInstance(tuple.first))
+                .map(tuple -> tuple.second)
+                .collect(Collectors.toList());
+    }
+
+    public void clearSentMessages() {
+        sentMessages.clear();
+    }
+
+    @Override
+    public CompletableFuture<Connection> send(Message message, Address peerAddress) {
+        sentMessages.add(new Tuple2<>(message, peerAddress));
+        return CompletableFuture.completedFuture(connectionByAddress.computeIfAbsent(peerAddress,
+                MockNode::createConnection));
+    }
+
+    @Override
+    public CompletableFuture<Connection> send(Message message, Connection connection) {
+        sentMessages.add(new Tuple2<>(message, connection.getPeerAddress()));
+        return CompletableFuture.completedFuture(connection);
+    }
+
+    @Override
+    public CompletableFuture<Connection> getConnection(Address peerAddress) {
+        Connection connection = connectionByAddress.get(peerAddress);
+        if (connection != null) {
+            return CompletableFuture.completedFuture(connection);
+        }
+        dialedAddresses.add(peerAddress);
+        if (unreachableAddresses.contains(peerAddress)) {
+            return CompletableFuture.failedFuture(new IOException(peerAddress + " is unreachable"));
+        }
+        return CompletableFuture.completedFuture(connect(peerAddress));
+    }
+
+    @Override
+    public void disconnect(Connection connection) {
+        if (deferDisconnects) {
+            pendingDisconnects.add(connection.getPeerAddress());
+        } else {
+            disconnect(connection.getPeerAddress());
+        }
+    }
+
+    @Override
+    public Optional<Address> findMyAddress() {
+        return myAddress;
+    }
+
+    @Override
+    public Address getMyAddress() {
+        return myAddress.orElseThrow();
+    }
+
+    @Override
+    public Optional<Connection> findConnection(Address peerAddress) {
+        return Optional.ofNullable(connectionByAddress.get(peerAddress));
+    }
+
+    @Override
+    public void addMessageListener(MessageListener messageListener) {
+        messageListeners.add(messageListener);
+    }
+
+    @Override
+    public void removeMessageListener(MessageListener messageListener) {
+        messageListeners.remove(messageListener);
+    }
+
+    @Override
+    public void addConnectionListener(ConnectionListener connectionListener) {
+        connectionListeners.add(connectionListener);
+    }
+
+    @Override
+    public void removeConnectionListener(ConnectionListener connectionListener) {
+        connectionListeners.remove(connectionListener);
+    }
+}
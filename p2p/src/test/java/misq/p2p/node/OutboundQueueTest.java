@@ -0,0 +1,170 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.node;
+
+import misq.common.util.NetworkUtils;
+import misq.common.util.OsUtils;
+import misq.p2p.Address;
+import misq.p2p.MockMessage;
+import misq.p2p.NetworkConfig;
+import misq.p2p.NetworkType;
+import misq.p2p.NodeId;
+import misq.p2p.message.Message;
+import misq.p2p.node.protection.AccessToken;
+import misq.p2p.node.protection.GuardedMessage;
+import misq.p2p.node.protection.PermissionControl;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class OutboundQueueTest {
+    private static final long TIMEOUT = 5;
+
+    private final List<Node> nodes = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        nodes.forEach(Node::shutdown);
+    }
+
+    @Test
+    public void testOutboundQueue() throws Exception {
+        int port = NetworkUtils.findFreeSystemPort();
+        Node alice = createNode(NetworkUtils.findFreeSystemPort(), Set.of(NetworkType.CLEAR));
+        Node bob = createNode(port, Set.of(NetworkType.CLEAR));
+        BlockingQueue<Message> received = new LinkedBlockingQueue<>();
+        bob.addMessageListener((message, connection) -> received.add(message));
+
+        // All messages are sent before the handshake is completed and must arrive in order
+        Address bobsAddress = Address.localHost(port);
+        List<CompletableFuture<Connection>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(alice.send(new MockMessage("message" + i), bobsAddress));
+        }
+        for (int i = 0; i < 5; i++) {
+            assertEquals(new MockMessage("message" + i), received.poll(TIMEOUT, TimeUnit.SECONDS));
+        }
+        for (CompletableFuture<Connection> future : futures) {
+            assertEquals(bobsAddress, future.get(TIMEOUT, TimeUnit.SECONDS).getPeerAddress());
+        }
+    }
+
+    @Test
+    public void testOutboundQueueFailsIfPeerNotReachable() throws Exception {
+        Node alice = createNode(NetworkUtils.findFreeSystemPort(), Set.of(NetworkType.CLEAR));
+        CompletableFuture<Connection> future = alice.send(new MockMessage("test"),
+                Address.localHost(NetworkUtils.findFreeSystemPort()));
+        try {
+            future.get(TIMEOUT, TimeUnit.SECONDS);
+            fail("Expected an ExecutionException");
+        } catch (ExecutionException ignore) {
+        }
+    }
+
+    @Test
+    public void testOutboundQueueKeepsOrderIfPermitsCompleteOutOfOrder() throws Exception {
+        int port = NetworkUtils.findFreeSystemPort();
+        DeferredPermissionControl permissionControl = new DeferredPermissionControl();
+        Node alice = createNode(NetworkUtils.findFreeSystemPort(), permissionControl);
+        Node bob = createNode(port, new DeferredPermissionControl());
+        BlockingQueue<Message> received = new LinkedBlockingQueue<>();
+        bob.addMessageListener((message, connection) -> received.add(message));
+
+        Address bobsAddress = Address.localHost(port);
+        List<CompletableFuture<Connection>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            futures.add(alice.send(new MockMessage("message" + i), bobsAddress));
+        }
+        // The permit of the last message completes first
+        for (int i = 2; i >= 0; i--) {
+            permissionControl.permits.get(i).complete(new AccessToken());
+        }
+        for (int i = 0; i < 3; i++) {
+            assertEquals(new MockMessage("message" + i), received.poll(TIMEOUT, TimeUnit.SECONDS));
+        }
+        for (CompletableFuture<Connection> future : futures) {
+            assertEquals(bobsAddress, future.get(TIMEOUT, TimeUnit.SECONDS).getPeerAddress());
+        }
+    }
+
+    @Test
+    public void testFailedPermitDoesNotBlockLaterMessages() throws Exception {
+        int port = NetworkUtils.findFreeSystemPort();
+        DeferredPermissionControl permissionControl = new DeferredPermissionControl();
+        Node alice = createNode(NetworkUtils.findFreeSystemPort(), permissionControl);
+        Node bob = createNode(port, new DeferredPermissionControl());
+        BlockingQueue<Message> received = new LinkedBlockingQueue<>();
+        bob.addMessageListener((message, connection) -> received.add(message));
+
+        Address bobsAddress = Address.localHost(port);
+        CompletableFuture<Connection> first = alice.send(new MockMessage("first"), bobsAddress);
+        CompletableFuture<Connection> second = alice.send(new MockMessage("second"), bobsAddress);
+        permissionControl.permits.get(1).complete(new AccessToken());
+        permissionControl.permits.get(0).completeExceptionally(new Exception("No permit"));
+
+        assertEquals(new MockMessage("second"), received.poll(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(bobsAddress, second.get(TIMEOUT, TimeUnit.SECONDS).getPeerAddress());
+        assertTrue(first.isCompletedExceptionally());
+    }
+
+    private Node createNode(int port, Set<NetworkType> networkTypes) throws Exception {
+        return createNode(port, networkTypes, null);
+    }
+
+    private Node createNode(int port, PermissionControl permissionControl) throws Exception {
+        return createNode(port, Set.of(NetworkType.CLEAR), permissionControl);
+    }
+
+    private Node createNode(int port, Set<NetworkType> networkTypes, PermissionControl permissionControl) throws Exception {
+        NetworkConfig networkConfig = new NetworkConfig(OsUtils.getUserDataDir().getAbsolutePath() + "/misq_OutboundQueueTest",
+                new NodeId("default", port, networkTypes),
+                NetworkType.CLEAR);
+        Node node = permissionControl != null ? new Node(networkConfig, permissionControl) : new Node(networkConfig);
+        node.initializeServer("default", port).get(TIMEOUT, TimeUnit.SECONDS);
+        nodes.add(node);
+        return node;
+    }
+
+    // Hands out permits which are completed by the test
+    private static class DeferredPermissionControl implements PermissionControl {
+        private final List<CompletableFuture<AccessToken>> permits = new CopyOnWriteArrayList<>();
+
+        @Override
+        public boolean hasPermit(GuardedMessage guardedMessage) {
+            return true;
+        }
+
+        @Override
+        public CompletableFuture<AccessToken> getPermit(Message message) {
+            CompletableFuture<AccessToken> permit = new CompletableFuture<>();
+            permits.add(permit);
+            return permit;
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.node.capability;
+
+import misq.p2p.Address;
+import misq.p2p.node.connection.OutboundConnection;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import static org.junit.Assert.*;
+
+public class ResumptionTicketIssuerTest {
+    private final Address address = Address.localHost(1000);
+
+    @Test
+    public void testIssueAndVerify() {
+        ResumptionTicketIssuer issuer = new ResumptionTicketIssuer();
+        ResumptionTicket ticket = issuer.issue(address).orElseThrow();
+        assertTrue(issuer.isValid(ticket, address));
+        assertFalse(issuer.isValid(ticket, Address.localHost(1001)));
+        // After a restart we have a new secret key
+        assertFalse(new ResumptionTicketIssuer().isValid(ticket, address));
+    }
+
+    @Test
+    public void testExpiry() {
+        ResumptionTicketIssuer issuer = new ResumptionTicketIssuer(-1);
+        ResumptionTicket ticket = issuer.issue(address).orElseThrow();
+        assertTrue(ticket.isExpired());
+        assertFalse(issuer.isValid(ticket, address));
+    }
+
+    @Test
+    public void testTampering() {
+        ResumptionTicketIssuer issuer = new ResumptionTicketIssuer();
+        ResumptionTicket ticket = issuer.issue(address).orElseThrow();
+
+        ResumptionTicket extended = new ResumptionTicket(ticket.getHmac(), ticket.getExpiryDate() + 1);
+        assertFalse(issuer.isValid(extended, address));
+
+        byte[] hmac = ticket.getHmac().clone();
+        hmac[0] ^= 1;
+        assertFalse(issuer.isValid(new ResumptionTicket(hmac, ticket.getExpiryDate()), address));
+    }
+
+    @Test
+    public void testUnconnectedSocketDoesNotProveAddress() throws IOException {
+        OutboundConnection connection = new OutboundConnection(new Socket(), address);
+        assertFalse(ResumptionTicketIssuer.isAddressProven(address, connection));
+    }
+
+    // Over Tor or I2P the socket comes from the local proxy, so the claimed address is never proven and no ticket
+    // gets issued or accepted. Those peers always do the full handshake.
+    @Test
+    public void testNoResumptionOverProxy() throws IOException {
+        try (ServerSocket proxy = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+             Socket socket = new Socket(InetAddress.getLoopbackAddress(), proxy.getLocalPort())) {
+            Address onionAddress = new Address("abcdefghijklmnop.onion", 9999);
+            assertFalse(ResumptionTicketIssuer.isAddressProven(onionAddress, new OutboundConnection(socket, onionAddress)));
+
+            Address clearNetAddress = Address.localHost(proxy.getLocalPort());
+            assertTrue(ResumptionTicketIssuer.isAddressProven(clearNetAddress, new OutboundConnection(socket, clearNetAddress)));
+        }
+    }
+}
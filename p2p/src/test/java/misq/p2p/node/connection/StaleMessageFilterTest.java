@@ -0,0 +1,78 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.node.connection;
+
+import misq.p2p.data.storage.MapKey;
+import misq.p2p.message.ExpirableMessage;
+import misq.p2p.message.SupersedeKey;
+import org.junit.Test;
+
+import java.util.Optional;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StaleMessageFilterTest {
+    private static class MockExpirableMessage implements ExpirableMessage {
+        private final long deadline;
+        private final SupersedeKey supersedeKey;
+
+        private MockExpirableMessage(long deadline, int sequenceNumber) {
+            this.deadline = deadline;
+            supersedeKey = new SupersedeKey(new MapKey(new byte[]{1}), sequenceNumber);
+        }
+
+        @Override
+        public long getDeadline() {
+            return deadline;
+        }
+
+        @Override
+        public Optional<SupersedeKey> getSupersedeKey() {
+            return Optional.of(supersedeKey);
+        }
+    }
+
+    @Test
+    public void testExpired() {
+        StaleMessageFilter filter = new StaleMessageFilter();
+        MockExpirableMessage expired = new MockExpirableMessage(System.currentTimeMillis() - 1, 1);
+        filter.onQueued(expired);
+        assertTrue(filter.isStale(expired));
+        MockExpirableMessage notExpiring = new MockExpirableMessage(0, 1);
+        assertFalse(filter.isStale(notExpiring));
+    }
+
+    @Test
+    public void testSuperseded() {
+        StaleMessageFilter filter = new StaleMessageFilter();
+        MockExpirableMessage version1 = new MockExpirableMessage(0, 1);
+        MockExpirableMessage version2 = new MockExpirableMessage(0, 2);
+        filter.onQueued(version1);
+        filter.onQueued(version2);
+        assertTrue(filter.isStale(version1));
+        filter.onDequeued(version1);
+        assertFalse(filter.isStale(version2));
+        filter.onDequeued(version2);
+
+        // After the latest version got sent an older one is not considered stale anymore
+        filter.onQueued(version1);
+        assertFalse(filter.isStale(version1));
+    }
+}
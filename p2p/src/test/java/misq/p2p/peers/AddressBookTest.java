@@ -0,0 +1,136 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.peers;
+
+import misq.common.util.OsUtils;
+import misq.p2p.Address;
+import misq.p2p.NetworkType;
+import misq.p2p.node.capability.Capability;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class AddressBookTest {
+    @Test
+    public void testPersistence() {
+        String storageFilePath = OsUtils.getUserDataDir().getAbsolutePath() + "/misq_AddressBookTest/AddressBook";
+        new File(storageFilePath).delete();
+        new File(storageFilePath + "_journal").delete();
+
+        Address address = Address.localHost(1001);
+        Peer peer = new Peer(new Capability(address, Set.of(NetworkType.CLEAR)));
+        AddressBook addressBook = new AddressBook(storageFilePath);
+        PeerScore peerScore = new PeerScore();
+        peerScore.onConnectAttempt(true, 100);
+        addressBook.onConnection(peer, peerScore);
+        addressBook.shutdown();
+
+        AddressBook loaded = new AddressBook(storageFilePath);
+        AddressBook.Entry entry = loaded.findEntry(address).orElseThrow();
+        assertEquals(peer, entry.getPeer());
+        assertEquals(1, entry.getPeerScore().getNumConnectSuccesses());
+        assertTrue(entry.getLastSuccess() > 0);
+        loaded.shutdown();
+    }
+
+    @Test
+    public void testJournal() {
+        String storageFilePath = OsUtils.getUserDataDir().getAbsolutePath() + "/misq_AddressBookTest/AddressBookJournal";
+        new File(storageFilePath).delete();
+        new File(storageFilePath + "_journal").delete();
+
+        Address address1 = Address.localHost(1001);
+        Address address2 = Address.localHost(1002);
+        AddressBook addressBook = new AddressBook(storageFilePath);
+        addressBook.onConnection(new Peer(new Capability(address1, Set.of(NetworkType.CLEAR))), new PeerScore());
+        addressBook.shutdown();
+
+        // Only the changed entry gets appended, the snapshot is not written
+        addressBook = new AddressBook(storageFilePath);
+        addressBook.onConnection(new Peer(new Capability(address2, Set.of(NetworkType.CLEAR))), new PeerScore());
+        addressBook.shutdown();
+        assertFalse(new File(storageFilePath).exists());
+        assertTrue(new File(storageFilePath + "_journal").exists());
+
+        AddressBook loaded = new AddressBook(storageFilePath);
+        assertTrue(loaded.findEntry(address1).isPresent());
+        assertTrue(loaded.findEntry(address2).isPresent());
+        loaded.shutdown();
+    }
+
+    @Test
+    public void testCompaction() {
+        String storageFilePath = OsUtils.getUserDataDir().getAbsolutePath() + "/misq_AddressBookTest/AddressBookCompaction";
+        new File(storageFilePath).delete();
+        new File(storageFilePath + "_journal").delete();
+
+        // More changes than fit into the journal get compacted into the snapshot
+        AddressBook addressBook = new AddressBook(storageFilePath);
+        addPeers(addressBook, 1001);
+        addressBook.shutdown();
+        assertTrue(new File(storageFilePath).exists());
+        assertFalse(new File(storageFilePath + "_journal").exists());
+        assertFalse(new File(storageFilePath + "_tmp").exists());
+
+        AddressBook loaded = new AddressBook(storageFilePath);
+        assertEquals(1000, loaded.getEntries().size());
+        loaded.shutdown();
+    }
+
+    @Test
+    public void testFailedCompactionKeepsJournal() throws Exception {
+        String storageFilePath = OsUtils.getUserDataDir().getAbsolutePath() + "/misq_AddressBookTest/AddressBookFailedCompaction";
+        new File(storageFilePath).delete();
+        new File(storageFilePath + "_journal").delete();
+
+        AddressBook addressBook = new AddressBook(storageFilePath);
+        Address address = Address.localHost(1001);
+        addressBook.onConnection(new Peer(new Capability(address, Set.of(NetworkType.CLEAR))), new PeerScore());
+        addressBook.shutdown();
+
+        // A directory at the path of the temp file lets the snapshot write fail
+        File tempFile = new File(storageFilePath + "_tmp");
+        File blocker = new File(tempFile, "blocker");
+        assertTrue(blocker.mkdirs());
+        try {
+            addressBook = new AddressBook(storageFilePath);
+            addPeers(addressBook, 1001);
+            addressBook.shutdown();
+            assertFalse(new File(storageFilePath).exists());
+            assertTrue(new File(storageFilePath + "_journal").exists());
+
+            AddressBook loaded = new AddressBook(storageFilePath);
+            assertTrue(loaded.findEntry(address).isPresent());
+            loaded.shutdown();
+        } finally {
+            blocker.delete();
+            tempFile.delete();
+        }
+    }
+
+    private void addPeers(AddressBook addressBook, int numPeers) {
+        for (int i = 0; i < numPeers; i++) {
+            Address address = Address.localHost(2000 + i);
+            addressBook.onConnection(new Peer(new Capability(address, Set.of(NetworkType.CLEAR))), new PeerScore());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.peers;
+
+import misq.p2p.Address;
+import org.junit.Test;
+
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ConnectionDiversityTest {
+    @Test
+    public void testAddressGroups() {
+        // Ordered by score. 3 peers in 10.1/16 and 2 in 10.2/16.
+        Address a1 = new Address("10.1.0.1", 8000);
+        Address a2 = new Address("10.1.0.2", 8000);
+        Address a3 = new Address("10.1.0.3", 8000);
+        Address b1 = new Address("10.2.0.1", 8000);
+        Address c1 = new Address("10.3.0.1", 8000);
+        List<Address> candidates = List.of(a1, a2, a3, b1, c1);
+
+        // The 2 best are reserved, a3 would be the 3rd in 10.1/16
+        assertEquals(List.of(a1, a2, b1), ConnectionDiversity.select(candidates, List.of(), 3));
+        // If not enough diverse candidates are available we fill up
+        assertEquals(List.of(a1, a2, b1, c1, a3), ConnectionDiversity.select(candidates, List.of(), 5));
+        // Existing connections count for the groups
+        Address d1 = new Address("10.4.0.1", 8000);
+        assertEquals(List.of(b1, c1, d1), ConnectionDiversity.select(List.of(b1, c1, a3, d1), List.of(a1, a2), 3));
+        // Duplicates are ignored
+        assertEquals(List.of(a1, a2, b1, c1, a3), ConnectionDiversity.select(List.of(a1, a1, a2, a3, a3, b1, c1), List.of(), 6));
+    }
+
+    @Test
+    public void testReservedSlotsCountExistingConnections() {
+        Address a1 = new Address("10.1.0.1", 8000);
+        Address a2 = new Address("10.1.0.2", 8000);
+        Address a3 = new Address("10.1.0.3", 8000);
+        Address b1 = new Address("10.2.0.1", 8000);
+        // Our existing connections fill the reserved slots, so a3 would be the 3rd in 10.1/16
+        assertEquals(List.of(b1), ConnectionDiversity.select(List.of(a3, b1), List.of(a1, a2), 1));
+
+        // If a3 scores better than our existing connections it gets a reserved slot
+        List<Address> byScore = List.of(a3, a1, a2, b1);
+        assertEquals(List.of(a3), ConnectionDiversity.select(List.of(a3, b1), List.of(a1, a2), 1,
+                Comparator.comparing(byScore::indexOf)));
+        // Only one reserved slot is left for candidates, as a1 scores better than a4
+        Address a4 = new Address("10.1.0.4", 8000);
+        byScore = List.of(a3, a1, a4, a2, b1);
+        assertEquals(List.of(a3, b1), ConnectionDiversity.select(List.of(a3, a4, b1), List.of(a1, a2), 2,
+                Comparator.comparing(byScore::indexOf)));
+    }
+
+    @Test
+    public void testNetworkTypes() {
+        Address clear1 = new Address("10.1.0.1", 8000);
+        Address clear2 = new Address("10.2.0.1", 8000);
+        Address clear3 = new Address("10.3.0.1", 8000);
+        Address clear4 = new Address("10.4.0.1", 8000);
+        Address tor = new Address("abc.onion", 8000);
+        List<Address> candidates = List.of(clear1, clear2, clear3, clear4, tor);
+        // Max. 67% of 3 = 2 clear net connections as we have a Tor candidate
+        assertEquals(List.of(clear1, clear2, tor), ConnectionDiversity.select(candidates, List.of(), 3));
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.peers;
+
+import misq.p2p.Address;
+import misq.p2p.node.MockNode;
+import misq.p2p.peers.exchange.PeerExchangeConfig;
+import misq.p2p.peers.exchange.PeerExchangeGraph;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+
+public class NetworkSizeEstimatorTest {
+    private static Set<Address> getAddresses(int from, int to) {
+        return IntStream.range(from, to).mapToObj(Address::localHost).collect(Collectors.toSet());
+    }
+
+    @Test
+    public void testEstimate() {
+        // No samples
+        assertEquals(5, NetworkSizeEstimator.estimate(new ArrayList<>(), 5));
+
+        // 2 samples of 20 out of 100 addresses with an overlap of 4
+        List<Set<Address>> samples = List.of(getAddresses(0, 20), getAddresses(16, 36));
+        assertEquals(100, NetworkSizeEstimator.estimate(samples, 36));
+
+        // We never estimate less than the known addresses
+        assertEquals(150, NetworkSizeEstimator.estimate(samples, 150));
+
+        // No overlap
+        samples = List.of(getAddresses(0, 20), getAddresses(20, 40));
+        assertEquals(40, NetworkSizeEstimator.estimate(samples, 40));
+    }
+
+    @Test
+    public void testOwnExchangesAreNoSample() {
+        MockNode node = new MockNode();
+        Address myAddress = Address.localHost(9999);
+        node.setMyAddress(myAddress);
+        PeerGroup peerGroup = new PeerGroup(node, new PeerConfig(new PeerExchangeConfig(), new ArrayList<>()), 9999);
+        PeerExchangeGraph graph = peerGroup.getPeerExchangeGraph();
+        Address reporter = Address.localHost(1);
+        getAddresses(100, 120).forEach(address -> graph.add(reporter, address));
+        // Our own exchanges overlap with the reported peers, which would result in an estimate of 100
+        getAddresses(116, 136).forEach(address -> graph.add(myAddress, address));
+
+        // reporter, 36 addresses and ourself
+        assertEquals(38, new NetworkSizeEstimator(peerGroup).estimate());
+    }
+}
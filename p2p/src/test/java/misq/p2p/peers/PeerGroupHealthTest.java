@@ -0,0 +1,115 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.peers;
+
+import misq.p2p.Address;
+import misq.p2p.node.MockNode;
+import misq.p2p.peers.exchange.AddressCooldown;
+import misq.p2p.peers.exchange.PeerExchangeConfig;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class PeerGroupHealthTest {
+    private MockNode node;
+    private PeerGroupHealth peerGroupHealth;
+
+    @After
+    public void tearDown() {
+        peerGroupHealth.shutdown();
+    }
+
+    @Test
+    public void testTopUpRespectsCooldown() {
+        Address seed1 = Address.localHost(1001);
+        Address seed2 = Address.localHost(1002);
+        Address seed3 = Address.localHost(1003);
+        PeerGroup peerGroup = createPeerGroup(List.of(seed1, seed2, seed3), 3);
+        AddressCooldown addressCooldown = peerGroup.getAddressCooldown();
+        // seed1 asked us to retry later, seed2 is not reachable
+        addressCooldown.onRetryAfter(seed1, 60_000);
+        node.setUnreachable(seed2);
+
+        peerGroupHealth.maintain();
+        assertEquals(Set.of(seed2, seed3), Set.copyOf(node.getDialedAddresses()));
+        assertEquals(Set.of(seed3), peerGroup.getConnectedPeerAddresses());
+        assertFalse(addressCooldown.isAvailable(seed2));
+
+        // Both remain in cooldown at the next run
+        peerGroupHealth.maintain();
+        assertEquals(2, node.getDialedAddresses().size());
+    }
+
+    @Test
+    public void testRotationKeepsBestPeers() {
+        PeerGroup peerGroup = createPeerGroup(new ArrayList<>(), 2);
+        Address best1 = Address.localHost(1001);
+        Address best2 = Address.localHost(1002);
+        Address other = Address.localHost(1003);
+        PeerScores peerScores = peerGroup.getPeerScores();
+        for (int i = 0; i < 5; i++) {
+            peerScores.onOutboundConnectionAttempt(best1, true, 100);
+            peerScores.onOutboundConnectionAttempt(best2, true, 100);
+        }
+        node.connect(best1);
+        node.connect(best2);
+        for (int i = 0; i < 20; i++) {
+            node.connect(other);
+            peerGroupHealth.maintain();
+            assertEquals(Set.of(best1, best2), peerGroup.getConnectedPeerAddresses());
+        }
+    }
+
+    @Test
+    public void testTopUpReplacesRotatedPeers() {
+        Address seed = Address.localHost(1004);
+        PeerGroup peerGroup = createPeerGroup(List.of(seed), 3);
+        Address best1 = Address.localHost(1001);
+        Address best2 = Address.localHost(1002);
+        Address other = Address.localHost(1003);
+        PeerScores peerScores = peerGroup.getPeerScores();
+        for (int i = 0; i < 5; i++) {
+            peerScores.onOutboundConnectionAttempt(best1, true, 100);
+            peerScores.onOutboundConnectionAttempt(best2, true, 100);
+        }
+        node.connect(best1);
+        node.connect(best2);
+        node.connect(other);
+
+        // The rotated peer is still connected while its connection gets closed, but must not count at the top up
+        node.setDeferDisconnects(true);
+        peerGroupHealth.maintain();
+        assertEquals(List.of(seed), node.getDialedAddresses());
+        node.completeDisconnects();
+        assertEquals(Set.of(best1, best2, seed), peerGroup.getConnectedPeerAddresses());
+    }
+
+    private PeerGroup createPeerGroup(List<Address> seeds, int minNumConnectedPeers) {
+        node = new MockNode();
+        PeerConfig peerConfig = new PeerConfig(new PeerExchangeConfig(), seeds, minNumConnectedPeers, 12, 1);
+        PeerGroup peerGroup = new PeerGroup(node, peerConfig, 9999);
+        peerGroupHealth = new PeerGroupHealth(node, peerGroup, peerConfig, 0);
+        return peerGroup;
+    }
+}
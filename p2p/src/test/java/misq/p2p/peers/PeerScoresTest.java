@@ -0,0 +1,91 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.peers;
+
+import misq.p2p.Address;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class PeerScoresTest {
+    @Test
+    public void testScore() {
+        PeerScores peerScores = new PeerScores();
+        Address reliable = Address.localHost(1001);
+        Address unknown = Address.localHost(1002);
+        Address unreliable = Address.localHost(1003);
+        Address slow = Address.localHost(1004);
+        for (int i = 0; i < 5; i++) {
+            peerScores.onOutboundConnectionAttempt(reliable, true, 100);
+            peerScores.onOutboundConnectionAttempt(unreliable, false, 100);
+            peerScores.onOutboundConnectionAttempt(slow, true, 20_000);
+        }
+        List<Address> sorted = peerScores.sortByScore(Arrays.asList(unreliable, unknown, slow, reliable));
+        assertEquals(Arrays.asList(reliable, slow, unknown, unreliable), sorted);
+
+        peerScores.penalize(reliable, PeerScores.PENALTY_INVALID_DATA);
+        assertTrue(peerScores.getScore(reliable) < peerScores.getScore(unreliable));
+    }
+
+    @Test
+    public void testSelectBest() {
+        PeerScores peerScores = new PeerScores();
+        assertFalse(peerScores.selectBest(Arrays.asList()).isPresent());
+        Address address = Address.localHost(1001);
+        assertEquals(address, peerScores.selectBest(Arrays.asList(address)).orElseThrow());
+    }
+
+    @Test
+    public void testByScoreUsesSnapshot() {
+        PeerScores peerScores = new PeerScores();
+        Address first = Address.localHost(1001);
+        Address second = Address.localHost(1002);
+        peerScores.onOutboundConnectionAttempt(first, true, 100);
+        Comparator<Address> byScore = peerScores.byScore();
+        assertTrue(byScore.compare(first, second) < 0);
+
+        // Score changes during a sort do not change the order of that comparator
+        peerScores.penalize(first, PeerScores.PENALTY_INVALID_DATA);
+        assertTrue(byScore.compare(first, second) < 0);
+        assertTrue(peerScores.byScore().compare(first, second) > 0);
+    }
+
+    @Test
+    public void testEviction() {
+        PeerScores peerScores = new PeerScores();
+        Address reliable = Address.localHost(1);
+        Address penalized = Address.localHost(2);
+        peerScores.onOutboundConnectionAttempt(reliable, true, 100);
+        peerScores.penalize(penalized, PeerScores.PENALTY_INVALID_MESSAGE);
+        for (int i = 0; i < PeerScores.MAX_SIZE + 100; i++) {
+            peerScores.getPeerScore(Address.localHost(10_000 + i));
+        }
+        assertTrue(peerScores.size() <= PeerScores.MAX_SIZE);
+        Map<Address, PeerScore> scoreByAddress = peerScores.getScoreByAddress();
+        assertTrue(scoreByAddress.containsKey(reliable));
+        assertTrue(scoreByAddress.containsKey(penalized));
+        // The last added entry is never evicted
+        assertTrue(scoreByAddress.containsKey(Address.localHost(10_000 + PeerScores.MAX_SIZE + 99)));
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.peers;
+
+import misq.p2p.Address;
+import misq.p2p.NetworkType;
+import misq.p2p.node.capability.Capability;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ReportedPeersTest {
+    private static Peer getPeer(String host, int port) {
+        return new Peer(new Capability(new Address(host, port), Set.of(NetworkType.CLEAR)));
+    }
+
+    @Test
+    public void testAddAndRemove() {
+        ReportedPeers reportedPeers = new ReportedPeers();
+        Address source = new Address("10.0.0.1", 8000);
+        Peer peer = getPeer("10.1.0.1", 8000);
+        assertTrue(reportedPeers.add(peer, source));
+        // Same address reported again does not create a duplicate
+        assertTrue(reportedPeers.add(peer, new Address("10.2.0.1", 8000)));
+        assertEquals(1, reportedPeers.size());
+        assertTrue(reportedPeers.contains(peer.getAddress()));
+        reportedPeers.remove(peer.getAddress());
+        assertEquals(0, reportedPeers.size());
+        assertFalse(reportedPeers.contains(peer.getAddress()));
+    }
+
+    @Test
+    public void testSpamFromSingleSourceIsBounded() {
+        ReportedPeers reportedPeers = new ReportedPeers();
+        Address spammer = new Address("10.0.0.1", 8000);
+        for (int i = 0; i < 10_000; i++) {
+            reportedPeers.add(getPeer("11." + (i / 256) + "." + (i % 256) + ".1", 8000), spammer);
+        }
+        // A single source group can only use 8 buckets of 64 slots
+        assertTrue(reportedPeers.size() <= 8 * 64);
+
+        // Peers from other sources are still accepted
+        Peer peer = getPeer("12.0.0.1", 8000);
+        reportedPeers.add(peer, new Address("10.1.0.1", 8000));
+        assertTrue(reportedPeers.contains(peer.getAddress()));
+    }
+
+    @Test
+    public void testReReportKeepsAddedTime() {
+        ReportedPeers reportedPeers = new ReportedPeers();
+        Address spammer = new Address("10.0.0.1", 8000);
+        long now = System.currentTimeMillis();
+        List<Peer> rejected = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            Peer peer = getPeer("11." + (i / 256) + "." + (i % 256) + ".1", 8000);
+            if (!reportedPeers.add(peer, spammer, now)) {
+                rejected.add(peer);
+            }
+        }
+        assertFalse(rejected.isEmpty());
+
+        // Re-reporting does not make the entries young again, so they can still be evicted
+        long later = now + ReportedPeers.MIN_AGE_FOR_EVICTION;
+        reportedPeers.getAll().forEach(peer -> reportedPeers.add(peer, spammer, later));
+        assertTrue(reportedPeers.add(rejected.get(0), spammer, later));
+    }
+
+    @Test
+    public void testSample() {
+        ReportedPeers reportedPeers = new ReportedPeers();
+        Address source = new Address("10.0.0.1", 8000);
+        for (int i = 0; i < 20; i++) {
+            reportedPeers.add(getPeer("11.0.0." + i, 8000), source);
+        }
+        int size = reportedPeers.size();
+        List<Peer> sample = reportedPeers.sample(10);
+        assertEquals(Math.min(10, size), sample.size());
+        assertEquals(sample.size(), new HashSet<>(sample).size());
+        assertEquals(size, reportedPeers.sample(100).size());
+        assertEquals(size, reportedPeers.getAll().size());
+    }
+
+    @Test
+    public void testGroup() {
+        assertEquals("10.1", ReportedPeers.getGroup(new Address("10.1.2.3", 8000)));
+        assertEquals("abc.onion", ReportedPeers.getGroup(new Address("abc.onion", 8000)));
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.peers.exchange;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BackoffTest {
+    @Test
+    public void testBackoff() {
+        Backoff backoff = new Backoff(1000, 10_000);
+        assertDelay(1000, backoff.getNextDelay());
+        assertDelay(2000, backoff.getNextDelay());
+        assertDelay(4000, backoff.getNextDelay());
+        assertDelay(8000, backoff.getNextDelay());
+        assertDelay(10_000, backoff.getNextDelay());
+        for (int i = 0; i < 100; i++) {
+            assertDelay(10_000, backoff.getNextDelay());
+        }
+        backoff.reset();
+        assertDelay(1000, backoff.getNextDelay());
+    }
+
+    // We allow 25% jitter
+    private static void assertDelay(long expected, long delay) {
+        assertTrue(delay >= expected * 0.75 && delay <= expected * 1.25);
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.peers.exchange;
+
+import misq.p2p.Address;
+import misq.p2p.NetworkType;
+import misq.p2p.node.capability.Capability;
+import misq.p2p.peers.Peer;
+import org.junit.Test;
+
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class CompactPeerEncodingTest {
+    @Test
+    public void testRoundTrip() {
+        // Full minutes as we encode the date in minutes
+        long created = 1_599_999_960_000L;
+        Peer clearNetPeer = new Peer(new Capability(new Address("10.1.2.3", 8000),
+                Set.of(NetworkType.CLEAR, NetworkType.TOR)), created);
+        Peer torPeer = new Peer(new Capability(
+                new Address("z2d7v3wgplpe3oagvwsq2xbgcpmhjwnvy6zadjkbwrqmqxqszyqdquyd.onion", 9999),
+                Set.of(NetworkType.TOR)), created);
+        Set<Peer> peers = Set.of(clearNetPeer, torPeer);
+
+        byte[] encoded = CompactPeerEncoding.encode(peers);
+        assertEquals(4 + 12 + 72, encoded.length);
+        Set<Peer> decoded = CompactPeerEncoding.decode(encoded);
+        assertEquals(peers, decoded);
+        decoded.forEach(peer -> assertEquals(created, peer.getCreated()));
+    }
+
+    @Test
+    public void testInvalidData() {
+        assertTrue(CompactPeerEncoding.decode(new byte[]{0, 0, 0, 5, 1}).isEmpty());
+        assertTrue(CompactPeerEncoding.decode(new byte[]{127, 0, 0, 0}).isEmpty());
+    }
+}
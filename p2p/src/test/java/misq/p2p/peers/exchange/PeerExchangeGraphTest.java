@@ -0,0 +1,107 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.peers.exchange;
+
+import misq.p2p.Address;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class PeerExchangeGraphTest {
+    @Test
+    public void testTopology() {
+        // Triangle 1-2-3 with a path 3-4-5
+        PeerExchangeGraph graph = new PeerExchangeGraph();
+        Address a1 = Address.localHost(1001);
+        Address a2 = Address.localHost(1002);
+        Address a3 = Address.localHost(1003);
+        Address a4 = Address.localHost(1004);
+        Address a5 = Address.localHost(1005);
+        graph.add(a1, a2);
+        graph.add(a2, a3);
+        graph.add(a3, a1);
+        // Same edge in other direction does not add an undirected edge
+        graph.add(a1, a3);
+        graph.add(a3, a4);
+        graph.add(a4, a5);
+
+        assertEquals(5, graph.getNodes().size());
+        assertEquals(5, graph.getNumEdges());
+        assertEquals(Map.of(1, 1, 2, 3, 3, 1), graph.getDegreeDistribution());
+        assertEquals(2.0, graph.getAverageDegree(), 0.0001);
+        // Nodes with >= 2 neighbors: 1 (1.0), 2 (1.0), 3 (1/3), 4 (0)
+        assertEquals((1 + 1 + 1 / 3d + 0) / 4, graph.getClusteringCoefficient(), 0.0001);
+        assertEquals(3, graph.estimateDiameter());
+
+        TopologyStats stats = graph.getTopologyStats();
+        assertEquals(3, stats.getEstimatedDiameter());
+        String json = graph.toJson();
+        assertTrue(json.startsWith("{\"edges\":[{"));
+        assertTrue(json.contains("\"estimatedDiameter\":3"));
+        assertTrue(json.contains("\"degreeDistribution\":{\"1\":1,\"2\":3,\"3\":1}"));
+    }
+
+    @Test
+    public void testLimits() {
+        PeerExchangeGraph graph = new PeerExchangeGraph();
+        Address source = Address.localHost(1000);
+        for (int i = 0; i < PeerExchangeGraph.MAX_NUM_TARGETS_PER_SOURCE + 10; i++) {
+            graph.add(source, Address.localHost(2000 + i));
+        }
+        assertEquals(PeerExchangeGraph.MAX_NUM_TARGETS_PER_SOURCE, graph.getNeighbors(source).size());
+
+        for (int i = 0; graph.getNodes().size() < PeerExchangeGraph.MAX_NUM_NODES; i++) {
+            graph.add(Address.localHost(i % PeerExchangeGraph.MAX_NUM_SOURCES), new Address("10.0.0.1", i));
+        }
+        graph.add(Address.localHost(1), new Address("10.0.0.2", 1));
+        assertEquals(PeerExchangeGraph.MAX_NUM_NODES, graph.getNodes().size());
+    }
+
+    @Test
+    public void testSampledClusteringCoefficient() {
+        // Complete graph, so each pair of neighbors is linked
+        PeerExchangeGraph graph = new PeerExchangeGraph();
+        int numNodes = 60;
+        for (int i = 0; i < numNodes; i++) {
+            for (int j = i + 1; j < numNodes; j++) {
+                graph.add(Address.localHost(1000 + i), Address.localHost(1000 + j));
+            }
+        }
+        assertTrue((numNodes - 1) * (numNodes - 2) / 2 > PeerExchangeGraph.MAX_NUM_NEIGHBOR_PAIRS);
+        assertEquals(1, graph.getClusteringCoefficient(), 0);
+
+        // Star, so no pair of neighbors is linked
+        graph = new PeerExchangeGraph();
+        for (int i = 0; i < numNodes; i++) {
+            graph.add(Address.localHost(1000), Address.localHost(2000 + i));
+        }
+        assertEquals(0, graph.getClusteringCoefficient(), 0);
+    }
+
+    @Test
+    public void testEmpty() {
+        PeerExchangeGraph graph = new PeerExchangeGraph();
+        assertEquals(0, graph.estimateDiameter());
+        assertEquals(0, graph.getClusteringCoefficient(), 0);
+        assertEquals("{\"edges\":[],\"stats\":{\"numNodes\":0,\"numEdges\":0,\"averageDegree\":0.0000," +
+                "\"degreeDistribution\":{},\"clusteringCoefficient\":0.0000,\"estimatedDiameter\":0}}", graph.toJson());
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.peers.exchange;
+
+import misq.common.util.Tuple2;
+import misq.p2p.Address;
+import misq.p2p.message.Message;
+import misq.p2p.node.MockNode;
+import misq.p2p.peers.PeerConfig;
+import misq.p2p.peers.PeerGroup;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class PeerExchangeManagerTest {
+    private MockNode node;
+    private PeerExchangeManager peerExchangeManager;
+
+    @Before
+    public void setUp() {
+        node = new MockNode();
+        PeerConfig peerConfig = new PeerConfig(new PeerExchangeConfig(), new ArrayList<>(), 2, 12, 1);
+        PeerGroup peerGroup = new PeerGroup(node, peerConfig, 9999);
+        peerExchangeManager = new PeerExchangeManager(node, new DefaultPeerExchangeStrategy(peerGroup, peerConfig));
+    }
+
+    @After
+    public void tearDown() {
+        peerExchangeManager.shutdown();
+    }
+
+    @Test
+    public void testDisconnectDisposesHandlers() {
+        int numMessageListeners = node.getNumMessageListeners();
+        Address peer = Address.localHost(1001);
+        node.connect(peer);
+        assertEquals(numMessageListeners + 1, node.getNumMessageListeners());
+
+        node.disconnect(peer);
+        assertEquals(numMessageListeners, node.getNumMessageListeners());
+    }
+
+    @Test
+    public void testRateLimitedRequestGetsRetryAfter() {
+        Address peer = Address.localHost(1001);
+        node.connect(peer);
+        node.receive(new PeerExchangeRequest(Set.of()), peer);
+        PeerExchangeResponse response = getLastResponse();
+        assertFalse(response.isLoadShedding());
+        assertTrue(node.findConnection(peer).isPresent());
+
+        // A repeated request within the min. interval gets a retryAfter and the connection gets closed
+        node.receive(new PeerExchangeRequest(Set.of()), peer);
+        response = getLastResponse();
+        assertTrue(response.isLoadShedding());
+        assertTrue(response.getRetryAfter() <= PeerExchangeResponsePool.MIN_REQUEST_INTERVAL);
+        assertFalse(node.findConnection(peer).isPresent());
+    }
+
+    private PeerExchangeResponse getLastResponse() {
+        List<Tuple2<Message, Address>> sentMessages = node.getSentMessages();
+        return (PeerExchangeResponse) sentMessages.get(sentMessages.size() - 1).first;
+    }
+}
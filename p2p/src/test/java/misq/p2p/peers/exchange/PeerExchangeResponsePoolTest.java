@@ -0,0 +1,70 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.peers.exchange;
+
+import misq.p2p.Address;
+import misq.p2p.NetworkType;
+import misq.p2p.node.capability.Capability;
+import misq.p2p.peers.Peer;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class PeerExchangeResponsePoolTest {
+    @Test
+    public void testGetPeers() {
+        Set<Peer> peers = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            peers.add(new Peer(new Capability(Address.localHost(1000 + i), Set.of(NetworkType.CLEAR))));
+        }
+        AtomicInteger numRefreshes = new AtomicInteger();
+        PeerExchangeResponsePool pool = new PeerExchangeResponsePool(() -> {
+            numRefreshes.incrementAndGet();
+            return peers;
+        });
+
+        Address requester = Address.localHost(1000);
+        Set<Peer> result = pool.getPeers(requester, peer -> true);
+        assertEquals(PeerExchangeResponsePool.MAX_PEERS_PER_RESPONSE, result.size());
+        assertTrue(peers.containsAll(result));
+        assertTrue(result.stream().noneMatch(peer -> peer.getAddress().equals(requester)));
+
+        // Filter is applied
+        Set<Peer> known = new HashSet<>(result);
+        Set<Peer> next = pool.getPeers(requester, peer -> !known.contains(peer));
+        assertTrue(next.stream().noneMatch(known::contains));
+        assertEquals(1, numRefreshes.get());
+    }
+
+    @Test
+    public void testRateLimit() {
+        PeerExchangeResponsePool pool = new PeerExchangeResponsePool(Set::of);
+        Address requester = Address.localHost(1000);
+        long now = System.currentTimeMillis();
+        assertEquals(0, pool.getRetryAfter(requester, now));
+        assertEquals(PeerExchangeResponsePool.MIN_REQUEST_INTERVAL - 1000, pool.getRetryAfter(requester, now + 1000));
+        assertEquals(0, pool.getRetryAfter(Address.localHost(1001), now + 1000));
+        // The rate limited request did not extend the interval
+        assertEquals(0, pool.getRetryAfter(requester, now + PeerExchangeResponsePool.MIN_REQUEST_INTERVAL));
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.peers.exchange;
+
+import misq.common.util.ThreadingUtils;
+import misq.p2p.Address;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class StaggeredBootstrapTest {
+    private final Map<Address, CompletableFuture<Boolean>> futures = new ConcurrentHashMap<>();
+
+    private CompletableFuture<Boolean> exchange(Address address) {
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        futures.put(address, future);
+        return future;
+    }
+
+    @Test
+    public void testCompletesAtRequiredSuccess() throws Exception {
+        ScheduledExecutorService executor = ThreadingUtils.getSingleThreadScheduledExecutor("test");
+        List<Address> addresses = List.of(Address.localHost(1001),
+                Address.localHost(1002),
+                Address.localHost(1003),
+                Address.localHost(1004),
+                Address.localHost(1005));
+        StaggeredBootstrap bootstrap = new StaggeredBootstrap(addresses, 2, 2, 60_000, executor);
+        CompletableFuture<Integer> result = bootstrap.start(this::exchange);
+        assertEquals(2, futures.size());
+
+        // A failure starts the next exchange
+        futures.get(addresses.get(0)).complete(false);
+        assertEquals(3, futures.size());
+
+        futures.get(addresses.get(1)).complete(true);
+        assertFalse(result.isDone());
+        futures.get(addresses.get(2)).complete(true);
+        assertEquals(2, result.get(1, TimeUnit.SECONDS).intValue());
+        // The remaining addresses have not been used
+        assertEquals(3, futures.size());
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testStaggerDelay() throws Exception {
+        ScheduledExecutorService executor = ThreadingUtils.getSingleThreadScheduledExecutor("test");
+        List<Address> addresses = List.of(Address.localHost(1001), Address.localHost(1002));
+        StaggeredBootstrap bootstrap = new StaggeredBootstrap(addresses, 2, 1, 50, executor);
+        CompletableFuture<Integer> result = bootstrap.start(this::exchange);
+        assertEquals(1, futures.size());
+        Thread.sleep(200);
+        assertEquals(2, futures.size());
+
+        // All completed without reaching the required successes
+        futures.values().forEach(future -> future.complete(false));
+        assertEquals(0, result.get(1, TimeUnit.SECONDS).intValue());
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testAddAddresses() throws Exception {
+        ScheduledExecutorService executor = ThreadingUtils.getSingleThreadScheduledExecutor("test");
+        Address seed = Address.localHost(1001);
+        Address reported = Address.localHost(1002);
+        StaggeredBootstrap bootstrap = new StaggeredBootstrap(List.of(seed), 1, 1, 60_000, executor);
+        CompletableFuture<Integer> result = bootstrap.start(this::exchange);
+
+        // The seed is overloaded and reports another peer, the seed itself is not used again
+        bootstrap.addAddresses(List.of(seed, reported));
+        futures.get(seed).complete(false);
+        assertEquals(2, futures.size());
+        futures.get(reported).complete(true);
+        assertEquals(1, result.get(1, TimeUnit.SECONDS).intValue());
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testNoAddresses() throws Exception {
+        ScheduledExecutorService executor = ThreadingUtils.getSingleThreadScheduledExecutor("test");
+        StaggeredBootstrap bootstrap = new StaggeredBootstrap(List.of(), 2, 2, 50, executor);
+        assertEquals(0, bootstrap.start(this::exchange).get(1, TimeUnit.SECONDS).intValue());
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.router;
+
+import misq.p2p.message.Message;
+import misq.p2p.message.PayloadMessage;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class RoutingTableTest {
+    private static class SmallMessage implements Message {
+    }
+
+    private static class LargeMessage implements Message {
+        private final byte[] data = new byte[20_000];
+    }
+
+    private static class AlertMessage implements Message {
+        private final byte[] data = new byte[20_000];
+    }
+
+    private static class Offer {
+    }
+
+    private static class Alert {
+    }
+
+    private static class DataRequest implements PayloadMessage {
+        private final Class<?> payloadType;
+
+        DataRequest(Class<?> payloadType) {
+            this.payloadType = payloadType;
+        }
+
+        @Override
+        public Class<?> getPayloadType() {
+            return payloadType;
+        }
+    }
+
+    @Test
+    public void testDefault() {
+        RoutingTable routingTable = new RoutingTable();
+        assertEquals(RoutingStrategy.FLOOD, getStrategy(routingTable, new SmallMessage()));
+        assertEquals(RoutingStrategy.INV, getStrategy(routingTable, new LargeMessage()));
+    }
+
+    @Test
+    public void testMessageType() {
+        RoutingTable routingTable = new RoutingTable(Map.of(AlertMessage.class, RoutingStrategy.FLOOD,
+                SmallMessage.class, RoutingStrategy.PLUMTREE),
+                RoutingStrategy.K_RANDOM,
+                10_000,
+                4);
+        assertEquals(RoutingStrategy.FLOOD, getStrategy(routingTable, new AlertMessage()));
+        assertEquals(RoutingStrategy.PLUMTREE, getStrategy(routingTable, new SmallMessage()));
+        assertEquals(RoutingStrategy.INV, getStrategy(routingTable, new LargeMessage()));
+    }
+
+    @Test
+    public void testPayloadType() {
+        RoutingTable routingTable = new RoutingTable(Map.of(Alert.class, RoutingStrategy.FLOOD,
+                DataRequest.class, RoutingStrategy.K_RANDOM),
+                RoutingStrategy.PLUMTREE,
+                10_000,
+                4);
+        assertEquals(RoutingStrategy.FLOOD, getStrategy(routingTable, new DataRequest(Alert.class)));
+        // Falls back to the message type
+        assertEquals(RoutingStrategy.K_RANDOM, getStrategy(routingTable, new DataRequest(Offer.class)));
+        // Size decides only if neither type has an entry
+        routingTable = new RoutingTable(Map.of(Alert.class, RoutingStrategy.FLOOD), RoutingStrategy.PLUMTREE, 10_000, 4);
+        assertEquals(RoutingStrategy.PLUMTREE, routingTable.getStrategy(new DataRequest(Offer.class), 100));
+        assertEquals(RoutingStrategy.INV, routingTable.getStrategy(new DataRequest(Offer.class), 20_000));
+        assertEquals(RoutingStrategy.FLOOD, routingTable.getStrategy(new DataRequest(Alert.class), 20_000));
+    }
+
+    private RoutingStrategy getStrategy(RoutingTable routingTable, Message message) {
+        return routingTable.getStrategy(message, message.serialize().length);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.router.gossip;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class BroadcastTrackerTest {
+    @Test
+    public void testAll() {
+        BroadcastTracker tracker = new BroadcastTracker(3, BroadcastPolicy.all(), null);
+        tracker.onResult(true);
+        tracker.onResult(false);
+        assertFalse(tracker.getFuture().isDone());
+        tracker.onResult(true);
+        GossipResult result = tracker.getFuture().join();
+        assertEquals(2, result.getNumSuccess());
+        assertEquals(1, result.getNumFaults());
+    }
+
+    @Test
+    public void testNoPeers() {
+        BroadcastTracker tracker = new BroadcastTracker(0, BroadcastPolicy.all(), null);
+        assertTrue(tracker.getFuture().isDone());
+        assertEquals(0, tracker.getFuture().join().getNumSuccess());
+    }
+
+    @Test
+    public void testFirstKWithLateResults() {
+        List<GossipResult> lateResults = new ArrayList<>();
+        BroadcastTracker tracker = new BroadcastTracker(4, BroadcastPolicy.firstK(2), lateResults::add);
+        tracker.onResult(true);
+        assertFalse(tracker.getFuture().isDone());
+        tracker.onResult(true);
+        assertEquals(2, tracker.getFuture().join().getNumSuccess());
+        tracker.onResult(false);
+        tracker.onResult(true);
+        assertEquals(2, lateResults.size());
+        assertEquals(3, lateResults.get(1).getNumSuccess());
+        assertEquals(1, lateResults.get(1).getNumFaults());
+    }
+
+    @Test
+    public void testFraction() {
+        assertEquals(3, BroadcastPolicy.fraction(0.5).getRequiredNumSuccess(5));
+        assertEquals(5, BroadcastPolicy.firstK(8).getRequiredNumSuccess(5));
+        assertEquals(5, BroadcastPolicy.all().getRequiredNumSuccess(5));
+    }
+
+    @Test
+    public void testDeadline() throws Exception {
+        BroadcastTracker tracker = new BroadcastTracker(3, BroadcastPolicy.deadline(50), null);
+        tracker.onResult(true);
+        CompletableFuture<GossipResult> future = tracker.getFuture();
+        GossipResult result = future.get(1, TimeUnit.SECONDS);
+        assertEquals(1, result.getNumSuccess());
+    }
+}
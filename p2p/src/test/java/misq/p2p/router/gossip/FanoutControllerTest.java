@@ -0,0 +1,47 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.router.gossip;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class FanoutControllerTest {
+    @Test
+    public void testFanout() {
+        assertEquals(2, new FanoutController(() -> 1).getFanout());
+        // ceil(ln(1000)) = 7
+        assertEquals(9, new FanoutController(() -> 1000).getFanout());
+    }
+
+    @Test
+    public void testAdjust() {
+        FanoutController controller = new FanoutController(() -> 1000);
+        // Expected duplicate ratio at fanout 9 is about 0.89
+        controller.adjust(100, 99);
+        assertEquals(1, controller.getExtraFanout());
+        // Too small sample
+        controller.adjust(110, 100);
+        assertEquals(1, controller.getExtraFanout());
+        controller.adjust(200, 100);
+        assertEquals(2, controller.getExtraFanout());
+        controller.adjust(300, 188);
+        assertEquals(2, controller.getExtraFanout());
+    }
+}
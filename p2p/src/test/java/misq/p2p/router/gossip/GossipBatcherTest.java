@@ -0,0 +1,118 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.router.gossip;
+
+import misq.p2p.Address;
+import misq.p2p.MockMessage;
+import misq.p2p.data.storage.MapKey;
+import misq.p2p.message.Message;
+import misq.p2p.message.SupersedeKey;
+import misq.p2p.node.Connection;
+import misq.p2p.node.MockNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class GossipBatcherTest {
+    private MockNode node;
+    private ScheduledExecutorService executor;
+
+    @Before
+    public void setUp() {
+        node = new MockNode();
+        executor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static GossipMessage getGossipMessage(String msg, long deadline, SupersedeKey supersedeKey) {
+        return new GossipMessage(new MockMessage(msg).serialize(), 0, deadline, supersedeKey);
+    }
+
+    @Test
+    public void testBundle() throws Exception {
+        GossipBatcher batcher = new GossipBatcher(node, executor, 50, 10);
+        Address address1 = Address.localHost(1001);
+        Address address2 = Address.localHost(1002);
+        GossipMessage message1 = getGossipMessage("test1", 0, null);
+        GossipMessage message2 = getGossipMessage("test2", 0, null);
+        CompletableFuture<Connection> future1 = batcher.send(message1, address1);
+        CompletableFuture<Connection> future2 = batcher.send(message2, address1);
+        CompletableFuture<Connection> future3 = batcher.send(message1, address2);
+        assertFalse(future1.isDone());
+        CompletableFuture.allOf(future1, future2, future3).get(1, TimeUnit.SECONDS);
+
+        // The messages to the same address are sent as one bundle, a single message is sent as it is
+        assertEquals(List.of(address1), node.getReceivers(GossipBundle.class));
+        assertEquals(List.of(address2), node.getReceivers(GossipMessage.class));
+        Message bundle = node.getSentMessages().stream()
+                .filter(tuple -> tuple.first instanceof GossipBundle)
+                .findAny().orElseThrow().first;
+        assertEquals(List.of(message1, message2), ((GossipBundle) bundle).getGossipMessages());
+    }
+
+    @Test
+    public void testFullBundleIsSentImmediately() {
+        GossipBatcher batcher = new GossipBatcher(node, executor, TimeUnit.MINUTES.toMillis(1), 3);
+        Address address = Address.localHost(1001);
+        CompletableFuture<Connection> future = batcher.send(getGossipMessage("test1", 0, null), address);
+        batcher.send(getGossipMessage("test2", 0, null), address);
+        assertTrue(node.getSentMessages().isEmpty());
+
+        batcher.send(getGossipMessage("test3", 0, null), address);
+        assertTrue(future.isDone());
+        assertEquals(List.of(address), node.getReceivers(GossipBundle.class));
+    }
+
+    @Test
+    public void testStaleMessagesAreDropped() {
+        GossipBatcher batcher = new GossipBatcher(node, executor, TimeUnit.MINUTES.toMillis(1), 3);
+        Address address = Address.localHost(1001);
+        MapKey payloadHash = new MapKey(new byte[]{1});
+        CompletableFuture<Connection> superseded = batcher.send(getGossipMessage("test1", 0,
+                new SupersedeKey(payloadHash, 1)), address);
+        CompletableFuture<Connection> expired = batcher.send(getGossipMessage("test2", 1, null), address);
+        GossipMessage newest = getGossipMessage("test3", 0, new SupersedeKey(payloadHash, 2));
+        CompletableFuture<Connection> future = batcher.send(newest, address);
+
+        assertTrue(superseded.isCompletedExceptionally());
+        assertTrue(expired.isCompletedExceptionally());
+        assertTrue(future.isDone() && !future.isCompletedExceptionally());
+        // Only one message left, so it is not bundled
+        assertEquals(List.of(address), node.getReceivers(GossipMessage.class));
+        assertEquals(newest, node.getSentMessages().get(0).first);
+    }
+
+    @Test
+    public void testShutdown() {
+        GossipBatcher batcher = new GossipBatcher(node, executor, TimeUnit.MINUTES.toMillis(1), 10);
+        CompletableFuture<Connection> future = batcher.send(getGossipMessage("test", 0, null), Address.localHost(1001));
+        batcher.shutdown();
+        assertTrue(future.isCompletedExceptionally());
+        assertTrue(node.getSentMessages().isEmpty());
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.router.gossip;
+
+import misq.p2p.MockMessage;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class GossipBundleTest {
+    private static GossipMessage getGossipMessage(long deadline) {
+        return new GossipMessage(new MockMessage("test").serialize(), 0, deadline, null);
+    }
+
+    @Test
+    public void testDeadline() {
+        // The bundle expires with its last message
+        assertEquals(2000, new GossipBundle(List.of(getGossipMessage(1000), getGossipMessage(2000))).getDeadline());
+        // A message without deadline keeps the bundle from expiring
+        assertEquals(0, new GossipBundle(List.of(getGossipMessage(1000), getGossipMessage(0))).getDeadline());
+        assertEquals(0, new GossipBundle(List.of()).getDeadline());
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.router.gossip;
+
+import lombok.Getter;
+import misq.p2p.MockMessage;
+import misq.p2p.data.storage.MapKey;
+import misq.p2p.message.ExpirableMessage;
+import misq.p2p.message.Message;
+import misq.p2p.message.SupersedeKey;
+import org.junit.Test;
+
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class GossipMessageTest {
+    @Getter
+    private static class MockExpirableMessage implements ExpirableMessage {
+        private final long deadline;
+        private final int sequenceNumber;
+
+        MockExpirableMessage(long deadline, int sequenceNumber) {
+            this.deadline = deadline;
+            this.sequenceNumber = sequenceNumber;
+        }
+
+        @Override
+        public Optional<SupersedeKey> getSupersedeKey() {
+            return Optional.of(new SupersedeKey(new MapKey(new byte[]{1}), sequenceNumber));
+        }
+    }
+
+    @Test
+    public void testForwardedCopyKeepsHeader() {
+        SupersedeKey supersedeKey = new SupersedeKey(new MapKey(new byte[]{2}), 100);
+        GossipMessage received = new GossipMessage(new byte[]{1, 2, 3}, 1, 1000, supersedeKey);
+        GossipMessage forwarded = received.withNumHops(2);
+        assertEquals(2, forwarded.getNumHops());
+        assertEquals(1000, forwarded.getDeadline());
+        assertEquals(Optional.of(supersedeKey), forwarded.getSupersedeKey());
+        assertArrayEquals(received.getPayload(), forwarded.getPayload());
+    }
+
+    @Test
+    public void testForgedHeader() {
+        SupersedeKey forgedKey = new SupersedeKey(new MapKey(new byte[]{2}), 100);
+        MockMessage mockMessage = new MockMessage("test");
+        GossipMessage received = new GossipMessage(mockMessage.serialize(), 1, Long.MAX_VALUE, forgedKey);
+        assertFalse(received.hasValidHeader(received.getMessage().orElseThrow()));
+        assertTrue(new GossipMessage(mockMessage).hasValidHeader(mockMessage));
+
+        MockExpirableMessage expirableMessage = new MockExpirableMessage(1000, 3);
+        received = new GossipMessage(expirableMessage.serialize(), 1, Long.MAX_VALUE,
+                expirableMessage.getSupersedeKey().orElseThrow());
+        assertFalse(received.hasValidHeader(received.getMessage().orElseThrow()));
+        received = new GossipMessage(expirableMessage.serialize(), 1, 1000,
+                expirableMessage.getSupersedeKey().orElseThrow());
+        assertTrue(received.hasValidHeader(received.getMessage().orElseThrow()));
+    }
+
+    @Test
+    public void testUndecodablePayload() {
+        GossipMessage received = new GossipMessage(new byte[]{1, 2, 3}, 1, 0, null);
+        assertFalse(received.getMessage().isPresent());
+    }
+}
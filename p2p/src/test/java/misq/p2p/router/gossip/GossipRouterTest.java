@@ -0,0 +1,117 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.router.gossip;
+
+import misq.p2p.Address;
+import misq.p2p.MockMessage;
+import misq.p2p.message.Message;
+import misq.p2p.node.MockNode;
+import misq.p2p.peers.PeerConfig;
+import misq.p2p.peers.PeerGroup;
+import misq.p2p.peers.exchange.PeerExchangeConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+public class GossipRouterTest {
+    private MockNode node;
+    private PeerGroup peerGroup;
+    private GossipRouter gossipRouter;
+    private final List<Message> received = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() {
+        node = new MockNode();
+        peerGroup = new PeerGroup(node, new PeerConfig(new PeerExchangeConfig(), new ArrayList<>()), 9999);
+        gossipRouter = new GossipRouter(node, peerGroup);
+        gossipRouter.addMessageListener((message, connection) -> received.add(message));
+    }
+
+    @After
+    public void tearDown() {
+        gossipRouter.shutdown();
+    }
+
+    private static List<GossipMessage> getGossipMessages(int numMessages) {
+        List<GossipMessage> gossipMessages = new ArrayList<>();
+        for (int i = 0; i < numMessages; i++) {
+            gossipMessages.add(new GossipMessage(new MockMessage("test" + i)));
+        }
+        return gossipMessages;
+    }
+
+    @Test
+    public void testReceiveBundle() {
+        Address sender = Address.localHost(1001);
+        node.receive(new GossipBundle(getGossipMessages(GossipRouter.MAX_BUNDLE_SIZE)), sender);
+        assertEquals(GossipRouter.MAX_BUNDLE_SIZE, received.size());
+    }
+
+    @Test
+    public void testForwardWithoutDecoding() throws InterruptedException {
+        Address sender = Address.localHost(1001);
+        Address peer = Address.localHost(1002);
+        node.connect(sender);
+        node.connect(peer);
+        double score = peerGroup.getPeerScores().getScore(sender);
+        GossipMessage undecodable = new GossipMessage(new byte[]{1, 2, 3}, 0, 0, null);
+        node.receive(undecodable, sender);
+
+        // The payload is forwarded, but not delivered, and the sender gets penalized
+        assertTrue(received.isEmpty());
+        assertTrue(peerGroup.getPeerScores().getScore(sender) < score);
+        waitForSentMessages(1);
+        GossipMessage forwarded = (GossipMessage) node.getSentMessages().get(0).first;
+        assertEquals(peer, node.getSentMessages().get(0).second);
+        assertEquals(1, forwarded.getNumHops());
+        assertArrayEquals(undecodable.getPayload(), forwarded.getPayload());
+    }
+
+    @Test
+    public void testExpiredMessageIsNotForwarded() throws InterruptedException {
+        Address sender = Address.localHost(1001);
+        node.connect(sender);
+        node.connect(Address.localHost(1002));
+        node.receive(new GossipMessage(new MockMessage("test").serialize(), 0, 1, null), sender);
+        Thread.sleep(200);
+        assertTrue(node.getSentMessages().isEmpty());
+    }
+
+    @Test
+    public void testOversizedBundleIsDropped() {
+        Address sender = Address.localHost(1001);
+        double score = peerGroup.getPeerScores().getScore(sender);
+        node.receive(new GossipBundle(getGossipMessages(GossipRouter.MAX_BUNDLE_SIZE + 1)), sender);
+        assertTrue(received.isEmpty());
+        assertTrue(peerGroup.getPeerScores().getScore(sender) < score);
+    }
+
+    private void waitForSentMessages(int numMessages) throws InterruptedException {
+        long ts = System.currentTimeMillis();
+        while (node.getSentMessages().size() < numMessages && System.currentTimeMillis() - ts < 1000) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package misq.p2p.router.gossip;
+
+import com.google.common.collect.Sets;
+import misq.p2p.Address;
+import misq.p2p.data.storage.MapKey;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class SeenMessageCacheTest {
+    private static MapKey getMapKey(int i) {
+        return new MapKey(new byte[]{(byte) i});
+    }
+
+    @Test
+    public void testAdd() {
+        SeenMessageCache cache = new SeenMessageCache(100, 60_000);
+        Address peer1 = Address.localHost(1001);
+        Address peer2 = Address.localHost(1002);
+        assertTrue(cache.add(getMapKey(1), peer1));
+        assertFalse(cache.add(getMapKey(1), peer2));
+        assertTrue(cache.add(getMapKey(2), null));
+        assertEquals(2, cache.size());
+        assertEquals(Sets.newHashSet(peer1, peer2), cache.getPeers(getMapKey(1)));
+        assertTrue(cache.getPeers(getMapKey(2)).isEmpty());
+    }
+
+    @Test
+    public void testMaxSize() {
+        SeenMessageCache cache = new SeenMessageCache(10, 60_000);
+        for (int i = 0; i < 20; i++) {
+            cache.add(getMapKey(i), null);
+        }
+        assertEquals(10, cache.size());
+        // Eldest entries got removed
+        assertFalse(cache.contains(getMapKey(0)));
+        assertTrue(cache.contains(getMapKey(19)));
+    }
+
+    @Test
+    public void testExpiry() throws InterruptedException {
+        SeenMessageCache cache = new SeenMessageCache(10, 50);
+        cache.add(getMapKey(1), null);
+        assertTrue(cache.contains(getMapKey(1)));
+        Thread.sleep(100);
+        assertFalse(cache.contains(getMapKey(1)));
+        assertTrue(cache.add(getMapKey(1), null));
+    }
+
+    @Test
+    public void testCoverage() {
+        SeenMessageCache cache = new SeenMessageCache(10, 60_000);
+        Address peer1 = Address.localHost(1001);
+        Address peer2 = Address.localHost(1002);
+        Address peer3 = Address.localHost(1003);
+        Address peer4 = Address.localHost(1004);
+        Set<Address> connectedPeers = Sets.newHashSet(peer1, peer2, peer3, peer4);
+        cache.add(getMapKey(1), peer1);
+        cache.addPeers(getMapKey(1), Arrays.asList(peer2, peer3, peer4));
+        cache.add(getMapKey(2), peer1);
+        cache.addPeers(getMapKey(2), Arrays.asList(peer2, Address.localHost(2000)));
+        // (4/4 + 2/4) / 2
+        assertEquals(0.75, cache.getCoverage(connectedPeers), 0.0001);
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.router.inv;
+
+import misq.common.security.DigestUtil;
+import misq.common.util.ObjectSerializer;
+import misq.p2p.Address;
+import misq.p2p.MockMessage;
+import misq.p2p.data.storage.MapKey;
+import misq.p2p.message.Message;
+import misq.p2p.node.MockNode;
+import misq.p2p.peers.PeerConfig;
+import misq.p2p.peers.PeerGroup;
+import misq.p2p.peers.exchange.PeerExchangeConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+public class InvRouterTest {
+    private static final long GET_DATA_TIMEOUT = 100;
+
+    private final Address peer1 = new Address("127.0.0.1", 1001);
+    private final Address peer2 = new Address("127.0.0.1", 1002);
+    private final Address peer3 = new Address("127.0.0.1", 1003);
+    private final List<Message> receivedMessages = new CopyOnWriteArrayList<>();
+    private MockNode node;
+    private PeerGroup peerGroup;
+    private InvRouter router;
+
+    @Before
+    public void setUp() {
+        node = new MockNode();
+        peerGroup = new PeerGroup(node, new PeerConfig(new PeerExchangeConfig(), new ArrayList<>()), 9999);
+        router = new InvRouter(node, peerGroup, GET_DATA_TIMEOUT);
+        router.addMessageListener((message, connection) -> receivedMessages.add(message));
+        node.connect(peer1);
+        node.connect(peer2);
+        node.connect(peer3);
+    }
+
+    @After
+    public void tearDown() {
+        router.shutdown();
+    }
+
+    @Test
+    public void testCoalescing() {
+        MockMessage message = new MockMessage("test");
+        MapKey mapKey = getMapKey(message);
+        node.receive(new InvMessage(mapKey), peer1);
+        node.receive(new InvMessage(mapKey), peer1);
+        node.receive(new InvMessage(mapKey), peer2);
+        assertEquals(List.of(peer1), node.getReceivers(GetDataMessage.class));
+        assertEquals(1, router.getNumPendingRequests());
+
+        node.clearSentMessages();
+        node.receive(new DataMessage(message), peer1);
+        assertEquals(List.of(message), receivedMessages);
+        assertEquals(0, router.getNumPendingRequests());
+        // Only announced to the peer which has not announced it to us
+        assertEquals(List.of(peer3), node.getReceivers(InvMessage.class));
+
+        // Late announcements and data are ignored
+        node.clearSentMessages();
+        node.receive(new InvMessage(mapKey), peer3);
+        node.receive(new DataMessage(message), peer2);
+        assertTrue(node.getSentMessages().isEmpty());
+        assertEquals(1, receivedMessages.size());
+    }
+
+    @Test
+    public void testDataIsMatchedByReceivedBytes() {
+        // Trailing bytes are ignored when decoding, so the message serializes to other bytes than we received
+        MockMessage message = new MockMessage("test");
+        byte[] serialized = message.serialize();
+        byte[] payload = Arrays.copyOf(serialized, serialized.length + 1);
+        MapKey mapKey = new MapKey(DigestUtil.hash(payload));
+        node.receive(new InvMessage(mapKey), peer1);
+        node.receive(overWire(new DataMessage(message, payload)), peer1);
+        assertEquals(List.of(message), receivedMessages);
+        assertEquals(0, router.getNumPendingRequests());
+
+        // We deliver the received bytes to our peers
+        node.clearSentMessages();
+        node.receive(new GetDataMessage(mapKey), peer2);
+        DataMessage dataMessage = (DataMessage) node.getSentMessages().get(0).first;
+        assertArrayEquals(payload, dataMessage.getPayload());
+    }
+
+    @Test
+    public void testUndecodableData() {
+        byte[] payload = new byte[]{1, 2, 3};
+        MapKey mapKey = new MapKey(DigestUtil.hash(payload));
+        node.receive(new InvMessage(mapKey), peer1);
+        double score = peerGroup.getPeerScores().getScore(peer1);
+        node.receive(overWire(new DataMessage(new MockMessage("test"), payload)), peer1);
+        assertTrue(receivedMessages.isEmpty());
+        assertTrue(peerGroup.getPeerScores().getScore(peer1) < score);
+    }
+
+    @Test
+    public void testTimeoutFallback() throws InterruptedException {
+        MockMessage message = new MockMessage("test");
+        MapKey mapKey = getMapKey(message);
+        node.receive(new InvMessage(mapKey), peer1);
+        node.receive(new InvMessage(mapKey), peer2);
+        node.receive(new InvMessage(mapKey), peer2);
+        // The peer we already requested it from is not added as fallback
+        node.receive(new InvMessage(mapKey), peer1);
+
+        Thread.sleep(GET_DATA_TIMEOUT + 50);
+        assertEquals(List.of(peer1, peer2), node.getReceivers(GetDataMessage.class));
+
+        // All announcers failed
+        Thread.sleep(GET_DATA_TIMEOUT + 50);
+        assertEquals(2, node.getReceivers(GetDataMessage.class).size());
+        assertEquals(0, router.getNumPendingRequests());
+    }
+
+    @Test
+    public void testPendingRequestsAreBounded() {
+        for (int i = 0; i < InvRouter.MAX_NUM_PENDING_REQUESTS_PER_PEER + 10; i++) {
+            node.receive(new InvMessage(getMapKey(new MockMessage("spam" + i))), peer1);
+        }
+        assertEquals(InvRouter.MAX_NUM_PENDING_REQUESTS_PER_PEER, router.getNumPendingRequests());
+        assertEquals(InvRouter.MAX_NUM_PENDING_REQUESTS_PER_PEER, node.getReceivers(GetDataMessage.class).size());
+
+        // Other peers can still announce messages
+        node.receive(new InvMessage(getMapKey(new MockMessage("test"))), peer2);
+        assertEquals(InvRouter.MAX_NUM_PENDING_REQUESTS_PER_PEER + 1, router.getNumPendingRequests());
+    }
+
+    @Test
+    public void testStoreEviction() {
+        MockMessage first = new MockMessage("first");
+        router.broadcast(first);
+        node.receive(new GetDataMessage(getMapKey(first)), peer1);
+        assertEquals(List.of(peer1), node.getReceivers(DataMessage.class));
+
+        for (int i = 0; i < InvRouter.MESSAGE_STORE_MAX_SIZE; i++) {
+            router.broadcast(new MockMessage("message" + i));
+        }
+        node.clearSentMessages();
+        node.receive(new GetDataMessage(getMapKey(first)), peer1);
+        assertTrue(node.getReceivers(DataMessage.class).isEmpty());
+
+        MockMessage last = new MockMessage("message" + (InvRouter.MESSAGE_STORE_MAX_SIZE - 1));
+        node.receive(new GetDataMessage(getMapKey(last)), peer1);
+        assertEquals(List.of(peer1), node.getReceivers(DataMessage.class));
+    }
+
+    // The decoded message is transient, so the receiver has to decode the payload
+    private static DataMessage overWire(DataMessage dataMessage) {
+        return (DataMessage) ObjectSerializer.deserialize(dataMessage.serialize());
+    }
+
+    private MapKey getMapKey(Message message) {
+        return new MapKey(DigestUtil.hash(message.serialize()));
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package misq.p2p.router.plumtree;
+
+import misq.common.security.DigestUtil;
+import misq.common.util.ObjectSerializer;
+import misq.p2p.Address;
+import misq.p2p.MockMessage;
+import misq.p2p.data.storage.MapKey;
+import misq.p2p.message.Message;
+import misq.p2p.node.MockNode;
+import misq.p2p.peers.PeerConfig;
+import misq.p2p.peers.PeerGroup;
+import misq.p2p.peers.exchange.PeerExchangeConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+public class PlumtreeRouterTest {
+    private static final long MISSING_MESSAGE_TIMEOUT = 100;
+    private static final long GRAFT_TIMEOUT = 100;
+
+    private final Address peer1 = new Address("127.0.0.1", 1001);
+    private final Address peer2 = new Address("127.0.0.1", 1002);
+    private final Address peer3 = new Address("127.0.0.1", 1003);
+    private final List<Message> receivedMessages = new CopyOnWriteArrayList<>();
+    private MockNode node;
+    private PeerGroup peerGroup;
+    private PlumtreeRouter router;
+
+    @Before
+    public void setUp() {
+        node = new MockNode();
+        peerGroup = new PeerGroup(node, new PeerConfig(new PeerExchangeConfig(), new ArrayList<>()), 9999);
+        router = new PlumtreeRouter(node, peerGroup, MISSING_MESSAGE_TIMEOUT, GRAFT_TIMEOUT);
+        router.addMessageListener((message, connection) -> receivedMessages.add(message));
+        node.connect(peer1);
+        node.connect(peer2);
+        node.connect(peer3);
+    }
+
+    @After
+    public void tearDown() {
+        router.shutdown();
+    }
+
+    @Test
+    public void testDuplicateCausesPrune() {
+        MockMessage message = new MockMessage("test");
+        node.receive(new PlumtreeMessage(message, 0), peer1);
+        assertEquals(List.of(message), receivedMessages);
+        // Forwarded to all other peers as they are eager push peers
+        assertEquals(2, node.getReceivers(PlumtreeMessage.class).size());
+        assertFalse(node.getReceivers(PlumtreeMessage.class).contains(peer1));
+
+        node.clearSentMessages();
+        node.receive(new PlumtreeMessage(message, 1), peer2);
+        assertEquals(1, receivedMessages.size());
+        assertEquals(List.of(peer2), node.getReceivers(PruneMessage.class));
+        assertTrue(router.getLazyPushPeers().contains(peer2));
+
+        // Next broadcast only announces the message to peer2
+        node.clearSentMessages();
+        router.broadcast(new MockMessage("test2"));
+        List<Address> eagerPushReceivers = node.getReceivers(PlumtreeMessage.class);
+        assertEquals(2, eagerPushReceivers.size());
+        assertFalse(eagerPushReceivers.contains(peer2));
+        assertEquals(List.of(peer2), node.getReceivers(IHaveMessage.class));
+    }
+
+    @Test
+    public void testPruneAndGraft() {
+        node.receive(new PruneMessage(), peer1);
+        assertTrue(router.getLazyPushPeers().contains(peer1));
+
+        MockMessage message = new MockMessage("test");
+        router.broadcast(message);
+        assertEquals(List.of(peer1), node.getReceivers(IHaveMessage.class));
+
+        // Graft moves peer1 back to the eager push peers and delivers the stored message
+        node.clearSentMessages();
+        node.receive(new GraftMessage(getMapKey(message), 0), peer1);
+        assertFalse(router.getLazyPushPeers().contains(peer1));
+        assertEquals(List.of(peer1), node.getReceivers(PlumtreeMessage.class));
+        PlumtreeMessage delivered = (PlumtreeMessage) node.getSentMessages().get(0).first;
+        assertEquals(message, delivered.getMessage().orElseThrow());
+    }
+
+    @Test
+    public void testMessageIdIsHashOfReceivedBytes() {
+        // Trailing bytes are ignored when decoding, so the message serializes to other bytes than we received
+        MockMessage message = new MockMessage("test");
+        byte[] serialized = message.serialize();
+        byte[] payload = Arrays.copyOf(serialized, serialized.length + 1);
+        MapKey mapKey = new MapKey(DigestUtil.hash(payload));
+        node.receive(new IHaveMessage(mapKey, 0), peer3);
+        node.receive(overWire(new PlumtreeMessage(message, payload, 0)), peer1);
+        assertEquals(List.of(message), receivedMessages);
+        assertEquals(0, router.getNumMissingMessages());
+
+        // We forward the received bytes, and the same bytes from another peer are a duplicate
+        PlumtreeMessage forwarded = (PlumtreeMessage) node.getSentMessages().stream()
+                .filter(tuple -> tuple.first instanceof PlumtreeMessage)
+                .findAny().orElseThrow().first;
+        assertArrayEquals(payload, forwarded.getPayload());
+        assertEquals(1, forwarded.getRound());
+        node.receive(overWire(new PlumtreeMessage(message, payload, 1)), peer2);
+        assertEquals(1, receivedMessages.size());
+        assertTrue(router.getLazyPushPeers().contains(peer2));
+    }
+
+    @Test
+    public void testUndecodablePayload() {
+        double score = peerGroup.getPeerScores().getScore(peer1);
+        node.receive(overWire(new PlumtreeMessage(new MockMessage("test"), new byte[]{1, 2, 3}, 0)), peer1);
+        assertTrue(receivedMessages.isEmpty());
+        assertTrue(node.getReceivers(PlumtreeMessage.class).isEmpty());
+        assertTrue(peerGroup.getPeerScores().getScore(peer1) < score);
+    }
+
+    @Test
+    public void testLazyPushRecovery() throws InterruptedException {
+        MockMessage message = new MockMessage("test");
+        MapKey mapKey = getMapKey(message);
+        node.receive(new IHaveMessage(mapKey, 0), peer1);
+        node.receive(new IHaveMessage(mapKey, 0), peer1);
+        node.receive(new IHaveMessage(mapKey, 0), peer2);
+        assertEquals(1, router.getNumMissingMessages());
+
+        // Message did not arrive via the tree, so we graft the first announcer
+        Thread.sleep(MISSING_MESSAGE_TIMEOUT + 50);
+        assertEquals(List.of(peer1), node.getReceivers(GraftMessage.class));
+
+        // The first announcer does not deliver, so we try the next one. Duplicate announcements are not retried.
+        Thread.sleep(GRAFT_TIMEOUT + 50);
+        assertEquals(List.of(peer1, peer2), node.getReceivers(GraftMessage.class));
+
+        node.receive(new PlumtreeMessage(message, 1), peer2);
+        assertEquals(List.of(message), receivedMessages);
+        assertEquals(0, router.getNumMissingMessages());
+
+        Thread.sleep(GRAFT_TIMEOUT + 50);
+        assertEquals(2, node.getReceivers(GraftMessage.class).size());
+    }
+
+    @Test
+    public void testMissingMessagesAreBounded() throws InterruptedException {
+        for (int i = 0; i < PlumtreeRouter.MAX_NUM_MISSING_MESSAGES_PER_PEER + 10; i++) {
+            node.receive(new IHaveMessage(getMapKey(new MockMessage("spam" + i)), 0), peer1);
+        }
+        assertEquals(PlumtreeRouter.MAX_NUM_MISSING_MESSAGES_PER_PEER, router.getNumMissingMessages());
+
+        // Other peers can still announce messages
+        MockMessage message = new MockMessage("test");
+        node.receive(new IHaveMessage(getMapKey(message), 0), peer2);
+        assertEquals(PlumtreeRouter.MAX_NUM_MISSING_MESSAGES_PER_PEER + 1, router.getNumMissingMessages());
+
+        // After the announcers did not deliver the entries are removed and peer1 can announce again
+        Thread.sleep(MISSING_MESSAGE_TIMEOUT + GRAFT_TIMEOUT + 200);
+        assertEquals(0, router.getNumMissingMessages());
+        node.receive(new IHaveMessage(getMapKey(new MockMessage("next")), 0), peer1);
+        assertEquals(1, router.getNumMissingMessages());
+    }
+
+    // The decoded message is transient, so the receiver has to decode the payload
+    private static PlumtreeMessage overWire(PlumtreeMessage plumtreeMessage) {
+        return (PlumtreeMessage) ObjectSerializer.deserialize(plumtreeMessage.serialize());
+    }
+
+    private MapKey getMapKey(Message message) {
+        return new MapKey(DigestUtil.hash(message.serialize()));
+    }
+}